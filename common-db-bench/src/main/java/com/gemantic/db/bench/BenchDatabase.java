@@ -0,0 +1,125 @@
+package com.gemantic.db.bench;
+
+import com.gemantic.db.bench.model.BenchTask;
+import com.gemantic.db.repository.impl.BaseRepositoryImpl;
+import com.gemantic.db.repository.support.DBMetadataBuilderContributor;
+import com.google.common.collect.Lists;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+import java.util.Properties;
+import java.util.function.Function;
+
+/**
+ * 基准测试数据库:默认内存H2(MySQL模式),设置-Dbench.jdbc.url(及bench.jdbc.username/bench.jdbc.password)时使用指定的MySQL
+ */
+public class BenchDatabase implements AutoCloseable {
+
+    public static final String URL_PROPERTY = "bench.jdbc.url";
+
+    public static final String USERNAME_PROPERTY = "bench.jdbc.username";
+
+    public static final String PASSWORD_PROPERTY = "bench.jdbc.password";
+
+    private final HikariDataSource dataSource;
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    public BenchDatabase(String name) {
+        String url = System.getProperty(URL_PROPERTY);
+        dataSource = new HikariDataSource();
+        if (null == url) {
+            dataSource.setJdbcUrl("jdbc:h2:mem:" + name + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+            dataSource.setUsername("sa");
+        } else {
+            dataSource.setJdbcUrl(url);
+            dataSource.setUsername(System.getProperty(USERNAME_PROPERTY, "root"));
+            dataSource.setPassword(System.getProperty(PASSWORD_PROPERTY, ""));
+        }
+        dataSource.setMaximumPoolSize(4);
+
+        LocalContainerEntityManagerFactoryBean factoryBean = new LocalContainerEntityManagerFactoryBean();
+        factoryBean.setDataSource(dataSource);
+        factoryBean.setPackagesToScan(BenchTask.class.getPackage().getName());
+        factoryBean.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        Properties properties = new Properties();
+        properties.setProperty("hibernate.hbm2ddl.auto", "create-drop");
+        properties.setProperty("hibernate.metadata_builder_contributor", DBMetadataBuilderContributor.class.getName());
+        properties.setProperty("hibernate.dialect", isMySql() ? "org.hibernate.dialect.MySQL5InnoDBDialect" : "org.hibernate.dialect.H2Dialect");
+        factoryBean.setJpaProperties(properties);
+        factoryBean.afterPropertiesSet();
+        entityManagerFactory = factoryBean.getNativeEntityManagerFactory();
+    }
+
+    public static boolean isMySql() {
+        String url = System.getProperty(URL_PROPERTY);
+        return null != url && url.startsWith("jdbc:mysql:");
+    }
+
+    public EntityManager createEntityManager() {
+        return entityManagerFactory.createEntityManager();
+    }
+
+    public BaseRepositoryImpl<BenchTask, Long> createRepository(EntityManager em) {
+        return new BaseRepositoryImpl<>(BenchTask.class, em);
+    }
+
+    /**
+     * 在事务中执行
+     */
+    public <R> R inTransaction(EntityManager em, Function<EntityManager, R> work) {
+        em.getTransaction().begin();
+        try {
+            R result = work.apply(em);
+            em.getTransaction().commit();
+            return result;
+        } catch (RuntimeException e) {
+            em.getTransaction().rollback();
+            throw e;
+        } finally {
+            em.clear();
+        }
+    }
+
+    public void truncate(EntityManager em) {
+        inTransaction(em, e -> e.createNativeQuery("TRUNCATE TABLE bench_task").executeUpdate());
+    }
+
+    /**
+     * 清空表后写入rows行测试数据
+     */
+    public void fill(EntityManager em, int rows) throws Exception {
+        truncate(em);
+        BaseRepositoryImpl<BenchTask, Long> repository = createRepository(em);
+        em.getTransaction().begin();
+        repository.bulkInsert(newTasks(rows));
+        em.getTransaction().commit();
+        em.clear();
+    }
+
+    public static List<BenchTask> newTasks(int rows) {
+        long now = System.currentTimeMillis();
+        List<BenchTask> tasks = Lists.newArrayListWithCapacity(rows);
+        for (int i = 0; i < rows; i++) {
+            BenchTask task = new BenchTask();
+            task.setUserId((long) (i % 100));
+            task.setTaskType("type" + (i % 10));
+            task.setName("task-" + i);
+            task.setScore(i % 1000);
+            task.setCreateAt(now - i);
+            task.setUpdateAt(now);
+            tasks.add(task);
+        }
+        return tasks;
+    }
+
+    @Override
+    public void close() {
+        entityManagerFactory.close();
+        dataSource.close();
+    }
+}
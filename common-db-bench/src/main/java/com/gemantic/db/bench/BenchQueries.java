@@ -0,0 +1,66 @@
+package com.gemantic.db.bench;
+
+import com.gemantic.db.constant.DBOperation;
+import com.gemantic.db.support.DBQuery;
+import com.gemantic.db.support.DBQueryItem;
+import com.gemantic.db.support.DBSortItem;
+import com.google.common.collect.Lists;
+
+import java.util.List;
+
+/**
+ * 有代表性的DBQuery形态:eq单字段等值,range时间范围,in多值,mixed等值+范围+like+or
+ */
+public class BenchQueries {
+
+    public static final String EQ = "eq";
+
+    public static final String RANGE = "range";
+
+    public static final String IN = "in";
+
+    public static final String MIXED = "mixed";
+
+    public static DBQuery<Long> of(String shape) {
+        DBQuery<Long> query = new DBQuery<>();
+        List<DBQueryItem> andQuery = Lists.newArrayList();
+        List<DBQueryItem> orQuery = Lists.newArrayList();
+        switch (shape) {
+            case EQ:
+                andQuery.add(item("userId", DBOperation.EQ, 7L));
+                break;
+            case RANGE:
+                andQuery.add(item("createAt", DBOperation.GTE, 0L));
+                andQuery.add(item("createAt", DBOperation.LTE, Long.MAX_VALUE));
+                break;
+            case IN:
+                andQuery.add(item("userId", DBOperation.IN, 1L, 2L, 3L, 5L, 8L, 13L, 21L, 34L, 55L, 89L));
+                break;
+            case MIXED:
+                andQuery.add(item("taskType", DBOperation.EQ, "type3"));
+                andQuery.add(item("score", DBOperation.GTE, 100));
+                andQuery.add(item("name", DBOperation.LIKE, "task-1"));
+                orQuery.add(item("userId", DBOperation.EQ, 3L));
+                orQuery.add(item("userId", DBOperation.IN, 13L, 23L, 33L));
+                break;
+            default:
+                throw new IllegalArgumentException("unknown shape " + shape);
+        }
+        query.setAndQuery(andQuery);
+        query.setOrQuery(orQuery);
+        DBSortItem sortItem = new DBSortItem();
+        sortItem.setField("id");
+        sortItem.setDirection("DESC");
+        query.setSorts(Lists.newArrayList(sortItem));
+        query.setFetch(Boolean.FALSE);
+        return query;
+    }
+
+    private static DBQueryItem item(String field, DBOperation operation, Object... values) {
+        DBQueryItem queryItem = new DBQueryItem();
+        queryItem.setField(field);
+        queryItem.setOperation(operation);
+        queryItem.setValues(Lists.newArrayList(values));
+        return queryItem;
+    }
+}
@@ -0,0 +1,42 @@
+package com.gemantic.db.bench;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+/**
+ * 运行基准测试并输出JSON结果(默认target/jmh-result.json,-Dbench.result指定),便于不同版本间对比。
+ * 参数为要运行的基准测试正则,默认全部;未指定MySQL时跳过LoadDataBenchmark
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws Exception {
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .forks(1)
+                .warmupIterations(3)
+                .warmupTime(TimeValue.seconds(1))
+                .measurementIterations(5)
+                .measurementTime(TimeValue.seconds(2))
+                .resultFormat(ResultFormatType.JSON)
+                .result(System.getProperty("bench.result", "target/jmh-result.json"));
+        if (args.length == 0) {
+            options.include(BenchmarkRunner.class.getPackage().getName() + ".*");
+        } else {
+            for (String include : args) {
+                options.include(include);
+            }
+        }
+        if (!BenchDatabase.isMySql()) {
+            options.exclude(LoadDataBenchmark.class.getSimpleName());
+        }
+        for (String property : new String[]{BenchDatabase.URL_PROPERTY, BenchDatabase.USERNAME_PROPERTY, BenchDatabase.PASSWORD_PROPERTY}) {
+            String value = System.getProperty(property);
+            if (null != value) {
+                options.jvmArgsAppend("-D" + property + "=" + value);
+            }
+        }
+        new Runner(options.build()).run();
+    }
+}
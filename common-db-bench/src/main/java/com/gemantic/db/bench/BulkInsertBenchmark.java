@@ -0,0 +1,64 @@
+package com.gemantic.db.bench;
+
+import com.gemantic.db.bench.model.BenchTask;
+import com.gemantic.db.repository.impl.BaseRepositoryImpl;
+import org.openjdk.jmh.annotations.*;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 批量插入吞吐:不同批大小下多值INSERT与jdbc batch的对比,每次调用写入rows行(计时不含清表)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class BulkInsertBenchmark {
+
+    @Param({"10000"})
+    public int rows;
+
+    @Param({"100", "1000", "5000"})
+    public int batchSize;
+
+    @Param({"true", "false"})
+    public boolean multiRow;
+
+    private BenchDatabase database;
+
+    private EntityManager em;
+
+    private BaseRepositoryImpl<BenchTask, Long> repository;
+
+    private List<BenchTask> tasks;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        database = new BenchDatabase("bulk");
+        em = database.createEntityManager();
+        repository = database.createRepository(em);
+        repository.getConfig().setBulkBatchSize(batchSize);
+        repository.getConfig().setBulkMultiRow(multiRow);
+    }
+
+    @Setup(Level.Invocation)
+    public void prepare() {
+        database.truncate(em);
+        tasks = BenchDatabase.newTasks(rows);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        em.close();
+        database.close();
+    }
+
+    @Benchmark
+    public List<Integer> bulkInsert() throws Exception {
+        em.getTransaction().begin();
+        List<Integer> counts = repository.bulkInsertCounts(tasks);
+        em.getTransaction().commit();
+        return counts;
+    }
+}
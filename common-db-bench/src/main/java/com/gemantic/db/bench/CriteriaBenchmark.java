@@ -0,0 +1,90 @@
+package com.gemantic.db.bench;
+
+import com.gemantic.db.bench.model.BenchTask;
+import com.gemantic.db.constant.DBOperation;
+import com.gemantic.db.repository.support.CompiledQuery;
+import com.gemantic.db.support.DBQuery;
+import com.gemantic.db.util.DBUtil;
+import com.google.common.collect.Lists;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.Sort;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 查询构建耗时:DBUtil.getPredicate构建criteria,criteria创建TypedQuery(hibernate渲染jpql),按形态缓存的CompiledQuery创建TypedQuery
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CriteriaBenchmark {
+
+    @Param({BenchQueries.EQ, BenchQueries.RANGE, BenchQueries.IN, BenchQueries.MIXED})
+    public String shape;
+
+    private BenchDatabase database;
+
+    private EntityManager em;
+
+    private DBQuery<Long> query;
+
+    private Sort sort;
+
+    private CompiledQuery compiled;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        database = new BenchDatabase("criteria");
+        em = database.createEntityManager();
+        query = BenchQueries.of(shape);
+        sort = DBUtil.getSort(query.getSorts());
+        compiled = CompiledQuery.compile(em.getMetamodel(), BenchTask.class, "BenchTask", null, query.getAndQuery(), query.getOrQuery(), sort);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        em.close();
+        database.close();
+    }
+
+    @Benchmark
+    public CriteriaQuery<BenchTask> buildCriteria() {
+        return criteria();
+    }
+
+    @Benchmark
+    public TypedQuery<BenchTask> createCriteriaQuery() {
+        return em.createQuery(criteria());
+    }
+
+    @Benchmark
+    public TypedQuery<BenchTask> createCompiledQuery() {
+        CompiledQuery.shapeOf(query.getAndQuery(), query.getOrQuery(), query.isFetch(), sort);
+        return compiled.createQuery(em, BenchTask.class, query.getAndQuery(), query.getOrQuery());
+    }
+
+    private CriteriaQuery<BenchTask> criteria() {
+        CriteriaBuilder criteriaBuilder = em.getCriteriaBuilder();
+        CriteriaQuery<BenchTask> criteriaQuery = criteriaBuilder.createQuery(BenchTask.class);
+        Root<BenchTask> root = criteriaQuery.from(BenchTask.class);
+        List<Predicate> predicates = Lists.newArrayList();
+        Predicate andPredicate = DBUtil.getPredicate(query.getAndQuery(), root, criteriaBuilder, DBOperation.AND);
+        if (null != andPredicate) {
+            predicates.add(andPredicate);
+        }
+        Predicate orPredicate = DBUtil.getPredicate(query.getOrQuery(), root, criteriaBuilder, DBOperation.OR);
+        if (null != orPredicate) {
+            predicates.add(orPredicate);
+        }
+        criteriaQuery.where(predicates.toArray(new Predicate[0]));
+        criteriaQuery.orderBy(criteriaBuilder.desc(root.get("id")));
+        return criteriaQuery;
+    }
+}
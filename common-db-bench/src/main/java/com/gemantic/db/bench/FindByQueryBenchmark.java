@@ -0,0 +1,80 @@
+package com.gemantic.db.bench;
+
+import com.gemantic.db.bench.model.BenchTask;
+import com.gemantic.db.constant.DBCountMode;
+import com.gemantic.db.repository.impl.BaseRepositoryImpl;
+import com.gemantic.db.support.DBQuery;
+import com.gemantic.springcloud.model.PageResponse;
+import org.openjdk.jmh.annotations.*;
+
+import javax.persistence.EntityManager;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * findByQuery分页与不分页的对比,表中预置rows行,分页取第currentPage页
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FindByQueryBenchmark {
+
+    @Param({"10000"})
+    public int rows;
+
+    @Param({BenchQueries.RANGE, BenchQueries.MIXED})
+    public String shape;
+
+    @Param({"EXACT", "HAS_NEXT"})
+    public DBCountMode countMode;
+
+    @Param({"true", "false"})
+    public boolean compiledQuery;
+
+    @Param({"50"})
+    public int currentPage;
+
+    @Param({"20"})
+    public int pageSize;
+
+    private BenchDatabase database;
+
+    private EntityManager em;
+
+    private BaseRepositoryImpl<BenchTask, Long> repository;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        database = new BenchDatabase("find");
+        em = database.createEntityManager();
+        database.fill(em, rows);
+        repository = database.createRepository(em);
+        repository.getConfig().setCompiledQuery(compiledQuery);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        em.close();
+        database.close();
+    }
+
+    @Benchmark
+    public PageResponse<BenchTask> paged() throws Exception {
+        DBQuery<Long> query = BenchQueries.of(shape);
+        query.setCurrentPage(currentPage);
+        query.setPageSize(pageSize);
+        query.setCountMode(countMode);
+        PageResponse<BenchTask> response = repository.findByQuery(query);
+        em.clear();
+        return response;
+    }
+
+    @Benchmark
+    public PageResponse<BenchTask> unpaged() throws Exception {
+        DBQuery<Long> query = BenchQueries.of(shape);
+        query.setPage(Boolean.FALSE);
+        query.setPageSize(pageSize);
+        PageResponse<BenchTask> response = repository.findByQuery(query);
+        em.clear();
+        return response;
+    }
+}
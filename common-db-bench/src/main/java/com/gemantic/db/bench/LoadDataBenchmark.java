@@ -0,0 +1,69 @@
+package com.gemantic.db.bench;
+
+import com.gemantic.db.bench.model.BenchTask;
+import com.gemantic.db.repository.impl.BaseRepositoryImpl;
+import org.openjdk.jmh.annotations.*;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LOAD DATA LOCAL INFILE与批量INSERT IGNORE的对比,H2不支持LOAD DATA,需要-Dbench.jdbc.url指定开启allowLoadLocalInfile=true的MySQL
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class LoadDataBenchmark {
+
+    @Param({"100000"})
+    public int rows;
+
+    private BenchDatabase database;
+
+    private EntityManager em;
+
+    private BaseRepositoryImpl<BenchTask, Long> repository;
+
+    private List<BenchTask> tasks;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        if (!BenchDatabase.isMySql()) {
+            throw new IllegalStateException("LoadDataBenchmark requires -D" + BenchDatabase.URL_PROPERTY + "=jdbc:mysql://...?allowLoadLocalInfile=true");
+        }
+        database = new BenchDatabase("load");
+        em = database.createEntityManager();
+        repository = database.createRepository(em);
+    }
+
+    @Setup(Level.Invocation)
+    public void prepare() {
+        database.truncate(em);
+        tasks = BenchDatabase.newTasks(rows);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (null != em) {
+            em.close();
+            database.close();
+        }
+    }
+
+    @Benchmark
+    public long bulkLoad() throws Exception {
+        em.getTransaction().begin();
+        long count = repository.bulkLoad(tasks, false);
+        em.getTransaction().commit();
+        return count;
+    }
+
+    @Benchmark
+    public List<Integer> bulkInsert() throws Exception {
+        em.getTransaction().begin();
+        List<Integer> counts = repository.bulkInsertCounts(tasks);
+        em.getTransaction().commit();
+        return counts;
+    }
+}
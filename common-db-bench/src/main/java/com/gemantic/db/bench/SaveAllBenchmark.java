@@ -0,0 +1,60 @@
+package com.gemantic.db.bench;
+
+import com.gemantic.db.bench.model.BenchTask;
+import com.gemantic.db.repository.impl.BaseRepositoryImpl;
+import com.gemantic.db.repository.support.SnowflakeIdGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * saveAll写入新对象:identity为数据库自增id逐条插入,snowflake为内存分配id后批量插入
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SaveAllBenchmark {
+
+    @Param({"1000"})
+    public int rows;
+
+    @Param({"identity", "snowflake"})
+    public String idMode;
+
+    private BenchDatabase database;
+
+    private EntityManager em;
+
+    private BaseRepositoryImpl<BenchTask, Long> repository;
+
+    private List<BenchTask> tasks;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        database = new BenchDatabase("saveAll");
+        em = database.createEntityManager();
+        repository = database.createRepository(em);
+        if ("snowflake".equals(idMode)) {
+            repository.getConfig().setIdGenerator(new SnowflakeIdGenerator(1L));
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void prepare() {
+        database.truncate(em);
+        tasks = BenchDatabase.newTasks(rows);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        em.close();
+        database.close();
+    }
+
+    @Benchmark
+    public List<BenchTask> saveAll() {
+        return database.inTransaction(em, e -> repository.saveAll(tasks));
+    }
+}
@@ -0,0 +1,53 @@
+package com.gemantic.db.bench;
+
+import com.gemantic.db.bench.model.BenchTask;
+import com.gemantic.db.util.DBUtil;
+import org.openjdk.jmh.annotations.*;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Tuple;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Root;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 指定字段查询结果的转换耗时:tuple2Object转实体,tuple2Map转map,结果集预先查出,只测转换
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TupleMappingBenchmark {
+
+    @Param({"1000", "10000"})
+    public int rows;
+
+    private List<Tuple> tuples;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        try (BenchDatabase database = new BenchDatabase("tuple")) {
+            EntityManager em = database.createEntityManager();
+            database.fill(em, rows);
+            CriteriaBuilder criteriaBuilder = em.getCriteriaBuilder();
+            CriteriaQuery<Tuple> criteriaQuery = criteriaBuilder.createTupleQuery();
+            Root<BenchTask> root = criteriaQuery.from(BenchTask.class);
+            criteriaQuery.multiselect(root.get("id").alias("id"), root.get("userId").alias("userId"), root.get("taskType").alias("taskType"),
+                    root.get("name").alias("name"), root.get("score").alias("score"), root.get("createAt").alias("createAt"));
+            tuples = em.createQuery(criteriaQuery).getResultList();
+            em.close();
+        }
+    }
+
+    @Benchmark
+    public List<BenchTask> tuple2Object() throws Exception {
+        return DBUtil.tuple2Object(tuples, BenchTask.class);
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> tuple2Map() {
+        return DBUtil.tuple2Map(tuples);
+    }
+}
@@ -0,0 +1,54 @@
+package com.gemantic.db.bench.model;
+
+import com.gemantic.db.model.BaseModel;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Table;
+
+@Entity
+@Table(name = "bench_task")
+public class BenchTask extends BaseModel {
+
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(name = "task_type")
+    private String taskType;
+
+    private String name;
+
+    private Integer score;
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public String getTaskType() {
+        return taskType;
+    }
+
+    public void setTaskType(String taskType) {
+        this.taskType = taskType;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public Integer getScore() {
+        return score;
+    }
+
+    public void setScore(Integer score) {
+        this.score = score;
+    }
+}
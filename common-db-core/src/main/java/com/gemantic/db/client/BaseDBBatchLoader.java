@@ -0,0 +1,209 @@
+package com.gemantic.db.client;
+
+import com.gemantic.db.model.BaseModel;
+import com.gemantic.springcloud.model.Response;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.apache.commons.collections4.CollectionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 合并getById请求:窗口时间内(或累计到maxBatchSize个编号)的请求合并为一次findByIds调用,结果按编号分发给各调用方。
+ * 不存在的编号返回null,调用失败或返回非成功响应时该批所有请求异常完成。
+ * 默认使用共享的有界线程池发送请求(队列满时由提交线程执行),可通过构造参数传入自己的Executor
+ */
+public class BaseDBBatchLoader<T> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BaseDBBatchLoader.class);
+
+    public static final long DEFAULT_WINDOW_MILLIS = 5L;
+
+    public static final int DEFAULT_MAX_BATCH_SIZE = 500;
+
+    public static final int DEFAULT_DISPATCHER_THREADS = 4;
+
+    public static final int DEFAULT_DISPATCHER_QUEUE_SIZE = 1000;
+
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "db-batch-loader-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final Executor DEFAULT_DISPATCHER = newDispatcher();
+
+    private final BaseDBClient<T> client;
+
+    private final Function<T, Long> idFunction;
+
+    private final long windowMillis;
+
+    private final int maxBatchSize;
+
+    private final Executor dispatcher;
+
+    private Map<Long, CompletableFuture<T>> pending = new LinkedHashMap<>();
+
+    private ScheduledFuture<?> scheduled;
+
+    public BaseDBBatchLoader(BaseDBClient<T> client) {
+        this(client, t -> ((BaseModel) t).getId(), DEFAULT_WINDOW_MILLIS, DEFAULT_MAX_BATCH_SIZE);
+    }
+
+    public BaseDBBatchLoader(BaseDBClient<T> client, Function<T, Long> idFunction, long windowMillis, int maxBatchSize) {
+        this(client, idFunction, windowMillis, maxBatchSize, null);
+    }
+
+    /**
+     * @param dispatcher 发送findByIds请求的线程池,为空时使用默认的共享有界线程池
+     */
+    public BaseDBBatchLoader(BaseDBClient<T> client, Function<T, Long> idFunction, long windowMillis, int maxBatchSize, Executor dispatcher) {
+        this.client = client;
+        this.idFunction = idFunction;
+        this.windowMillis = Math.max(0L, windowMillis);
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.dispatcher = null == dispatcher ? DEFAULT_DISPATCHER : dispatcher;
+    }
+
+    private static Executor newDispatcher() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(DEFAULT_DISPATCHER_THREADS, DEFAULT_DISPATCHER_THREADS, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(DEFAULT_DISPATCHER_QUEUE_SIZE), r -> {
+            Thread thread = new Thread(r, "db-batch-loader");
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    public CompletableFuture<T> load(Long id) {
+        if (null == id) {
+            return CompletableFuture.completedFuture(null);
+        }
+        Map<Long, CompletableFuture<T>> batch = null;
+        CompletableFuture<T> future;
+        synchronized (this) {
+            future = pending.get(id);
+            if (null == future) {
+                future = new CompletableFuture<>();
+                pending.put(id, future);
+            }
+            if (pending.size() >= maxBatchSize) {
+                batch = takePending();
+            } else if (null == scheduled) {
+                scheduled = SCHEDULER.schedule(this::flushAsync, windowMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (null != batch) {
+            dispatchAsync(batch);
+        }
+        return future;
+    }
+
+    /**
+     * 批量加载,返回编号到对象的映射,不存在的编号不在结果中
+     */
+    public CompletableFuture<Map<Long, T>> loadMany(Collection<Long> ids) {
+        if (CollectionUtils.isEmpty(ids)) {
+            return CompletableFuture.completedFuture(Maps.newHashMap());
+        }
+        Map<Long, CompletableFuture<T>> futures = new LinkedHashMap<>();
+        for (Long id : ids) {
+            if (null != id && !futures.containsKey(id)) {
+                futures.put(id, load(id));
+            }
+        }
+        return CompletableFuture.allOf(futures.values().toArray(new CompletableFuture[0])).thenApply(v -> {
+            Map<Long, T> result = new LinkedHashMap<>();
+            futures.forEach((id, future) -> {
+                T value = future.join();
+                if (null != value) {
+                    result.put(id, value);
+                }
+            });
+            return result;
+        });
+    }
+
+    /**
+     * 立即发送当前窗口内的请求
+     */
+    public void flush() {
+        Map<Long, CompletableFuture<T>> batch;
+        synchronized (this) {
+            batch = takePending();
+        }
+        dispatch(batch);
+    }
+
+    private void flushAsync() {
+        Map<Long, CompletableFuture<T>> batch;
+        synchronized (this) {
+            batch = takePending();
+        }
+        dispatchAsync(batch);
+    }
+
+    private void dispatchAsync(Map<Long, CompletableFuture<T>> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            dispatcher.execute(() -> dispatch(batch));
+        } catch (Throwable e) {
+            LOG.error("batch load ids {} rejected", batch.keySet(), e);
+            batch.values().forEach(f -> f.completeExceptionally(e));
+        }
+    }
+
+    private Map<Long, CompletableFuture<T>> takePending() {
+        Map<Long, CompletableFuture<T>> batch = pending;
+        pending = new LinkedHashMap<>();
+        if (null != scheduled) {
+            scheduled.cancel(false);
+            scheduled = null;
+        }
+        return batch;
+    }
+
+    private void dispatch(Map<Long, CompletableFuture<T>> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            Response<List<T>> response = client.findByIds(Lists.newArrayList(batch.keySet()));
+            if (null == response || !Objects.equals(Response.ok().getCode(), response.getCode())) {
+                throw new IllegalStateException("findByIds failed: " + (null == response ? "null response" : response.getCode() + " " + response.getMessage()));
+            }
+            List<T> data = response.getData();
+            if (CollectionUtils.isNotEmpty(data)) {
+                for (T t : data) {
+                    CompletableFuture<T> future = batch.get(idFunction.apply(t));
+                    if (null != future) {
+                        future.complete(t);
+                    }
+                }
+            }
+            batch.values().forEach(f -> f.complete(null));
+        } catch (Throwable e) {
+            LOG.error("batch load ids {} error", batch.keySet(), e);
+            batch.values().forEach(f -> f.completeExceptionally(e));
+        }
+    }
+}
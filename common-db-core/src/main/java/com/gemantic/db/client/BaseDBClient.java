@@ -1,5 +1,13 @@
 package com.gemantic.db.client;
 
+import com.gemantic.db.support.DBBatchOperation;
+import com.gemantic.db.support.DBBatchResult;
+import com.gemantic.db.support.DBChunkProgress;
+import com.gemantic.db.support.DBGroupQuery;
+import com.gemantic.db.support.DBGroupResult;
+import com.gemantic.db.support.DBHistogramBucket;
+import com.gemantic.db.support.DBHistogramQuery;
+import com.gemantic.db.support.DBPatch;
 import com.gemantic.db.support.DBQuery;
 import com.gemantic.db.support.DBUpdate;
 import com.gemantic.springcloud.model.PageResponse;
@@ -49,12 +57,46 @@ public interface BaseDBClient<T> {
     Response<Integer> deleteByQuery(@ApiParam(value = "查询对象", required = true) @RequestBody DBQuery<Long> query)
             throws Exception;
 
+    @ApiOperation(value = "根据条件分批删除", notes = "按主键顺序每批chunkSize条在独立事务中删除,可限速,async为true时后台执行并返回任务编号")
+    @PostMapping("/delete/chunk")
+    Response<DBChunkProgress> deleteByQueryChunked(@ApiParam(value = "查询对象", required = true) @RequestBody DBQuery<Long> query,
+                                                   @ApiParam(value = "每批行数") @RequestParam(value = "chunkSize", required = false) Integer chunkSize,
+                                                   @ApiParam(value = "批间休眠毫秒数") @RequestParam(value = "sleepMillis", required = false) Long sleepMillis,
+                                                   @ApiParam(value = "每秒最多处理行数") @RequestParam(value = "maxRowsPerSecond", required = false) Long maxRowsPerSecond,
+                                                   @ApiParam(value = "是否后台执行") @RequestParam(value = "async", required = false, defaultValue = "false") Boolean async)
+            throws Exception;
+
+    @ApiOperation(value = "根据条件分批更新指定字段值", notes = "按主键顺序每批chunkSize条在独立事务中更新,可限速,async为true时后台执行并返回任务编号")
+    @PostMapping("/update/chunk")
+    Response<DBChunkProgress> updateByQueryChunked(@ApiParam(value = "查询对象", required = true) @RequestBody DBUpdate query,
+                                                   @ApiParam(value = "每批行数") @RequestParam(value = "chunkSize", required = false) Integer chunkSize,
+                                                   @ApiParam(value = "批间休眠毫秒数") @RequestParam(value = "sleepMillis", required = false) Long sleepMillis,
+                                                   @ApiParam(value = "每秒最多处理行数") @RequestParam(value = "maxRowsPerSecond", required = false) Long maxRowsPerSecond,
+                                                   @ApiParam(value = "是否后台执行") @RequestParam(value = "async", required = false, defaultValue = "false") Boolean async)
+            throws Exception;
+
+    @ApiOperation(value = "分批删除/更新任务进度", notes = "分批删除/更新任务进度,任务结束一小时后清除")
+    @GetMapping("/job/{jobId}")
+    Response<DBChunkProgress> getJob(@ApiParam(value = "任务编号", required = true) @PathVariable("jobId") String jobId)
+            throws Exception;
+
+    @ApiOperation(value = "取消分批删除/更新任务", notes = "当前批执行完后停止,返回任务是否存在")
+    @DeleteMapping("/job/{jobId}")
+    Response<Boolean> cancelJob(@ApiParam(value = "任务编号", required = true) @PathVariable("jobId") String jobId)
+            throws Exception;
+
     @ApiOperation(value = "根据编号查询", notes = "根据编号查询")
     @GetMapping("/{id}")
     Response<T> getById(
             @ApiParam(value = "编号", required = true) @PathVariable("id") Long id)
             throws Exception;
 
+    @ApiOperation(value = "根据编号集合批量查询", notes = "根据编号集合批量查询,编号去重后一次IN查询,不保证顺序,不存在的编号不返回")
+    @PostMapping("/ids")
+    Response<List<T>> findByIds(
+            @ApiParam(value = "编号集合", required = true) @RequestBody List<Long> ids)
+            throws Exception;
+
     @ApiOperation(value = "根据条件查询", notes = "根据条件查询")
     @GetMapping
     Response<PageResponse<T>> find(
@@ -82,9 +124,17 @@ public interface BaseDBClient<T> {
             @ApiParam(value = "like的与或关系", allowableValues = "AND,OR") @RequestParam(value = "likeOperation", required = false, defaultValue = "AND")
                     String likeOperation,
             @ApiParam(value = "params的与或关系", allowableValues = "AND,OR") @RequestParam(value = "paramsOperation", required = false, defaultValue = "AND")
-                    String paramsOperation)
+                    String paramsOperation,
+            @ApiParam(value = "likes的查询方式:LIKE-like查询,MATCH-全文检索(需要FULLTEXT索引,未指定排序时按相关度排序)", allowableValues = "LIKE,MATCH") @RequestParam(value = "likeType", required = false, defaultValue = "LIKE")
+                    String likeType)
             throws Exception;
 
+    default Response<PageResponse<T>> find(List<Long> ids, String timeField, Long startAt, Long endAt, List<String> orderBy, List<String> direction,
+                                           List<String> likeFields, List<String> likes, List<String> notSplitFields, Integer cp, Integer ps,
+                                           Map<String, String> params, String likeOperation, String paramsOperation) throws Exception {
+        return find(ids, timeField, startAt, endAt, orderBy, direction, likeFields, likes, notSplitFields, cp, ps, params, likeOperation, paramsOperation, null);
+    }
+
     @ApiOperation(value = "复杂条件查询", notes = "复杂条件查询")
     @PostMapping("/query")
     Response<PageResponse<T>> query(@ApiParam(value = "查询对象", required = true) @RequestBody DBQuery query)
@@ -96,6 +146,44 @@ public interface BaseDBClient<T> {
     Response<PageResponse<Map<String,Object>>> queryMap(@ApiParam(value = "查询对象", required = true) @RequestBody DBQuery query)
             throws Exception;
 
+    @ApiOperation(value = "分组统计", notes = "按条件过滤后分组聚合(count,count distinct,sum,min,max,avg),支持having、排序及limit,只返回聚合结果")
+    @PostMapping("/group")
+    Response<List<DBGroupResult>> group(@ApiParam(value = "分组统计查询对象", required = true) @RequestBody DBGroupQuery query)
+            throws Exception;
+
+    @ApiOperation(value = "时间分桶统计", notes = "按时间字段分桶(MINUTE,HOUR,DAY,MONTH)统计行数与聚合值,返回连续的桶,没有数据的桶行数为0")
+    @PostMapping("/histogram")
+    Response<List<DBHistogramBucket>> histogram(@ApiParam(value = "时间分桶统计查询对象", required = true) @RequestBody DBHistogramQuery query)
+            throws Exception;
+
+    @ApiOperation(value = "简单查询时间分桶统计", notes = "按时间字段分桶(MINUTE,HOUR,DAY,MONTH)统计行数与sum/avg,返回连续的桶,没有数据的桶行数为0")
+    @GetMapping("/histogram")
+    Response<List<DBHistogramBucket>> histogram(@ApiParam(value = "时间字段") @RequestParam(value = "timeField", required = false, defaultValue = "createAt")
+                                                        String timeField,
+                                                @ApiParam(value = "起始时间(包含)") @RequestParam(value = "startAt", required = false)
+                                                        Long startAt,
+                                                @ApiParam(value = "结束时间(包含)") @RequestParam(value = "endAt", required = false) Long endAt,
+                                                @ApiParam(value = "分桶间隔", allowableValues = "MINUTE,HOUR,DAY,MONTH") @RequestParam(value = "interval", required = false, defaultValue = "DAY")
+                                                        String interval,
+                                                @ApiParam(value = "时区,如Asia/Shanghai") @RequestParam(value = "timeZone", required = false)
+                                                        String timeZone,
+                                                @ApiParam(value = "求和字段") @RequestParam(value = "sumFields", required = false)
+                                                        List<String> sumFields,
+                                                @ApiParam(value = "平均值字段") @RequestParam(value = "avgFields", required = false)
+                                                        List<String> avgFields,
+                                                @ApiParam(value = "like查询字段") @RequestParam(value = "likeFields", required = false)
+                                                        List<String> likeFields,
+                                                @ApiParam(value = "like查询值") @RequestParam(value = "likes", required = false)
+                                                        List<String> likes,
+                                                @ApiParam(value = "不切割的等值查询") @RequestParam(value = "notSplitFields", required = false)
+                                                        List<String> notSplitFields,
+                                                @ApiParam(value = "其他参数") @SpringQueryMap Map<String, String> params,
+                                                @ApiParam(value = "like的与或关系", allowableValues = "AND,OR") @RequestParam(value = "likeOperation", required = false, defaultValue = "AND")
+                                                        String likeOperation,
+                                                @ApiParam(value = "params的与或关系", allowableValues = "AND,OR") @RequestParam(value = "paramsOperation", required = false, defaultValue = "AND")
+                                                        String paramsOperation)
+            throws Exception;
+
 
     @ApiOperation(value = "根据条件查询更新指定字段值", notes = "根据条件查询更新指定字段值")
     @PostMapping("/update")
@@ -113,5 +201,27 @@ public interface BaseDBClient<T> {
     Response<Void> bulkSave(
             @ApiParam(value = "对象", required = true) @RequestBody List<T> data) throws Exception;
 
+    @ApiOperation(value = "LOAD DATA流式导入对象,replace为false时重复唯一键不导入,为true时替换旧记录", notes = "使用 LOAD DATA LOCAL INFILE,连接需开启allowLoadLocalInfile=true,返回导入行数")
+    @PostMapping("/bulk/load")
+    Response<Long> bulkLoad(
+            @ApiParam(value = "对象", required = true) @RequestBody List<T> data,
+            @ApiParam(value = "是否替换唯一键重复的记录") @RequestParam(value = "replace", required = false, defaultValue = "false") Boolean replace) throws Exception;
+
+    @ApiOperation(value = "按编号批量更新不同的字段值", notes = "字段集合相同的补丁合并为 UPDATE ... SET 字段=? WHERE id=? 批量执行,只更新传入的字段与updateAt,返回影响行数")
+    @PostMapping("/bulk/patch")
+    Response<Integer> bulkPatch(
+            @ApiParam(value = "补丁集合", required = true) @RequestBody List<DBPatch<Long>> patches) throws Exception;
+
+    @ApiOperation(value = "批量执行写操作", notes = "按顺序在同一事务中执行SAVE/BULK_INSERT/BULK_SAVE/UPDATE/DELETE/PATCH,任一操作失败全部回滚,返回每个操作的结果")
+    @PostMapping("/batch")
+    Response<List<DBBatchResult>> batch(
+            @ApiParam(value = "操作集合", required = true) @RequestBody List<DBBatchOperation<T>> operations) throws Exception;
+
+    /**
+     * 批量写操作构建器,execute时调用batch一次提交
+     */
+    default DBBatchBuilder<T> batchBuilder() {
+        return new DBBatchBuilder<>(this);
+    }
 
 }
@@ -0,0 +1,90 @@
+package com.gemantic.db.client;
+
+import com.gemantic.db.constant.DBBatchType;
+import com.gemantic.db.support.DBBatchOperation;
+import com.gemantic.db.support.DBBatchResult;
+import com.gemantic.db.support.DBPatch;
+import com.gemantic.db.support.DBQuery;
+import com.gemantic.db.support.DBQueryItem;
+import com.gemantic.db.support.DBUpdate;
+import com.gemantic.springcloud.model.Response;
+import com.google.common.collect.Lists;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 批量写操作构建器:按调用顺序收集操作,execute时一次请求提交,服务端在同一事务中依次执行,任一操作失败全部回滚
+ */
+public class DBBatchBuilder<T> {
+
+    private final BaseDBClient<T> client;
+
+    private final List<DBBatchOperation<T>> operations = Lists.newArrayList();
+
+    public DBBatchBuilder(BaseDBClient<T> client) {
+        this.client = client;
+    }
+
+    public DBBatchBuilder<T> save(List<T> data) {
+        return add(new DBBatchOperation<>(DBBatchType.SAVE, data, null, null, null));
+    }
+
+    public DBBatchBuilder<T> bulkInsert(List<T> data) {
+        return add(new DBBatchOperation<>(DBBatchType.BULK_INSERT, data, null, null, null));
+    }
+
+    public DBBatchBuilder<T> bulkSave(List<T> data) {
+        return add(new DBBatchOperation<>(DBBatchType.BULK_SAVE, data, null, null, null));
+    }
+
+    public DBBatchBuilder<T> update(DBUpdate update) {
+        return add(new DBBatchOperation<>(DBBatchType.UPDATE, null, update, null, null));
+    }
+
+    public DBBatchBuilder<T> update(List<DBQueryItem> andQuery, Map<String, Object> updateValues) {
+        DBUpdate update = new DBUpdate();
+        update.setAndQuery(andQuery);
+        update.setUpdateValues(updateValues);
+        return update(update);
+    }
+
+    public DBBatchBuilder<T> delete(DBQuery<Long> query) {
+        return add(new DBBatchOperation<>(DBBatchType.DELETE, null, null, query, null));
+    }
+
+    public DBBatchBuilder<T> delete(List<Long> ids) {
+        DBQuery<Long> query = new DBQuery<>();
+        query.setIds(ids);
+        return delete(query);
+    }
+
+    public DBBatchBuilder<T> patch(List<DBPatch<Long>> patches) {
+        return add(new DBBatchOperation<>(DBBatchType.PATCH, null, null, null, Lists.newArrayList(patches)));
+    }
+
+    /**
+     * 连续的patch合并为一个PATCH操作
+     */
+    public DBBatchBuilder<T> patch(Long id, Map<String, Object> fields) {
+        DBBatchOperation<T> last = operations.isEmpty() ? null : operations.get(operations.size() - 1);
+        if (null != last && DBBatchType.PATCH.equals(last.getType())) {
+            last.getPatches().add(new DBPatch<>(id, fields));
+            return this;
+        }
+        return patch(Lists.newArrayList(new DBPatch<>(id, fields)));
+    }
+
+    public List<DBBatchOperation<T>> build() {
+        return Lists.newArrayList(operations);
+    }
+
+    public Response<List<DBBatchResult>> execute() throws Exception {
+        return client.batch(build());
+    }
+
+    private DBBatchBuilder<T> add(DBBatchOperation<T> operation) {
+        operations.add(operation);
+        return this;
+    }
+}
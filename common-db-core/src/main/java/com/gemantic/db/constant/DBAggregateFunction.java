@@ -0,0 +1,6 @@
+package com.gemantic.db.constant;
+
+public enum DBAggregateFunction {
+    COUNT,COUNT_DISTINCT,SUM,MIN,MAX,AVG
+
+}
@@ -0,0 +1,6 @@
+package com.gemantic.db.constant;
+
+public enum DBBatchType {
+    SAVE,BULK_INSERT,BULK_SAVE,UPDATE,DELETE,PATCH
+
+}
@@ -0,0 +1,6 @@
+package com.gemantic.db.constant;
+
+public enum DBCountMode {
+    EXACT,CACHED,ESTIMATE,HAS_NEXT
+
+}
@@ -0,0 +1,6 @@
+package com.gemantic.db.constant;
+
+public enum DBFetchMode {
+    JOIN,BATCH,NONE
+
+}
@@ -0,0 +1,6 @@
+package com.gemantic.db.constant;
+
+public enum DBJobStatus {
+    RUNNING,FINISHED,FAILED,CANCELLED
+
+}
@@ -1,6 +1,6 @@
 package com.gemantic.db.constant;
 
 public enum DBOperation {
-    EQ,LIKE,NIN,IN,GT,GTE,LT,LTE,NEQ,NLIKE,AND,OR
+    EQ,LIKE,NIN,IN,GT,GTE,LT,LTE,NEQ,NLIKE,AND,OR,MATCH
 
 }
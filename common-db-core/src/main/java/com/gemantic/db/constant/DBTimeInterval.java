@@ -0,0 +1,6 @@
+package com.gemantic.db.constant;
+
+public enum DBTimeInterval {
+    MINUTE,HOUR,DAY,MONTH
+
+}
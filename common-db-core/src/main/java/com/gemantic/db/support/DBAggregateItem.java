@@ -0,0 +1,29 @@
+package com.gemantic.db.support;
+
+import com.gemantic.db.constant.DBAggregateFunction;
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.*;
+
+import java.io.Serializable;
+
+
+@ApiModel("聚合字段")
+@Data
+@ToString
+@EqualsAndHashCode
+@NoArgsConstructor
+@AllArgsConstructor
+public class DBAggregateItem implements Serializable {
+    private static final long serialVersionUID = -3178466520367945231L;
+
+    @ApiModelProperty(value = "聚合函数:COUNT-计数,COUNT_DISTINCT-去重计数,SUM-求和,MIN-最小值,MAX-最大值,AVG-平均值",allowableValues = "COUNT,COUNT_DISTINCT,SUM,MIN,MAX,AVG")
+    private DBAggregateFunction function = DBAggregateFunction.COUNT;
+
+    @ApiModelProperty(value = "字段名,COUNT不传时统计行数")
+    private String field;
+
+    @ApiModelProperty(value = "结果名,用于having、排序及结果取值,不传默认为函数名小写_字段名,如sum_score,行数统计为count")
+    private String alias;
+
+}
@@ -0,0 +1,36 @@
+package com.gemantic.db.support;
+
+import com.gemantic.db.constant.DBBatchType;
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.*;
+
+import java.io.Serializable;
+import java.util.List;
+
+
+@ApiModel("批量写操作")
+@Data
+@ToString
+@EqualsAndHashCode
+@NoArgsConstructor
+@AllArgsConstructor
+public class DBBatchOperation<T> implements Serializable {
+    private static final long serialVersionUID = -2291853021761839465L;
+
+    @ApiModelProperty(value = "操作类型:SAVE-对象保存,BULK_INSERT-批量插入,BULK_SAVE-批量保存,UPDATE-查询更新,DELETE-查询删除,PATCH-按编号批量更新",allowableValues = "SAVE,BULK_INSERT,BULK_SAVE,UPDATE,DELETE,PATCH")
+    private DBBatchType type;
+
+    @ApiModelProperty(value = "对象集合,SAVE/BULK_INSERT/BULK_SAVE使用")
+    private List<T> data;
+
+    @ApiModelProperty(value = "查询更新对象,UPDATE使用")
+    private DBUpdate update;
+
+    @ApiModelProperty(value = "查询对象,DELETE使用")
+    private DBQuery<Long> query;
+
+    @ApiModelProperty(value = "补丁集合,PATCH使用")
+    private List<DBPatch<Long>> patches;
+
+}
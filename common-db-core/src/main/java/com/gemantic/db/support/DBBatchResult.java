@@ -0,0 +1,33 @@
+package com.gemantic.db.support;
+
+import com.gemantic.db.constant.DBBatchType;
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.*;
+
+import java.io.Serializable;
+import java.util.List;
+
+
+@ApiModel("批量写操作结果")
+@Data
+@ToString
+@EqualsAndHashCode
+@NoArgsConstructor
+@AllArgsConstructor
+public class DBBatchResult implements Serializable {
+    private static final long serialVersionUID = 6630718874239514720L;
+
+    @ApiModelProperty(value = "操作序号,从0开始")
+    private int index;
+
+    @ApiModelProperty(value = "操作类型")
+    private DBBatchType type;
+
+    @ApiModelProperty(value = "影响行数,SAVE为保存的对象个数")
+    private long count;
+
+    @ApiModelProperty(value = "保存后的对象编号,仅SAVE返回")
+    private List<Long> ids;
+
+}
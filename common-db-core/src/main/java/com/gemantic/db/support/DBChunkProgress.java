@@ -0,0 +1,52 @@
+package com.gemantic.db.support;
+
+import com.gemantic.db.constant.DBJobStatus;
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.*;
+
+import java.io.Serializable;
+
+@ApiModel("分批删除/更新进度")
+@Data
+@ToString
+@EqualsAndHashCode
+@NoArgsConstructor
+@AllArgsConstructor
+public class DBChunkProgress implements Serializable {
+
+    private static final long serialVersionUID = -6047461630838911937L;
+
+    @ApiModelProperty(value = "任务编号")
+    private String jobId;
+
+    @ApiModelProperty(value = "操作", allowableValues = "DELETE,UPDATE")
+    private String operation;
+
+    @ApiModelProperty(value = "任务状态")
+    private DBJobStatus status;
+
+    @ApiModelProperty(value = "每批行数")
+    private Integer chunkSize;
+
+    @ApiModelProperty(value = "已执行批数")
+    private Integer chunks = 0;
+
+    @ApiModelProperty(value = "已匹配的记录数")
+    private Long matched = 0L;
+
+    @ApiModelProperty(value = "已删除/更新的记录数")
+    private Long affected = 0L;
+
+    @ApiModelProperty(value = "最后处理的编号,下一批从大于此编号的记录开始")
+    private Object lastId;
+
+    @ApiModelProperty(value = "开始时间")
+    private Long startAt;
+
+    @ApiModelProperty(value = "结束时间")
+    private Long endAt;
+
+    @ApiModelProperty(value = "失败原因")
+    private String error;
+}
@@ -0,0 +1,43 @@
+package com.gemantic.db.support;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.*;
+
+import java.io.Serializable;
+import java.util.List;
+
+@ApiModel("分组统计查询对象")
+@Data
+@ToString
+@EqualsAndHashCode
+@NoArgsConstructor
+@AllArgsConstructor
+public class DBGroupQuery implements Serializable {
+    private static final long serialVersionUID = 2461187392018825146L;
+
+    @ApiModelProperty(value = "and 查询")
+    private List<DBQueryItem> andQuery;
+
+    @ApiModelProperty(value = "or 查询")
+    private List<DBQueryItem> orQuery;
+
+    @ApiModelProperty(value = "分组字段")
+    private List<String> groupBy;
+
+    @ApiModelProperty(value = "聚合字段,不传默认统计行数count")
+    private List<DBAggregateItem> aggregates;
+
+    @ApiModelProperty(value = "分组过滤条件(having),字段名为聚合结果名或分组字段,操作符支持EQ,NEQ,GT,GTE,LT,LTE,IN,NIN")
+    private List<DBQueryItem> having;
+
+    @ApiModelProperty(value = "排序字段,字段名为聚合结果名或分组字段")
+    private List<DBSortItem> sorts;
+
+    @ApiModelProperty(value = "最多返回的分组个数,不传返回全部")
+    private Integer limit;
+
+    @ApiModelProperty(value = "超时时间(毫秒),从仓库开始处理计算,超时后取消正在执行的数据库语句,不传使用服务端默认值")
+    private Long timeout;
+
+}
@@ -0,0 +1,23 @@
+package com.gemantic.db.support;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+import java.io.Serializable;
+import java.util.Map;
+
+@EqualsAndHashCode
+@ApiModel("分组统计结果")
+@Data
+@ToString
+public class DBGroupResult implements Serializable {
+    private static final long serialVersionUID = -4907257436178270358L;
+    @ApiModelProperty(value = "分组字段及对应字段值")
+    private Map<String,Object> groupBy;
+    @ApiModelProperty(value = "聚合结果:key-聚合结果名;value-聚合值")
+    private Map<String,Object> aggregates;
+
+}
@@ -0,0 +1,32 @@
+package com.gemantic.db.support;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.*;
+
+import java.io.Serializable;
+import java.util.Map;
+
+
+@ApiModel("时间分桶统计结果")
+@Data
+@ToString
+@EqualsAndHashCode
+@NoArgsConstructor
+@AllArgsConstructor
+public class DBHistogramBucket implements Serializable {
+    private static final long serialVersionUID = -7301742859360182244L;
+
+    @ApiModelProperty(value = "桶起始时间(包含)")
+    private Long startAt;
+
+    @ApiModelProperty(value = "桶结束时间(不包含)")
+    private Long endAt;
+
+    @ApiModelProperty(value = "行数")
+    private long count;
+
+    @ApiModelProperty(value = "聚合结果:key-聚合结果名,没有数据的桶计数为0,其他为null")
+    private Map<String,Object> aggregates;
+
+}
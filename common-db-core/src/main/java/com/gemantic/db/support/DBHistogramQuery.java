@@ -0,0 +1,48 @@
+package com.gemantic.db.support;
+
+import com.gemantic.db.constant.DBTimeInterval;
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.*;
+
+import java.io.Serializable;
+import java.util.List;
+
+
+@ApiModel("时间分桶统计查询")
+@Data
+@ToString
+@EqualsAndHashCode
+@NoArgsConstructor
+@AllArgsConstructor
+public class DBHistogramQuery implements Serializable {
+    private static final long serialVersionUID = 2143568370924116375L;
+
+    @ApiModelProperty(value = "and 查询")
+    private List<DBQueryItem> andQuery;
+
+    @ApiModelProperty(value = "or 查询")
+    private List<DBQueryItem> orQuery;
+
+    @ApiModelProperty(value = "时间字段,值为毫秒时间戳")
+    private String timeField = "createAt";
+
+    @ApiModelProperty(value = "分桶间隔:MINUTE-分钟,HOUR-小时,DAY-天,MONTH-自然月",allowableValues = "MINUTE,HOUR,DAY,MONTH")
+    private DBTimeInterval interval = DBTimeInterval.DAY;
+
+    @ApiModelProperty(value = "时区,如Asia/Shanghai或+08:00,不传使用服务端时区")
+    private String timeZone;
+
+    @ApiModelProperty(value = "起始时间(包含),同时作为第一个桶的位置,不传从有数据的第一个桶开始")
+    private Long startAt;
+
+    @ApiModelProperty(value = "结束时间(包含),同时作为最后一个桶的位置,不传到有数据的最后一个桶结束")
+    private Long endAt;
+
+    @ApiModelProperty(value = "每个桶的聚合字段,行数总是返回,MONTH不支持COUNT_DISTINCT")
+    private List<DBAggregateItem> aggregates;
+
+    @ApiModelProperty(value = "超时时间(毫秒),从仓库开始处理计算,超时后取消正在执行的数据库语句,不传使用服务端默认值")
+    private Long timeout;
+
+}
@@ -0,0 +1,33 @@
+package com.gemantic.db.support;
+
+import com.gemantic.springcloud.model.PageResponse;
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+
+@ApiModel("数据库分页结果")
+public class DBPageResponse<T> extends PageResponse<T> {
+
+    private static final long serialVersionUID = -2389158417232096411L;
+
+    @ApiModelProperty(value = "游标分页的下一页游标,为空表示没有下一页")
+    private String nextCursor;
+
+    @ApiModelProperty(value = "是否有下一页")
+    private Boolean hasNext;
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    public Boolean getHasNext() {
+        return hasNext;
+    }
+
+    public void setHasNext(Boolean hasNext) {
+        this.hasNext = hasNext;
+    }
+}
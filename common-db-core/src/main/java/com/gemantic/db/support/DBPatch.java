@@ -0,0 +1,26 @@
+package com.gemantic.db.support;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.*;
+
+import java.io.Serializable;
+import java.util.Map;
+
+
+@ApiModel("按编号更新")
+@Data
+@ToString
+@EqualsAndHashCode
+@NoArgsConstructor
+@AllArgsConstructor
+public class DBPatch<ID> implements Serializable {
+    private static final long serialVersionUID = 5412839076146520391L;
+
+    @ApiModelProperty(value = "编号")
+    private ID id;
+
+    @ApiModelProperty(value = "更新值:key-字段名;value-更新值,多对一字段传关联对象编号,不传updateAt时更新为当前时间")
+    private Map<String,Object> fields;
+
+}
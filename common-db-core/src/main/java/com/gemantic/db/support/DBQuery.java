@@ -1,5 +1,7 @@
 package com.gemantic.db.support;
 
+import com.gemantic.db.constant.DBCountMode;
+import com.gemantic.db.constant.DBFetchMode;
 import io.swagger.annotations.ApiModel;
 import io.swagger.annotations.ApiModelProperty;
 import lombok.*;
@@ -37,11 +39,35 @@ public class DBQuery<ID> implements Serializable {
     @ApiModelProperty(value = "是否查询级联对象",allowableValues = "true,false")
     private boolean fetch = Boolean.TRUE;
 
+    @ApiModelProperty(value = "级联对象加载方式:JOIN-left join fetch一次查询(集合关联会使行数成倍增加并在内存中分页),BATCH-单值关联join,集合关联在查出本页对象后按关联字段各一次IN查询,NONE-不加载;不传时fetch为true使用JOIN,fetch为false时始终不加载",allowableValues = "JOIN,BATCH,NONE")
+    private DBFetchMode fetchMode;
+
+    @ApiModelProperty(value = "需要加载的级联字段,不传加载全部级联字段")
+    private List<String> fetchFields;
+
     @ApiModelProperty(value = "是否分页查询,传false则不统计总数",allowableValues = "true,false")
     private boolean page = Boolean.TRUE;
 
+    @ApiModelProperty(value = "分页总数统计方式:EXACT-每次count,CACHED-按查询条件缓存总数,ESTIMATE-无条件查询取表行数估计值(不支持有条件的查询),HAS_NEXT-不统计总数只判断是否有下一页",allowableValues = "EXACT,CACHED,ESTIMATE,HAS_NEXT")
+    private DBCountMode countMode = DBCountMode.EXACT;
+
+    @ApiModelProperty(value = "是否游标分页:按上一页最后一行的排序字段值定位下一页,不统计总数,忽略currentPage",allowableValues = "true,false")
+    private boolean seek = Boolean.FALSE;
+
+    @ApiModelProperty(value = "游标分页的游标,取上一页返回的nextCursor,首页不传")
+    private String cursor;
+
     @ApiModelProperty(value = "指定查询字段,key为查询字段名,value为映射字段值,value无值默认使用key")
     private Map<String,String> includeFields;
 
+    @ApiModelProperty(value = "流式导出时每次从数据库读取的行数,不传使用服务端默认值")
+    private Integer fetchSize;
+
+    @ApiModelProperty(value = "存在MATCH全文检索条件时是否按相关度从高到低排序,相关度相同再按sorts排序,游标分页时忽略",allowableValues = "true,false")
+    private boolean relevanceSort = Boolean.FALSE;
+
+    @ApiModelProperty(value = "超时时间(毫秒),从仓库开始处理计算,包含统计总数查询,超时后取消正在执行的数据库语句,不传使用服务端默认值")
+    private Long timeout;
+
 
 }
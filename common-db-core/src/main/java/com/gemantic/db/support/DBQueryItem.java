@@ -18,10 +18,10 @@ import java.util.List;
 public class DBQueryItem implements Serializable {
     private static final long serialVersionUID = -616185699125912712L;
 
-    @ApiModelProperty(value = "字段名")
+    @ApiModelProperty(value = "字段名,MATCH时可用逗号分隔多个字段,需与FULLTEXT索引的字段一致")
     private String field;
 
-    @ApiModelProperty(value = "操作符号：EQ-等值查询,LIKE-like查询,GT-大于查询,GTE-大于等于查询,LT-小于查询,LTE-小于等于查询,NEQ-不等于,NLIKE-not like",allowableValues = "EQ,LIKE,GT,GTE,LT,LTE,NEQ,NLIKE")
+    @ApiModelProperty(value = "操作符号：EQ-等值查询,LIKE-like查询,GT-大于查询,GTE-大于等于查询,LT-小于查询,LTE-小于等于查询,NEQ-不等于,NLIKE-not like,MATCH-全文检索(需要FULLTEXT索引,字段名可用逗号分隔多个字段,值为BOOLEAN MODE检索式)",allowableValues = "EQ,LIKE,GT,GTE,LT,LTE,NEQ,NLIKE,MATCH")
     private DBOperation operation = DBOperation.EQ;
 
     @ApiModelProperty(value = "字段值")
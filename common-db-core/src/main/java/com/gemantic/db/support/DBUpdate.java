@@ -25,4 +25,7 @@ public class DBUpdate implements Serializable {
 
     @ApiModelProperty(value = "更新值:key-字段名;value-更新值")
     private Map<String,Object> updateValues;
+
+    @ApiModelProperty(value = "超时时间(毫秒),超时后取消正在执行的数据库语句,不传使用服务端默认值")
+    private Long timeout;
 }
@@ -1,12 +1,12 @@
 package com.gemantic.db.util;
 
+import com.gemantic.db.constant.DBAggregateFunction;
 import com.gemantic.db.constant.DBOperation;
+import com.gemantic.db.support.DBAggregateItem;
 import com.gemantic.db.support.DBQueryItem;
 import com.gemantic.db.support.DBSortItem;
 import com.gemantic.springcloud.model.PageResponse;
-import com.gemantic.springcloud.utils.ReflectUtil;
 import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.hibernate.query.criteria.internal.ValueHandlerFactory;
@@ -19,12 +19,16 @@ import org.springframework.data.domain.Sort;
 
 import javax.persistence.*;
 import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.Expression;
 import javax.persistence.criteria.Path;
 import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Field;
 import java.lang.reflect.ReflectPermission;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -63,6 +67,29 @@ public class DBUtil {
         return pageable;
     }
 
+    /**
+     * 复制排序字段(忽略null),并在末尾追加id排序保证顺序唯一,排序字段为空时抛出IllegalArgumentException
+     */
+    public static List<DBSortItem> getSortItemsWithId(List<DBSortItem> sortItems, String idField) {
+        String id = StringUtils.isBlank(idField) ? "id" : idField;
+        List<DBSortItem> result = Lists.newArrayList();
+        if (CollectionUtils.isNotEmpty(sortItems)) {
+            for (DBSortItem sortItem : sortItems) {
+                if (null == sortItem) {
+                    continue;
+                }
+                if (StringUtils.isBlank(sortItem.getField())) {
+                    throw new IllegalArgumentException("sort field is empty " + sortItem);
+                }
+                result.add(sortItem);
+            }
+        }
+        if (result.stream().noneMatch(s -> s.getField().equalsIgnoreCase(id))) {
+            result.add(new DBSortItem(id, Sort.Direction.ASC.name()));
+        }
+        return result;
+    }
+
     public static Sort getSort(List<DBSortItem> sortItems)throws Exception{
         if(CollectionUtils.isEmpty(sortItems)){
             return Sort.by("id");
@@ -104,7 +131,7 @@ public class DBUtil {
             if (CollectionUtils.isEmpty(queryItem.getValues())) {
                 continue;
             }
-            Path path = getPath(queryItem.getField(), root);
+            Path path = DBOperation.MATCH.equals(queryItem.getOperation()) ? null : getPath(queryItem.getField(), root);
             Object firstValue = queryItem.getValues().get(0);
             Predicate predicate = null;
             switch (queryItem.getOperation()) {
@@ -150,6 +177,9 @@ public class DBUtil {
                 case NLIKE:
                     predicate = criteriaBuilder.notLike(path, "%" + firstValue.toString() + "%");
                     break;
+                case MATCH:
+                    predicate = criteriaBuilder.greaterThan(getMatchExpression(queryItem, root, criteriaBuilder), 0d);
+                    break;
 
             }
             if (null != predicate) {
@@ -171,11 +201,239 @@ public class DBUtil {
     }
 
 
+    /**
+     * 全文检索函数名,需要注册DBMetadataBuilderContributor,渲染为 MATCH(字段...) AGAINST(值 IN BOOLEAN MODE)
+     */
+    public static final String MATCH_FUNCTION = "match_against";
+
+    /**
+     * 全文检索相关度表达式,字段名可用逗号分隔多个字段
+     */
+    public static <T> Expression<Double> getMatchExpression(DBQueryItem queryItem, Root<T> root, CriteriaBuilder criteriaBuilder) {
+        List<Expression<?>> arguments = Lists.newArrayList();
+        for (String field : StringUtils.split(queryItem.getField(), ",")) {
+            arguments.add(getPath(StringUtils.trim(field), root));
+        }
+        arguments.add(criteriaBuilder.literal(String.valueOf(queryItem.getValues().get(0))));
+        return criteriaBuilder.function(MATCH_FUNCTION, Double.class, arguments.toArray(new Expression[]{}));
+    }
+
+    /**
+     * 有取值的MATCH查询条件
+     */
+    public static List<DBQueryItem> getMatchItems(List<DBQueryItem> andQuery, List<DBQueryItem> orQuery) {
+        List<DBQueryItem> result = Lists.newArrayList();
+        for (List<DBQueryItem> queryItems : Lists.newArrayList(andQuery, orQuery)) {
+            if (CollectionUtils.isEmpty(queryItems)) {
+                continue;
+            }
+            queryItems.stream().filter(q -> null != q && DBOperation.MATCH.equals(q.getOperation()) && CollectionUtils.isNotEmpty(q.getValues())).forEach(result::add);
+        }
+        return result;
+    }
+
+    /**
+     * 聚合结果名,未指定时为函数名小写_字段名,行数统计为count
+     */
+    public static String getAggregateAlias(DBAggregateItem aggregateItem) {
+        if (StringUtils.isNotBlank(aggregateItem.getAlias())) {
+            return aggregateItem.getAlias();
+        }
+        DBAggregateFunction function = null == aggregateItem.getFunction() ? DBAggregateFunction.COUNT : aggregateItem.getFunction();
+        if (StringUtils.isBlank(aggregateItem.getField())) {
+            return function.name().toLowerCase();
+        }
+        return function.name().toLowerCase() + "_" + aggregateItem.getField().replace(".", "_");
+    }
+
+    /**
+     * 聚合表达式,MIN/MAX使用least/greatest以支持日期等非数值字段
+     */
+    public static <T> Expression<?> getAggregateExpression(DBAggregateItem aggregateItem, Root<T> root, CriteriaBuilder criteriaBuilder) {
+        DBAggregateFunction function = null == aggregateItem.getFunction() ? DBAggregateFunction.COUNT : aggregateItem.getFunction();
+        if (StringUtils.isBlank(aggregateItem.getField())) {
+            if (DBAggregateFunction.COUNT.equals(function)) {
+                return criteriaBuilder.count(root);
+            }
+            throw new IllegalArgumentException("aggregate " + function + " field is empty");
+        }
+        Path path = getPath(aggregateItem.getField(), root);
+        switch (function) {
+            case COUNT:
+                return criteriaBuilder.count(path);
+            case COUNT_DISTINCT:
+                return criteriaBuilder.countDistinct(path);
+            case SUM:
+                return criteriaBuilder.sum(path);
+            case AVG:
+                return criteriaBuilder.avg(path);
+            case MIN:
+                return criteriaBuilder.least(path);
+            case MAX:
+                return criteriaBuilder.greatest(path);
+            default:
+                throw new IllegalArgumentException("unsupported aggregate function " + function);
+        }
+    }
+
+    /**
+     * 分组过滤条件,字段名对应expressions中的分组字段或聚合结果名
+     */
+    public static Predicate getHavingPredicate(List<DBQueryItem> queryItems, Map<String, Expression<?>> expressions, CriteriaBuilder criteriaBuilder) {
+        if (CollectionUtils.isEmpty(queryItems)) {
+            return null;
+        }
+        List<Predicate> predicates = Lists.newArrayList();
+        for (DBQueryItem queryItem : queryItems) {
+            if (CollectionUtils.isEmpty(queryItem.getValues())) {
+                continue;
+            }
+            Expression expression = expressions.get(queryItem.getField());
+            if (null == expression) {
+                throw new IllegalArgumentException("having field " + queryItem.getField() + " is not a group field or aggregate alias");
+            }
+            Class<?> javaType = expression.getJavaType();
+            List<Object> values = Lists.newArrayList();
+            for (Object v : queryItem.getValues()) {
+                values.add(null == javaType ? v : convertValue(v, javaType));
+            }
+            Comparable firstValue = (Comparable) values.get(0);
+            switch (queryItem.getOperation()) {
+                case EQ:
+                    predicates.add(criteriaBuilder.equal(expression, firstValue));
+                    break;
+                case NEQ:
+                    predicates.add(criteriaBuilder.notEqual(expression, firstValue));
+                    break;
+                case GT:
+                    predicates.add(criteriaBuilder.greaterThan(expression, firstValue));
+                    break;
+                case GTE:
+                    predicates.add(criteriaBuilder.greaterThanOrEqualTo(expression, firstValue));
+                    break;
+                case LT:
+                    predicates.add(criteriaBuilder.lessThan(expression, firstValue));
+                    break;
+                case LTE:
+                    predicates.add(criteriaBuilder.lessThanOrEqualTo(expression, firstValue));
+                    break;
+                case IN:
+                    predicates.add(expression.in(values));
+                    break;
+                case NIN:
+                    predicates.add(criteriaBuilder.not(expression.in(values)));
+                    break;
+                default:
+                    throw new IllegalArgumentException("unsupported having operation " + queryItem.getOperation());
+            }
+        }
+        if (CollectionUtils.isEmpty(predicates)) {
+            return null;
+        }
+        return criteriaBuilder.and(predicates.toArray(new Predicate[]{}));
+    }
+
+
+    private static final String CURSOR_SEPARATOR = ".";
+
+    private static final String CURSOR_NULL = "~";
+
+    /**
+     * 游标分页:编码最后一行的排序字段值
+     */
+    public static String encodeCursor(List<Object> values) {
+        List<String> parts = Lists.newArrayList();
+        for (Object value : values) {
+            if (null == value) {
+                parts.add(CURSOR_NULL);
+                continue;
+            }
+            String text;
+            if (value instanceof Date) {
+                text = String.valueOf(((Date) value).getTime());
+            } else if (value instanceof Enum) {
+                text = ((Enum) value).name();
+            } else {
+                text = value.toString();
+            }
+            parts.add(Base64.getUrlEncoder().withoutPadding().encodeToString(text.getBytes(StandardCharsets.UTF_8)));
+        }
+        return StringUtils.join(parts, CURSOR_SEPARATOR);
+    }
+
+    /**
+     * 游标分页:解码游标,游标为空返回null
+     */
+    public static List<String> decodeCursor(String cursor) {
+        if (StringUtils.isBlank(cursor)) {
+            return null;
+        }
+        List<String> values = Lists.newArrayList();
+        for (String part : StringUtils.splitPreserveAllTokens(cursor, CURSOR_SEPARATOR)) {
+            if (CURSOR_NULL.equals(part)) {
+                values.add(null);
+            } else {
+                values.add(new String(Base64.getUrlDecoder().decode(part), StandardCharsets.UTF_8));
+            }
+        }
+        return values;
+    }
+
+    /**
+     * 游标分页:构造 (s1,s2,...,id) 在游标之后的条件,展开为 s1>v1 or (s1=v1 and s2>v2) or ...
+     * 按mysql规则 null 在升序最前,降序最后
+     */
+    public static <T> Predicate getSeekPredicate(List<DBSortItem> sortItems, List<String> cursorValues, Root<T> root, CriteriaBuilder criteriaBuilder) {
+        List<Predicate> ors = Lists.newArrayList();
+        List<Predicate> equals = Lists.newArrayList();
+        for (int i = 0; i < sortItems.size(); i++) {
+            DBSortItem sortItem = sortItems.get(i);
+            Path path = getPath(sortItem.getField(), root);
+            Object value = getCursorValue(path, cursorValues.get(i));
+            boolean desc = Sort.Direction.DESC.name().equalsIgnoreCase(sortItem.getDirection());
+            Predicate after;
+            if (null == value) {
+                after = desc ? criteriaBuilder.disjunction() : criteriaBuilder.isNotNull(path);
+            } else if (desc) {
+                after = criteriaBuilder.or(criteriaBuilder.lessThan(path, (Comparable) value), criteriaBuilder.isNull(path));
+            } else {
+                after = criteriaBuilder.greaterThan(path, (Comparable) value);
+            }
+            List<Predicate> clause = Lists.newArrayList(equals);
+            clause.add(after);
+            ors.add(criteriaBuilder.and(clause.toArray(new Predicate[]{})));
+            equals.add(null == value ? criteriaBuilder.isNull(path) : criteriaBuilder.equal(path, value));
+        }
+        return criteriaBuilder.or(ors.toArray(new Predicate[]{}));
+    }
+
+    public static Object getCursorValue(Path<Object> path, String value) {
+        if (null == value) {
+            return null;
+        }
+        Class<?> javaType = path.getJavaType();
+        if (Date.class.isAssignableFrom(javaType)) {
+            return new Date(Long.parseLong(value));
+        }
+        if (Boolean.class.equals(javaType) || boolean.class.equals(javaType)) {
+            return Boolean.valueOf(value);
+        }
+        if (javaType.isEnum()) {
+            return Enum.valueOf((Class<Enum>) javaType, value);
+        }
+        return getPathValue(path, value);
+    }
+
+
     public static Object getPathValue(Path<Object> path, Object v) {
-        return ValueHandlerFactory.convert(v, path.getJavaType());
+        return convertValue(v, path.getJavaType());
 
     }
 
+    public static Object convertValue(Object v, Class<?> javaType) {
+        return ValueHandlerFactory.convert(v, javaType);
+    }
+
 
     public static <O, T> Path<O> getPath(String fieldName, Root<T> root) {
         String[] fieldNamePaths = StringUtils.splitByWholeSeparator(fieldName, ".");
@@ -213,14 +471,10 @@ public class DBUtil {
         if(CollectionUtils.isEmpty(tuples)){
             return Lists.newArrayList();
         }
-        List<Map<String,Object>> result = Lists.newArrayList();
+        List<Map<String,Object>> result = Lists.newArrayListWithCapacity(tuples.size());
+        TupleRowMap.KeyIndex keyIndex = new TupleRowMap.KeyIndex(TupleMapper.getAliases(tuples.get(0).getElements()));
         for(Tuple tuple : tuples) {
-            Map<String,Object> map = Maps.newHashMap();
-            List<TupleElement<?>> tupleElements = tuple.getElements();
-            for(TupleElement<?> tupleElement : tupleElements){
-                map.put(tupleElement.getAlias(),tuple.get(tupleElement.getAlias(),tupleElement.getJavaType()));
-            }
-           result.add(map);
+            result.add(new TupleRowMap(keyIndex, tuple.toArray()));
         }
         return result;
 
@@ -230,19 +484,10 @@ public class DBUtil {
         if(CollectionUtils.isEmpty(tuples) || null == tClass){
             return Lists.newArrayList();
         }
-        List<T> result = Lists.newArrayList();
+        List<T> result = Lists.newArrayListWithCapacity(tuples.size());
+        TupleMapper<T> mapper = TupleMapper.of(tClass, tuples.get(0).getElements());
         for(Tuple tuple : tuples) {
-            T object = tClass.newInstance();
-            List<TupleElement<?>> tupleElements = tuple.getElements();
-            for(TupleElement<?> tupleElement : tupleElements){
-                Field field = ReflectUtil.getField(tupleElement.getAlias(),tClass);
-                if(null == field){
-                    continue;
-                }
-                field.setAccessible(true);
-                field.set(object,tuple.get(tupleElement.getAlias(),tupleElement.getJavaType()));
-            }
-            result.add(object);
+            result.add(mapper.map(tuple));
         }
         return result;
     }
@@ -0,0 +1,94 @@
+package com.gemantic.db.util;
+
+import com.gemantic.springcloud.utils.ReflectUtil;
+import com.google.common.collect.Lists;
+
+import javax.persistence.Tuple;
+import javax.persistence.TupleElement;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * tuple到对象的映射器,按(对象类型,查询别名列表)缓存,字段setter只解析一次,按tuple下标取值。
+ * 别名来自调用方的includeFields,缓存超过容量按最近最少使用淘汰
+ */
+public class TupleMapper<T> {
+
+    public static final int MAX_MAPPERS = 512;
+
+    private static final Map<List<Object>, TupleMapper<?>> MAPPERS = Collections.synchronizedMap(new LinkedHashMap<List<Object>, TupleMapper<?>>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<List<Object>, TupleMapper<?>> eldest) {
+            return size() > MAX_MAPPERS;
+        }
+    });
+
+    private final MethodHandle constructor;
+
+    private final MethodHandle[] setters;
+
+    private TupleMapper(Class<T> tClass, List<String> aliases) {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        try {
+            this.constructor = lookup.findConstructor(tClass, MethodType.methodType(void.class)).asType(MethodType.methodType(Object.class));
+        } catch (Exception e) {
+            throw new IllegalStateException("no default constructor " + tClass, e);
+        }
+        this.setters = new MethodHandle[aliases.size()];
+        for (int i = 0; i < aliases.size(); i++) {
+            Field field = ReflectUtil.getField(aliases.get(i), tClass);
+            if (null == field) {
+                continue;
+            }
+            field.setAccessible(true);
+            try {
+                setters[i] = lookup.unreflectSetter(field).asType(MethodType.methodType(void.class, Object.class, Object.class));
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException("can not access field " + field, e);
+            }
+        }
+    }
+
+    public static <T> TupleMapper<T> of(Class<T> tClass, List<TupleElement<?>> tupleElements) {
+        List<String> aliases = getAliases(tupleElements);
+        List<Object> key = Lists.newArrayList(tClass, aliases);
+        return (TupleMapper<T>) MAPPERS.computeIfAbsent(key, k -> new TupleMapper<>(tClass, aliases));
+    }
+
+    public static int size() {
+        return MAPPERS.size();
+    }
+
+    public static List<String> getAliases(List<TupleElement<?>> tupleElements) {
+        List<String> aliases = Lists.newArrayListWithCapacity(tupleElements.size());
+        for (TupleElement<?> tupleElement : tupleElements) {
+            aliases.add(tupleElement.getAlias());
+        }
+        return aliases;
+    }
+
+    /**
+     * 构造器与setter抛出的异常及Error原样抛出,MethodHandle声明的其他Throwable包装为IllegalStateException
+     */
+    public T map(Tuple tuple) throws Exception {
+        try {
+            T object = (T) (Object) constructor.invokeExact();
+            for (int i = 0; i < setters.length; i++) {
+                if (null != setters[i]) {
+                    setters[i].invokeExact((Object) object, tuple.get(i));
+                }
+            }
+            return object;
+        } catch (Exception | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("map tuple error " + tuple, e);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.gemantic.db.util;
+
+import com.google.common.collect.Maps;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * 投影查询的一行结果,同一次查询的所有行共享一个字段下标,每行只保存值数组。
+ * 修改查询字段的值直接写入数组,新增或删除字段时整行复制到LinkedHashMap,之后的读写都使用该map
+ */
+public class TupleRowMap extends AbstractMap<String, Object> implements Serializable {
+
+    private static final long serialVersionUID = -3021870216741985276L;
+
+    private final KeyIndex keyIndex;
+
+    private final Object[] values;
+
+    private Map<String, Object> spilled;
+
+    public TupleRowMap(KeyIndex keyIndex, Object[] values) {
+        this.keyIndex = keyIndex;
+        this.values = values;
+    }
+
+    @Override
+    public int size() {
+        return null != spilled ? spilled.size() : values.length;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return null != spilled ? spilled.containsKey(key) : keyIndex.positions.containsKey(key);
+    }
+
+    @Override
+    public Object get(Object key) {
+        if (null != spilled) {
+            return spilled.get(key);
+        }
+        Integer position = keyIndex.positions.get(key);
+        return null == position ? null : values[position];
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        Integer position = null != spilled ? null : keyIndex.positions.get(key);
+        if (null == position) {
+            return spill().put(key, value);
+        }
+        Object old = values[position];
+        values[position] = value;
+        return old;
+    }
+
+    @Override
+    public Object remove(Object key) {
+        if (null == spilled && !keyIndex.positions.containsKey(key)) {
+            return null;
+        }
+        return spill().remove(key);
+    }
+
+    @Override
+    public void clear() {
+        spill().clear();
+    }
+
+    private Map<String, Object> spill() {
+        if (null == spilled) {
+            Map<String, Object> map = Maps.newLinkedHashMapWithExpectedSize(values.length + 1);
+            for (int i = 0; i < values.length; i++) {
+                map.put(keyIndex.keys[i], values[i]);
+            }
+            spilled = map;
+        }
+        return spilled;
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        if (null != spilled) {
+            return spilled.entrySet();
+        }
+        return new AbstractSet<Entry<String, Object>>() {
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+                return new Iterator<Entry<String, Object>>() {
+                    private int index = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return index < values.length;
+                    }
+
+                    @Override
+                    public Entry<String, Object> next() {
+                        if (index >= values.length) {
+                            throw new NoSuchElementException();
+                        }
+                        int current = index++;
+                        return new SimpleEntry<String, Object>(keyIndex.keys[current], values[current]) {
+                            @Override
+                            public Object setValue(Object value) {
+                                values[current] = value;
+                                return super.setValue(value);
+                            }
+                        };
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return values.length;
+            }
+        };
+    }
+
+    public static class KeyIndex implements Serializable {
+
+        private static final long serialVersionUID = 5584367160937390148L;
+
+        private final String[] keys;
+
+        private final Map<String, Integer> positions;
+
+        public KeyIndex(List<String> keys) {
+            this.keys = keys.toArray(new String[0]);
+            this.positions = Maps.newHashMapWithExpectedSize(keys.size());
+            for (int i = 0; i < this.keys.length; i++) {
+                positions.put(this.keys[i], i);
+            }
+        }
+    }
+}
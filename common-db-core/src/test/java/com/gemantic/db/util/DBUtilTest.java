@@ -0,0 +1,39 @@
+package com.gemantic.db.util;
+
+import com.google.common.collect.Lists;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 游标编码/解码
+ */
+public class DBUtilTest {
+
+    private enum Status {
+        OPEN
+    }
+
+    @Test
+    public void cursorRoundTrip() {
+        Date date = new Date(1767196800123L);
+        List<Object> values = Lists.newArrayList("名称.a~b", 12L, 3.5D, date, Status.OPEN, Boolean.TRUE, 99L);
+        List<String> decoded = DBUtil.decodeCursor(DBUtil.encodeCursor(values));
+        Assert.assertEquals(Lists.newArrayList("名称.a~b", "12", "3.5", String.valueOf(date.getTime()), "OPEN", "true", "99"), decoded);
+    }
+
+    @Test
+    public void cursorKeepsNullAndEmptyValues() {
+        List<Object> values = Lists.newArrayList(null, "~", "", 7L);
+        String cursor = DBUtil.encodeCursor(values);
+        Assert.assertEquals(Lists.newArrayList(null, "~", "", "7"), DBUtil.decodeCursor(cursor));
+    }
+
+    @Test
+    public void blankCursorDecodesToNull() {
+        Assert.assertNull(DBUtil.decodeCursor(null));
+        Assert.assertNull(DBUtil.decodeCursor(" "));
+    }
+}
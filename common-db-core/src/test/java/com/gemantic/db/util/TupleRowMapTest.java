@@ -0,0 +1,50 @@
+package com.gemantic.db.util;
+
+import com.google.common.collect.Lists;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Map;
+
+/**
+ * 投影行的读写
+ */
+public class TupleRowMapTest {
+
+    private static TupleRowMap row() {
+        return new TupleRowMap(new TupleRowMap.KeyIndex(Lists.newArrayList("id", "name")), new Object[]{1L, "a"});
+    }
+
+    @Test
+    public void putProjectedFieldKeepsArray() {
+        TupleRowMap row = row();
+        Assert.assertEquals("a", row.put("name", "b"));
+        Assert.assertEquals("b", row.get("name"));
+        Assert.assertEquals(2, row.size());
+    }
+
+    @Test
+    public void putUnknownFieldSpillsRow() {
+        TupleRowMap row = row();
+        Assert.assertNull(row.put("extra", 3));
+        Assert.assertEquals(3, row.size());
+        Assert.assertEquals(3, row.get("extra"));
+        Assert.assertEquals(1L, row.get("id"));
+        Assert.assertEquals(Lists.newArrayList("id", "name", "extra"), Lists.newArrayList(row.keySet()));
+        row.put("id", 2L);
+        Assert.assertEquals(2L, row.get("id"));
+    }
+
+    @Test
+    public void removeAndEntrySetValue() {
+        TupleRowMap row = row();
+        for (Map.Entry<String, Object> entry : row.entrySet()) {
+            entry.setValue(entry.getKey());
+        }
+        Assert.assertEquals("id", row.get("id"));
+        Assert.assertNull(row.remove("missing"));
+        Assert.assertEquals("name", row.remove("name"));
+        Assert.assertFalse(row.containsKey("name"));
+        Assert.assertEquals(1, row.size());
+    }
+}
@@ -1,9 +1,24 @@
 package com.gemantic.db.controller;
 
 import com.gemantic.db.client.BaseDBClient;
+import com.gemantic.db.constant.DBAggregateFunction;
 import com.gemantic.db.constant.DBOperation;
+import com.gemantic.db.constant.DBTimeInterval;
 import com.gemantic.db.model.BaseModel;
 import com.gemantic.db.repository.BaseRepository;
+import com.gemantic.db.repository.DBChunkExecutor;
+import com.gemantic.db.repository.DBAsyncRepository;
+import com.gemantic.db.repository.support.EntityCache;
+import com.gemantic.db.repository.support.RepositoryConfig;
+import com.gemantic.db.support.DBBatchOperation;
+import com.gemantic.db.support.DBBatchResult;
+import com.gemantic.db.support.DBChunkProgress;
+import com.gemantic.db.support.DBGroupQuery;
+import com.gemantic.db.support.DBAggregateItem;
+import com.gemantic.db.support.DBGroupResult;
+import com.gemantic.db.support.DBHistogramBucket;
+import com.gemantic.db.support.DBHistogramQuery;
+import com.gemantic.db.support.DBPatch;
 import com.gemantic.db.support.DBQuery;
 import com.gemantic.db.support.DBQueryItem;
 import com.gemantic.db.support.DBUpdate;
@@ -11,20 +26,35 @@ import com.gemantic.db.util.DBUtil;
 import com.gemantic.springcloud.model.PageResponse;
 import com.gemantic.springcloud.model.Response;
 import com.gemantic.springcloud.utils.StringUtil;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.collections4.MapUtils;
+import org.apache.commons.lang3.EnumUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.joda.time.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
+import javax.annotation.PostConstruct;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.lang.reflect.ParameterizedType;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.ZoneId;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 public abstract class BaseController<T  extends BaseModel> implements BaseDBClient<T> {
@@ -33,6 +63,13 @@ public abstract class BaseController<T  extends BaseModel> implements BaseDBClie
 
     public static final List<String> DEFAULT_ONLY_INSERT_FIELD = Lists.newArrayList("id","createAt");
 
+    public static final String NDJSON_CONTENT_TYPE = "application/x-ndjson";
+
+    @Autowired(required = false)
+    private ObjectMapper objectMapper;
+
+    private volatile DBAsyncRepository<T, Long> asyncRepository;
+
 
     @ApiOperation(value = "对象保存", notes = "对象保存")
     @PostMapping
@@ -96,8 +133,6 @@ public abstract class BaseController<T  extends BaseModel> implements BaseDBClie
         DBQuery<Long> query = new DBQuery<Long>();
         List<DBQueryItem> andQuery = Lists.newArrayList();
         List<DBQueryItem> orQuery = Lists.newArrayList();
-        List<DBQueryItem> paramQuery = Lists.newArrayList();
-        List<DBQueryItem> likeQuery = Lists.newArrayList();
 
         if (null != startAt) {
             DBQueryItem startAtQuery = new DBQueryItem();
@@ -113,52 +148,7 @@ public abstract class BaseController<T  extends BaseModel> implements BaseDBClie
             endAtQuery.setOperation(DBOperation.LTE);
             andQuery.add(endAtQuery);
         }
-        if (CollectionUtils.isNotEmpty(likeFields) && CollectionUtils.isNotEmpty(likes) && likeFields.size() == likes.size()) {
-            for (int i = 0; i < likeFields.size(); i++) {
-                DBQueryItem dbQueryItem = new DBQueryItem();
-                dbQueryItem.setField(likeFields.get(i));
-                dbQueryItem.setValues(Lists.newArrayList(likes.get(i)));
-                dbQueryItem.setOperation(DBOperation.LIKE);
-                likeQuery.add(dbQueryItem);
-            }
-        }
-
-        if (MapUtils.isNotEmpty(params)) {
-            for (Map.Entry<String, String> entry : params.entrySet()) {
-                String value = StringUtil.trim(entry.getValue());
-                if (StringUtils.isBlank(value)) {
-                    continue;
-                }
-                String fieldName = entry.getKey();
-                List<String> values = Lists.newArrayList(StringUtils.split(value, ","));
-                if (CollectionUtils.isNotEmpty(notSplitFields) && notSplitFields.contains(fieldName)) {
-                    values = Lists.newArrayList(value);
-                }
-                DBQueryItem dbQueryItem = new DBQueryItem();
-                dbQueryItem.setField(fieldName);
-                dbQueryItem.setValues(values);
-                if (values.size() > 1) {
-                    dbQueryItem.setOperation(DBOperation.IN);
-                } else {
-                    dbQueryItem.setOperation(DBOperation.EQ);
-                }
-                paramQuery.add(dbQueryItem);
-            }
-        }
-        if (CollectionUtils.isNotEmpty(likeQuery)) {
-            if ("OR".equalsIgnoreCase(likeOperation)) {
-                orQuery.addAll(likeQuery);
-            } else {
-                andQuery.addAll(likeQuery);
-            }
-        }
-        if (CollectionUtils.isNotEmpty(paramQuery)) {
-            if ("OR".equalsIgnoreCase(paramsOperation)) {
-                orQuery.addAll(paramQuery);
-            } else {
-                andQuery.addAll(paramQuery);
-            }
-        }
+        addParamsQuery(andQuery, orQuery, likeFields, likes, DBOperation.LIKE, likeOperation, params, notSplitFields, paramsOperation);
         query.setAndQuery(andQuery);
         query.setOrQuery(orQuery);
 
@@ -174,7 +164,28 @@ public abstract class BaseController<T  extends BaseModel> implements BaseDBClie
         return Response.ok(getRepository().getOne(id));
     }
 
-    private static final List<String> excludeParams = Lists.newArrayList("paramsOperation", "likeOperation", "notSplitFields", "likeFields", "likes", "timeField", "startAt", "endAt", "orderBy", "direction", "ids", "cp", "ps");
+    @ApiOperation(value = "根据编号集合批量查询", notes = "根据编号集合批量查询,编号去重后一次IN查询,不保证顺序,不存在的编号不返回")
+    @PostMapping("/ids")
+    public Response<List<T>> findByIds(
+            @ApiParam(value = "编号集合", required = true) @RequestBody List<Long> ids)
+            throws Exception {
+        if (CollectionUtils.isEmpty(ids)) {
+            return Response.ok(Lists.newArrayList());
+        }
+        List<Long> distinctIds = ids.stream().filter(Objects::nonNull).distinct().collect(Collectors.toList());
+        return Response.ok(getRepository().findAllById(distinctIds));
+    }
+
+    @ApiOperation(value = "按编号缓存的命中统计", notes = "按编号缓存的命中统计,未开启缓存返回空")
+    @GetMapping("/cache/stats")
+    public Response<Map<String, Long>> cacheStats() throws Exception {
+        EntityCache<T> cache = getRepository().getEntityCache();
+        return Response.ok(null == cache ? Maps.newHashMap() : cache.getStats());
+    }
+
+    private static final List<String> histogramParams = Lists.newArrayList("interval", "timeZone", "sumFields", "avgFields");
+
+    private static final List<String> excludeParams = Lists.newArrayList("likeType", "paramsOperation", "likeOperation", "notSplitFields", "likeFields", "likes", "timeField", "startAt", "endAt", "orderBy", "direction", "ids", "cp", "ps");
 
     @ApiOperation(value = "简单条件查询", notes = "简单条件查询")
     @GetMapping
@@ -203,7 +214,9 @@ public abstract class BaseController<T  extends BaseModel> implements BaseDBClie
             @ApiParam(value = "其他参数") @RequestParam(required = false) Map<String, String> params, @ApiParam(value = "like的与或关系", allowableValues = "AND,OR") @RequestParam(required = false, defaultValue = "AND")
                     String likeOperation,
             @ApiParam(value = "params的与或关系", allowableValues = "AND,OR") @RequestParam(required = false, defaultValue = "AND")
-                    String paramsOperation)
+                    String paramsOperation,
+            @ApiParam(value = "likes的查询方式:LIKE-like查询,MATCH-全文检索(需要FULLTEXT索引,未指定排序时按相关度排序)", allowableValues = "LIKE,MATCH") @RequestParam(required = false, defaultValue = "LIKE")
+                    String likeType)
             throws Exception {
 
         LOG.info("params [{}]", params);
@@ -225,8 +238,6 @@ public abstract class BaseController<T  extends BaseModel> implements BaseDBClie
         });
         List<DBQueryItem> andQuery = Lists.newArrayList();
         List<DBQueryItem> orQuery = Lists.newArrayList();
-        List<DBQueryItem> paramQuery = Lists.newArrayList();
-        List<DBQueryItem> likeQuery = Lists.newArrayList();
 
         if (null != startAt) {
             DBQueryItem startAtQuery = new DBQueryItem();
@@ -242,56 +253,11 @@ public abstract class BaseController<T  extends BaseModel> implements BaseDBClie
             endAtQuery.setOperation(DBOperation.LTE);
             andQuery.add(endAtQuery);
         }
-        if (CollectionUtils.isNotEmpty(likeFields) && CollectionUtils.isNotEmpty(likes) && likeFields.size() == likes.size()) {
-            for (int i = 0; i < likeFields.size(); i++) {
-                DBQueryItem dbQueryItem = new DBQueryItem();
-                dbQueryItem.setField(likeFields.get(i));
-                dbQueryItem.setValues(Lists.newArrayList(likes.get(i)));
-                dbQueryItem.setOperation(DBOperation.LIKE);
-                likeQuery.add(dbQueryItem);
-            }
-        }
-
-        if (MapUtils.isNotEmpty(params)) {
-            for (Map.Entry<String, String> entry : params.entrySet()) {
-                String value = StringUtil.trim(entry.getValue());
-                if (StringUtils.isBlank(value)) {
-                    continue;
-                }
-                String fieldName = entry.getKey();
-                List<String> values = Lists.newArrayList(StringUtils.split(value, ","));
-                if (CollectionUtils.isNotEmpty(notSplitFields) && notSplitFields.contains(fieldName)) {
-                    values = Lists.newArrayList(value);
-                }
-                DBQueryItem dbQueryItem = new DBQueryItem();
-                dbQueryItem.setField(fieldName);
-                dbQueryItem.setValues(values);
-                if (values.size() > 1) {
-                    dbQueryItem.setOperation(DBOperation.IN);
-                } else {
-                    dbQueryItem.setOperation(DBOperation.EQ);
-                }
-                paramQuery.add(dbQueryItem);
-            }
-        }
-
+        addParamsQuery(andQuery, orQuery, likeFields, likes, DBOperation.MATCH.name().equalsIgnoreCase(likeType) ? DBOperation.MATCH : DBOperation.LIKE, likeOperation, params, notSplitFields, paramsOperation);
         query.setCurrentPage(cp);
         query.setPageSize(ps);
         query.setSorts(DBUtil.getSortItems(orderBy, direction));
-        if (CollectionUtils.isNotEmpty(likeQuery)) {
-            if ("OR".equalsIgnoreCase(likeOperation)) {
-                orQuery.addAll(likeQuery);
-            } else {
-                andQuery.addAll(likeQuery);
-            }
-        }
-        if (CollectionUtils.isNotEmpty(paramQuery)) {
-            if ("OR".equalsIgnoreCase(paramsOperation)) {
-                orQuery.addAll(paramQuery);
-            } else {
-                andQuery.addAll(paramQuery);
-            }
-        }
+        query.setRelevanceSort(DBOperation.MATCH.name().equalsIgnoreCase(likeType) && CollectionUtils.isEmpty(orderBy));
         query.setAndQuery(andQuery);
         query.setOrQuery(orQuery);
         PageResponse<T> pageResponse = getRepository().findByQuery(query);
@@ -319,6 +285,92 @@ public abstract class BaseController<T  extends BaseModel> implements BaseDBClie
     }
 
 
+    @ApiOperation(value = "分组统计", notes = "按条件过滤后分组聚合(count,count distinct,sum,min,max,avg),支持having、排序及limit,只返回聚合结果")
+    @PostMapping("/group")
+    public Response<List<DBGroupResult>> group(@ApiParam(value = "分组统计查询对象", required = true) @RequestBody DBGroupQuery query)
+            throws Exception {
+        return Response.ok(getRepository().group(query));
+    }
+
+
+    @ApiOperation(value = "时间分桶统计", notes = "按时间字段分桶(MINUTE,HOUR,DAY,MONTH)统计行数与聚合值,返回连续的桶,没有数据的桶行数为0")
+    @PostMapping("/histogram")
+    public Response<List<DBHistogramBucket>> histogram(@ApiParam(value = "时间分桶统计查询对象", required = true) @RequestBody DBHistogramQuery query)
+            throws Exception {
+        return Response.ok(getRepository().histogram(query));
+    }
+
+
+    @ApiOperation(value = "简单查询时间分桶统计", notes = "按时间字段分桶(MINUTE,HOUR,DAY,MONTH)统计行数与sum/avg,返回连续的桶,没有数据的桶行数为0")
+    @GetMapping("/histogram")
+    public Response<List<DBHistogramBucket>> histogram(@ApiParam(value = "时间字段") @RequestParam(required = false, defaultValue = "createAt")
+                                                               String timeField,
+                                                       @ApiParam(value = "起始时间(包含)") @RequestParam(required = false)
+                                                               Long startAt,
+                                                       @ApiParam(value = "结束时间(包含)") @RequestParam(required = false) Long endAt,
+                                                       @ApiParam(value = "分桶间隔", allowableValues = "MINUTE,HOUR,DAY,MONTH") @RequestParam(required = false, defaultValue = "DAY")
+                                                               String interval,
+                                                       @ApiParam(value = "时区,如Asia/Shanghai") @RequestParam(required = false)
+                                                               String timeZone,
+                                                       @ApiParam(value = "求和字段") @RequestParam(required = false)
+                                                               List<String> sumFields,
+                                                       @ApiParam(value = "平均值字段") @RequestParam(required = false)
+                                                               List<String> avgFields,
+                                                       @ApiParam(value = "like查询字段") @RequestParam(required = false)
+                                                               List<String> likeFields,
+                                                       @ApiParam(value = "like查询值") @RequestParam(required = false)
+                                                               List<String> likes,
+                                                       @ApiParam(value = "不切割的等值查询") @RequestParam(required = false)
+                                                               List<String> notSplitFields,
+                                                       @ApiParam(value = "其他参数") @RequestParam(required = false) Map<String, String> params,
+                                                       @ApiParam(value = "like的与或关系", allowableValues = "AND,OR") @RequestParam(required = false, defaultValue = "AND")
+                                                               String likeOperation,
+                                                       @ApiParam(value = "params的与或关系", allowableValues = "AND,OR") @RequestParam(required = false, defaultValue = "AND")
+                                                               String paramsOperation)
+            throws Exception {
+        excludeParams.forEach(params::remove);
+        histogramParams.forEach(params::remove);
+        if (!EnumUtils.isValidEnum(DBTimeInterval.class, StringUtils.upperCase(interval)) || !isValidZone(timeZone)) {
+            LOG.warn("histogram interval [{}] or timeZone [{}] invalid", interval, timeZone);
+            return Response.error(Lists.newArrayList());
+        }
+        List<DBQueryItem> andQuery = Lists.newArrayList();
+        List<DBQueryItem> orQuery = Lists.newArrayList();
+        addParamsQuery(andQuery, orQuery, likeFields, likes, DBOperation.LIKE, likeOperation, params, notSplitFields, paramsOperation);
+        List<DBAggregateItem> aggregates = Lists.newArrayList();
+        if (CollectionUtils.isNotEmpty(sumFields)) {
+            sumFields.forEach(f -> aggregates.add(new DBAggregateItem(DBAggregateFunction.SUM, f, null)));
+        }
+        if (CollectionUtils.isNotEmpty(avgFields)) {
+            avgFields.forEach(f -> aggregates.add(new DBAggregateItem(DBAggregateFunction.AVG, f, null)));
+        }
+        DBHistogramQuery query = new DBHistogramQuery(andQuery, orQuery, timeField, DBTimeInterval.valueOf(StringUtils.upperCase(interval)), timeZone, startAt, endAt, aggregates, null);
+        return Response.ok(getRepository().histogram(query));
+    }
+
+
+    @ApiOperation(value = "复杂条件流式导出", notes = "复杂条件流式导出,忽略分页与级联加载,每行输出一个json对象(NDJSON)")
+    @PostMapping(value = "/query/stream", produces = NDJSON_CONTENT_TYPE)
+    public void queryStream(@ApiParam(value = "查询对象", required = true) @RequestBody DBQuery query, HttpServletResponse response)
+            throws Exception {
+        query.setFetch(Boolean.FALSE);
+        response.setContentType(NDJSON_CONTENT_TYPE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        ObjectMapper mapper = null == objectMapper ? new ObjectMapper() : objectMapper;
+        OutputStream out = new BufferedOutputStream(response.getOutputStream());
+        long total = getRepository().streamByQuery(query, row -> {
+            try {
+                out.write(mapper.writeValueAsBytes(row));
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        out.flush();
+        LOG.info("stream query rows {}", total);
+    }
+
+
     @ApiOperation(value = "复杂条件删除", notes = "复杂条件删除")
     @PostMapping("/delete")
     public Response<Integer> deleteByQuery(@ApiParam(value = "查询对象", required = true) @RequestBody DBQuery<Long> query)
@@ -328,6 +380,55 @@ public abstract class BaseController<T  extends BaseModel> implements BaseDBClie
     }
 
 
+    @ApiOperation(value = "复杂条件分批删除", notes = "按主键顺序每批chunkSize条在独立事务中删除,可限速,async为true时后台执行并返回任务编号")
+    @PostMapping("/delete/chunk")
+    public Response<DBChunkProgress> deleteByQueryChunked(@ApiParam(value = "查询对象", required = true) @RequestBody DBQuery<Long> query,
+                                                          @ApiParam(value = "每批行数") @RequestParam(required = false) Integer chunkSize,
+                                                          @ApiParam(value = "批间休眠毫秒数") @RequestParam(required = false) Long sleepMillis,
+                                                          @ApiParam(value = "每秒最多处理行数") @RequestParam(required = false) Long maxRowsPerSecond,
+                                                          @ApiParam(value = "是否后台执行") @RequestParam(required = false, defaultValue = "false") Boolean async)
+            throws Exception {
+        List<DBQueryItem> andQuery = query.getAndQuery();
+        List<DBQueryItem> orQuery = query.getOrQuery();
+        if (CollectionUtils.isNotEmpty(query.getIds())) {
+            DBQueryItem queryItem = new DBQueryItem();
+            queryItem.setOperation(DBOperation.IN);
+            queryItem.setValues(query.getIds());
+            queryItem.setField("id");
+            andQuery = Lists.newArrayList(queryItem);
+            orQuery = null;
+        }
+        DBChunkExecutor executor = new DBChunkExecutor(getRepository(), chunkSize, sleepMillis, maxRowsPerSecond);
+        return Response.ok(executor.delete(andQuery, orQuery, Boolean.TRUE.equals(async)));
+    }
+
+    @ApiOperation(value = "查询分批更新指定字段值", notes = "按主键顺序每批chunkSize条在独立事务中更新,可限速,async为true时后台执行并返回任务编号")
+    @PostMapping("/update/chunk")
+    public Response<DBChunkProgress> updateByQueryChunked(@ApiParam(value = "查询对象", required = true) @RequestBody DBUpdate query,
+                                                          @ApiParam(value = "每批行数") @RequestParam(required = false) Integer chunkSize,
+                                                          @ApiParam(value = "批间休眠毫秒数") @RequestParam(required = false) Long sleepMillis,
+                                                          @ApiParam(value = "每秒最多处理行数") @RequestParam(required = false) Long maxRowsPerSecond,
+                                                          @ApiParam(value = "是否后台执行") @RequestParam(required = false, defaultValue = "false") Boolean async)
+            throws Exception {
+        DBChunkExecutor executor = new DBChunkExecutor(getRepository(), chunkSize, sleepMillis, maxRowsPerSecond);
+        return Response.ok(executor.update(query.getAndQuery(), query.getOrQuery(), query.getUpdateValues(), Boolean.TRUE.equals(async)));
+    }
+
+    @ApiOperation(value = "分批删除/更新任务进度", notes = "分批删除/更新任务进度,任务结束一小时后清除")
+    @GetMapping("/job/{jobId}")
+    public Response<DBChunkProgress> getJob(@ApiParam(value = "任务编号", required = true) @PathVariable String jobId)
+            throws Exception {
+        return Response.ok(DBChunkExecutor.getProgress(jobId));
+    }
+
+    @ApiOperation(value = "取消分批删除/更新任务", notes = "当前批执行完后停止,返回任务是否存在")
+    @DeleteMapping("/job/{jobId}")
+    public Response<Boolean> cancelJob(@ApiParam(value = "任务编号", required = true) @PathVariable String jobId)
+            throws Exception {
+        return Response.ok(DBChunkExecutor.cancel(jobId));
+    }
+
+
     @ApiOperation(value = "查询更新指定字段值", notes = "查询更新指定字段值")
     @PostMapping("/update")
     public Response<Integer> updateByQuery(@ApiParam(value = "查询对象", required = true) @RequestBody DBUpdate query)
@@ -384,6 +485,188 @@ public abstract class BaseController<T  extends BaseModel> implements BaseDBClie
 
 
 
+    @ApiOperation(value = "按编号批量更新不同的字段值", notes = "字段集合相同的补丁合并为 UPDATE ... SET 字段=? WHERE id=? 批量执行,只更新传入的字段与updateAt,返回影响行数")
+    @PostMapping("/bulk/patch")
+    public Response<Integer> bulkPatch(
+            @ApiParam(value = "补丁集合", required = true) @RequestBody List<DBPatch<Long>> patches) throws Exception {
+        return Response.ok(getRepository().bulkPatch(patches));
+    }
+
+    @ApiOperation(value = "批量执行写操作", notes = "按顺序在同一事务中执行SAVE/BULK_INSERT/BULK_SAVE/UPDATE/DELETE/PATCH,任一操作失败全部回滚,返回每个操作的结果")
+    @PostMapping("/batch")
+    public Response<List<DBBatchResult>> batch(
+            @ApiParam(value = "操作集合", required = true) @RequestBody List<DBBatchOperation<T>> operations) throws Exception {
+        if (CollectionUtils.isEmpty(operations)) {
+            return Response.ok(Lists.newArrayList());
+        }
+        for (DBBatchOperation<T> operation : operations) {
+            if (null != operation && CollectionUtils.isNotEmpty(operation.getData())) {
+                prepareBulk(operation.getData());
+            }
+            if (null != operation && null != operation.getQuery()) {
+                operation.getQuery().setFetch(Boolean.FALSE);
+            }
+        }
+        List<String> onlyInsertField = getOnlyInsertField();
+        if (CollectionUtils.isEmpty(onlyInsertField)) {
+            onlyInsertField = DEFAULT_ONLY_INSERT_FIELD;
+        }
+        return Response.ok(getRepository().batch(operations, onlyInsertField));
+    }
+
+    @ApiOperation(value = "LOAD DATA流式导入对象,replace为false时重复唯一键不导入,为true时替换旧记录", notes = "使用 LOAD DATA LOCAL INFILE,连接需开启allowLoadLocalInfile=true,返回导入行数")
+    @PostMapping("/bulk/load")
+    public Response<Long> bulkLoad(
+            @ApiParam(value = "对象", required = true) @RequestBody List<T> data,
+            @ApiParam(value = "是否替换唯一键重复的记录") @RequestParam(required = false, defaultValue = "false") Boolean replace) throws Exception {
+        if (CollectionUtils.isEmpty(data)) {
+            return Response.ok(0L);
+        }
+        prepareBulk(data);
+        return Response.ok(getRepository().bulkLoad(data, Boolean.TRUE.equals(replace)));
+    }
+
+    @ApiOperation(value = "异步复杂条件查询", notes = "异步复杂条件查询,在有界线程池中执行,不占用请求线程")
+    @PostMapping("/async/query")
+    public CompletableFuture<Response<PageResponse<T>>> queryAsync(@ApiParam(value = "查询对象", required = true) @RequestBody DBQuery query)
+            throws Exception {
+        if(MapUtils.isNotEmpty(query.getIncludeFields())){
+            query.setFetch(Boolean.FALSE);
+        }
+        return getAsyncRepository().findByQueryAsync(query).thenApply(Response::ok);
+    }
+
+    @ApiOperation(value = "异步复杂条件查询,指定查询字段", notes = "异步复杂条件查询,指定查询字段,返回map")
+    @PostMapping("/async/query/map")
+    public CompletableFuture<Response<PageResponse<Map<String,Object>>>> queryMapAsync(@ApiParam(value = "查询对象", required = true) @RequestBody DBQuery query)
+            throws Exception {
+        query.setFetch(Boolean.FALSE);
+        return getAsyncRepository().findByMapQueryAsync(query).thenApply(Response::ok);
+    }
+
+    @ApiOperation(value = "异步批量插入对象,唯一键存在的记录不插入(内嵌对象仅支持ManyToOne)", notes = "异步批量插入对象,使用 INSERT IGNORE INTO ")
+    @PostMapping("/async/bulk/insert")
+    public CompletableFuture<Response<Void>> bulkInsertAsync(
+            @ApiParam(value = "对象", required = true) @RequestBody List<T> data) throws Exception {
+        if (CollectionUtils.isEmpty(data)) {
+            return CompletableFuture.completedFuture(Response.ok());
+        }
+        prepareBulk(data);
+        return getAsyncRepository().bulkInsertAsync(data).thenApply(r -> Response.ok());
+    }
+
+    @ApiOperation(value = "异步批量保存对象-唯一键存在则更新,不存在插入 (内嵌对象仅支持ManyToOne)", notes = "异步批量保存对象,使用 INSERT INTO ... ON DUPLICATE KEY UPDATE")
+    @PostMapping("/async/bulk/save")
+    public CompletableFuture<Response<Void>> bulkSaveAsync(
+            @ApiParam(value = "对象", required = true) @RequestBody List<T> data) throws Exception {
+        if (CollectionUtils.isEmpty(data)) {
+            return CompletableFuture.completedFuture(Response.ok());
+        }
+        prepareBulk(data);
+        List<String> onlyInsertField = getOnlyInsertField();
+        if(CollectionUtils.isEmpty(onlyInsertField)){
+            onlyInsertField = DEFAULT_ONLY_INSERT_FIELD;
+        }
+        return getAsyncRepository().bulkSaveAsync(data, onlyInsertField).thenApply(r -> Response.ok());
+    }
+
+    @ApiOperation(value = "异步线程池状态", notes = "异步线程池状态:线程数,活跃数,队列深度,拒绝次数")
+    @GetMapping("/async/stats")
+    public Response<Map<String, Long>> asyncStats() throws Exception {
+        return Response.ok(getAsyncRepository().getExecutor().getStats());
+    }
+
+    private static boolean isValidZone(String timeZone) {
+        if (StringUtils.isBlank(timeZone)) {
+            return true;
+        }
+        try {
+            ZoneId.of(timeZone);
+            return true;
+        } catch (DateTimeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 简单查询的likes与params条件:likeFields与likes一一对应按likeType查询,params的值按逗号切割为IN查询(notSplitFields中的字段不切割),
+     * 分别按likeOperation与paramsOperation加入andQuery或orQuery
+     */
+    protected void addParamsQuery(List<DBQueryItem> andQuery, List<DBQueryItem> orQuery, List<String> likeFields, List<String> likes, DBOperation likeType, String likeOperation,
+                                  Map<String, String> params, List<String> notSplitFields, String paramsOperation) {
+        List<DBQueryItem> paramQuery = Lists.newArrayList();
+        List<DBQueryItem> likeQuery = Lists.newArrayList();
+        if (CollectionUtils.isNotEmpty(likeFields) && CollectionUtils.isNotEmpty(likes) && likeFields.size() == likes.size()) {
+            for (int i = 0; i < likeFields.size(); i++) {
+                DBQueryItem dbQueryItem = new DBQueryItem();
+                dbQueryItem.setField(likeFields.get(i));
+                dbQueryItem.setValues(Lists.newArrayList(likes.get(i)));
+                dbQueryItem.setOperation(likeType);
+                likeQuery.add(dbQueryItem);
+            }
+        }
+
+        if (MapUtils.isNotEmpty(params)) {
+            for (Map.Entry<String, String> entry : params.entrySet()) {
+                String value = StringUtil.trim(entry.getValue());
+                if (StringUtils.isBlank(value)) {
+                    continue;
+                }
+                String fieldName = entry.getKey();
+                List<String> values = Lists.newArrayList(StringUtils.split(value, ","));
+                if (CollectionUtils.isNotEmpty(notSplitFields) && notSplitFields.contains(fieldName)) {
+                    values = Lists.newArrayList(value);
+                }
+                DBQueryItem dbQueryItem = new DBQueryItem();
+                dbQueryItem.setField(fieldName);
+                dbQueryItem.setValues(values);
+                if (values.size() > 1) {
+                    dbQueryItem.setOperation(DBOperation.IN);
+                } else {
+                    dbQueryItem.setOperation(DBOperation.EQ);
+                }
+                paramQuery.add(dbQueryItem);
+            }
+        }
+        if (CollectionUtils.isNotEmpty(likeQuery)) {
+            if ("OR".equalsIgnoreCase(likeOperation)) {
+                orQuery.addAll(likeQuery);
+            } else {
+                andQuery.addAll(likeQuery);
+            }
+        }
+        if (CollectionUtils.isNotEmpty(paramQuery)) {
+            if ("OR".equalsIgnoreCase(paramsOperation)) {
+                orQuery.addAll(paramQuery);
+            } else {
+                andQuery.addAll(paramQuery);
+            }
+        }
+    }
+
+    private void prepareBulk(List<T> data) {
+        Long now = DateTime.now().getMillis();
+        for (T d : data) {
+            if (null != d.getId() && d.getId() <= 0L) {
+                d.setId(null);
+            }
+            if (null == d.getCreateAt() || null != d.getCreateAt() && d.getCreateAt() <= 0L) {
+                d.setCreateAt(now);
+            }
+            d.setUpdateAt(now);
+        }
+    }
+
+    /**
+     * 异步仓库,线程池取RepositoryConfig.getAsyncExecutor(),可在configure中按实体指定
+     */
+    public DBAsyncRepository<T, Long> getAsyncRepository() {
+        if (null == asyncRepository) {
+            asyncRepository = new DBAsyncRepository<>(getRepository(), getRepository().getConfig().getAsyncExecutor());
+        }
+        return asyncRepository;
+    }
+
     public Class<T> getTClass() {
         Class<T> entityClass = (Class<T>) ((ParameterizedType) this.getClass().getGenericSuperclass()).getActualTypeArguments()[0];
         return entityClass;
@@ -394,4 +677,15 @@ public abstract class BaseController<T  extends BaseModel> implements BaseDBClie
 
     public abstract List<String> getOnlyInsertField();
 
+    /**
+     * 覆盖此方法按实体调整仓库配置(批大小等),未设置的项使用RepositoryConfig.getDefault()
+     */
+    protected void configure(RepositoryConfig config) {
+    }
+
+    @PostConstruct
+    public void initRepository() {
+        configure(getRepository().getConfig());
+    }
+
 }
@@ -0,0 +1,30 @@
+package com.gemantic.db.datasource;
+
+/**
+ * 当前线程是否允许读从库,由仓库的只读方法设置
+ */
+public class DBRoutingContext {
+
+    private static final ThreadLocal<Boolean> REPLICA = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+    /**
+     * 进入读从库范围,返回进入前的状态,退出时传给exit恢复
+     */
+    public static boolean enter(boolean replica) {
+        boolean previous = REPLICA.get();
+        REPLICA.set(previous || replica);
+        return previous;
+    }
+
+    public static void exit(boolean previous) {
+        if (previous) {
+            REPLICA.set(Boolean.TRUE);
+        } else {
+            REPLICA.remove();
+        }
+    }
+
+    public static boolean isReplica() {
+        return REPLICA.get();
+    }
+}
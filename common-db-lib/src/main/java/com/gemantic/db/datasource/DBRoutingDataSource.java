@@ -0,0 +1,122 @@
+package com.gemantic.db.datasource;
+
+import com.google.common.collect.ImmutableList;
+import org.apache.commons.collections4.CollectionUtils;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 读写分离数据源:仓库只读方法(findByQuery,findByMapQuery,findMap,count,getById)在只读事务中访问从库,
+ * 写操作以及读写事务中的读(写后读)访问主库。
+ * 需要通过toLazyProxy()包装后交给EntityManagerFactory,保证在事务开始后第一次执行sql时才选择数据源
+ */
+public class DBRoutingDataSource extends AbstractDataSource {
+
+    public enum Strategy {
+        ROUND_ROBIN, LEAST_LOADED
+    }
+
+    private final DataSource primary;
+
+    private final List<DataSource> replicas;
+
+    private final AtomicInteger[] active;
+
+    private final Strategy strategy;
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    public DBRoutingDataSource(DataSource primary, List<DataSource> replicas) {
+        this(primary, replicas, Strategy.ROUND_ROBIN);
+    }
+
+    public DBRoutingDataSource(DataSource primary, List<DataSource> replicas, Strategy strategy) {
+        this.primary = primary;
+        this.replicas = CollectionUtils.isEmpty(replicas) ? ImmutableList.of() : ImmutableList.copyOf(replicas);
+        this.strategy = null == strategy ? Strategy.ROUND_ROBIN : strategy;
+        this.active = new AtomicInteger[this.replicas.size()];
+        for (int i = 0; i < active.length; i++) {
+            active[i] = new AtomicInteger();
+        }
+    }
+
+    public DataSource toLazyProxy() {
+        return new LazyConnectionDataSourceProxy(this);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        int replica = selectReplica();
+        if (replica < 0) {
+            return primary.getConnection();
+        }
+        return track(replica, replicas.get(replica).getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        int replica = selectReplica();
+        if (replica < 0) {
+            return primary.getConnection(username, password);
+        }
+        return track(replica, replicas.get(replica).getConnection(username, password));
+    }
+
+    /**
+     * 返回从库下标,需要访问主库时返回-1
+     */
+    protected int selectReplica() {
+        if (replicas.isEmpty() || !DBRoutingContext.isReplica()) {
+            return -1;
+        }
+        if (TransactionSynchronizationManager.isActualTransactionActive() && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return -1;
+        }
+        if (Strategy.LEAST_LOADED.equals(strategy)) {
+            int selected = 0;
+            for (int i = 1; i < active.length; i++) {
+                if (active[i].get() < active[selected].get()) {
+                    selected = i;
+                }
+            }
+            return selected;
+        }
+        return Math.abs(next.getAndIncrement() % replicas.size());
+    }
+
+    /**
+     * 统计各从库正在使用的连接数,连接关闭时减一
+     */
+    private Connection track(int replica, Connection connection) {
+        AtomicInteger counter = active[replica];
+        counter.incrementAndGet();
+        AtomicInteger closed = new AtomicInteger();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class[]{Connection.class}, (proxy, method, args) -> {
+            if ("close".equals(method.getName()) && closed.getAndIncrement() == 0) {
+                counter.decrementAndGet();
+            }
+            try {
+                return method.invoke(connection, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        });
+    }
+
+    public int getActiveConnections(int replica) {
+        return active[replica].get();
+    }
+
+    public int getReplicaCount() {
+        return replicas.size();
+    }
+}
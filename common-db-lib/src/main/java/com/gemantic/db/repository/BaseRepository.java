@@ -1,6 +1,16 @@
 package com.gemantic.db.repository;
 
+import com.gemantic.db.repository.support.EntityCache;
+import com.gemantic.db.repository.support.RepositoryConfig;
+import com.gemantic.db.support.DBBatchOperation;
+import com.gemantic.db.support.DBBatchResult;
+import com.gemantic.db.support.DBGroupQuery;
+import com.gemantic.db.support.DBGroupResult;
+import com.gemantic.db.support.DBHistogramBucket;
+import com.gemantic.db.support.DBHistogramQuery;
+import com.gemantic.db.support.DBPatch;
 import com.gemantic.db.support.DBQuery;
+import com.gemantic.db.support.DBQueryItem;
 import com.gemantic.db.support.DBUpdate;
 import com.gemantic.springcloud.model.PageResponse;
 import org.springframework.data.domain.Page;
@@ -15,6 +25,7 @@ import javax.annotation.Nullable;
 import javax.persistence.Tuple;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 @NoRepositoryBean
 public interface BaseRepository<T,ID> extends JpaRepository<T, ID>, JpaSpecificationExecutor<T>  {
@@ -30,14 +41,73 @@ public interface BaseRepository<T,ID> extends JpaRepository<T, ID>, JpaSpecifica
 
     void bulkSave(List<T> data,List<String> onlyInsertFields) throws Exception;
 
+    /**
+     * 同bulkInsert,返回每批语句的影响行数
+     */
+    List<Integer> bulkInsertCounts(List<T> data) throws Exception;
+
+    /**
+     * 同bulkSave,返回每批语句的影响行数(mysql中更新的行计为2)
+     */
+    List<Integer> bulkSaveCounts(List<T> data, List<String> onlyInsertFields) throws Exception;
+
+    /**
+     * 以LOAD DATA LOCAL INFILE流式导入,replace为false时同bulkInsert跳过唯一键重复的记录,为true时删除重复记录后插入新记录,返回导入行数
+     */
+    long bulkLoad(Iterable<T> data, boolean replace) throws Exception;
+
+    /**
+     * 按编号更新各自的字段值,字段集合相同的补丁合并为一条语句批量执行,只更新传入的字段与updateAt,返回影响行数
+     */
+    int bulkPatch(List<DBPatch<ID>> patches) throws Exception;
+
+    /**
+     * 在同一事务中按顺序执行写操作,任一操作失败全部回滚,返回每个操作的结果,onlyInsertFields为BULK_SAVE时只在插入时写入的字段
+     */
+    List<DBBatchResult> batch(List<DBBatchOperation<T>> operations, List<String> onlyInsertFields) throws Exception;
+
     int deleteByQuery(DBQuery<ID> query) throws Exception;
 
     PageResponse<T> findByQuery(DBQuery<ID> dbQuery) throws Exception;
 
     PageResponse<Map<String,Object>> findByMapQuery(DBQuery<ID> dbQuery) throws Exception;
 
+    /**
+     * 逐行流式读取,只join fetch单值关联,集合关联不加载,consumer中不应访问集合关联
+     */
+    long streamByQuery(DBQuery<ID> dbQuery, Consumer<T> consumer) throws Exception;
+
     List<Map<String,Object>> findMap(Map<String,String> includeFields, Specification<T> spec, Sort sort) throws Exception;
 
+    /**
+     * 按查询条件过滤后分组聚合,having/排序/limit均在数据库执行
+     */
+    List<DBGroupResult> group(DBGroupQuery query) throws Exception;
+
+    /**
+     * 按时间字段分桶统计行数与聚合值,返回从起始桶到结束桶的连续桶
+     */
+    List<DBHistogramBucket> histogram(DBHistogramQuery query) throws Exception;
+
+    /**
+     * 按主键升序取大于afterId的最多limit个匹配记录编号,afterId为null时从头开始
+     */
+    List<ID> findIds(List<DBQueryItem> andQuery, List<DBQueryItem> orQuery, ID afterId, int limit) throws Exception;
+
+    /**
+     * 在独立事务中删除ids中仍满足查询条件的记录,已有事务时挂起外层事务,返回时本批已提交
+     */
+    int deleteByIds(List<DBQueryItem> andQuery, List<DBQueryItem> orQuery, List<ID> ids) throws Exception;
+
+    /**
+     * 在独立事务中更新ids中仍满足查询条件的记录,已有事务时挂起外层事务,返回时本批已提交
+     */
+    int updateByIds(List<DBQueryItem> andQuery, List<DBQueryItem> orQuery, List<ID> ids, Map<String,Object> values) throws Exception;
+
+    RepositoryConfig getConfig();
+
+    EntityCache<T> getEntityCache();
+
 
 
 }
@@ -0,0 +1,62 @@
+package com.gemantic.db.repository;
+
+import com.gemantic.db.repository.support.DBAsyncExecutor;
+import com.gemantic.db.support.DBQuery;
+import com.gemantic.db.support.DBUpdate;
+import com.gemantic.springcloud.model.PageResponse;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * BaseRepository的异步包装,在DBAsyncExecutor线程中通过仓库代理执行,事务与读写分离的行为与同步调用一致
+ */
+public class DBAsyncRepository<T, ID> {
+
+    private final BaseRepository<T, ID> repository;
+
+    private final DBAsyncExecutor executor;
+
+    public DBAsyncRepository(BaseRepository<T, ID> repository, DBAsyncExecutor executor) {
+        this.repository = repository;
+        this.executor = executor;
+    }
+
+    public DBAsyncExecutor getExecutor() {
+        return executor;
+    }
+
+    public CompletableFuture<Optional<T>> findByIdAsync(ID id) {
+        return executor.submit(() -> repository.findById(id));
+    }
+
+    public CompletableFuture<List<T>> findAllByIdAsync(List<ID> ids) {
+        return executor.submit(() -> repository.findAllById(ids));
+    }
+
+    public CompletableFuture<PageResponse<T>> findByQueryAsync(DBQuery<ID> query) {
+        return executor.submit(() -> repository.findByQuery(query));
+    }
+
+    public CompletableFuture<PageResponse<Map<String, Object>>> findByMapQueryAsync(DBQuery<ID> query) {
+        return executor.submit(() -> repository.findByMapQuery(query));
+    }
+
+    public CompletableFuture<Integer> deleteByQueryAsync(DBQuery<ID> query) {
+        return executor.submit(() -> repository.deleteByQuery(query));
+    }
+
+    public CompletableFuture<Integer> updateByQueryAsync(DBUpdate update) {
+        return executor.submit(() -> repository.updateByQuery(update));
+    }
+
+    public CompletableFuture<List<Integer>> bulkInsertAsync(List<T> data) {
+        return executor.submit(() -> repository.bulkInsertCounts(data));
+    }
+
+    public CompletableFuture<List<Integer>> bulkSaveAsync(List<T> data, List<String> onlyInsertFields) {
+        return executor.submit(() -> repository.bulkSaveCounts(data, onlyInsertFields));
+    }
+}
@@ -0,0 +1,235 @@
+package com.gemantic.db.repository;
+
+import com.gemantic.db.constant.DBJobStatus;
+import com.gemantic.db.support.DBChunkProgress;
+import com.gemantic.db.support.DBQueryItem;
+import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.collections4.MapUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanUtils;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 分批删除/更新:按主键升序每次取chunkSize个匹配编号,每批在独立的短事务中执行,批间可休眠或按每秒行数限速。
+ * 可同步执行,也可作为后台任务执行并按jobId查询进度,同时运行的后台任务最多MAX_RUNNING_JOBS个,超出时拒绝
+ */
+public class DBChunkExecutor {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DBChunkExecutor.class);
+
+    public static final int DEFAULT_CHUNK_SIZE = 1000;
+
+    /**
+     * 已结束任务的进度保留时间
+     */
+    public static final long JOB_RETENTION_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    /**
+     * 同时运行的后台任务上限
+     */
+    public static final int MAX_RUNNING_JOBS = 4;
+
+    /**
+     * 保留进度的任务数上限,超出时先移除最早结束的任务
+     */
+    public static final int MAX_RETAINED_JOBS = 1000;
+
+    private static final Map<String, DBChunkProgress> JOBS = new ConcurrentHashMap<>();
+
+    private static final Set<String> CANCELLED = ConcurrentHashMap.newKeySet();
+
+    private static final Semaphore RUNNING_JOBS = new Semaphore(MAX_RUNNING_JOBS);
+
+    private static final ExecutorService JOB_EXECUTOR = newJobExecutor();
+
+    private final BaseRepository<?, Object> repository;
+
+    private final int chunkSize;
+
+    private final long sleepMillis;
+
+    private final long maxRowsPerSecond;
+
+    /**
+     * @param repository       仓库代理,每批的deleteByIds/updateByIds通过代理在独立事务中执行
+     * @param chunkSize        每批行数
+     * @param sleepMillis      批间休眠毫秒数,0不休眠
+     * @param maxRowsPerSecond 每秒最多处理行数,0不限速
+     */
+    public DBChunkExecutor(BaseRepository<?, ?> repository, Integer chunkSize, Long sleepMillis, Long maxRowsPerSecond) {
+        this.repository = (BaseRepository<?, Object>) repository;
+        this.chunkSize = null == chunkSize || chunkSize <= 0 ? DEFAULT_CHUNK_SIZE : chunkSize;
+        this.sleepMillis = null == sleepMillis ? 0L : Math.max(0L, sleepMillis);
+        this.maxRowsPerSecond = null == maxRowsPerSecond ? 0L : Math.max(0L, maxRowsPerSecond);
+    }
+
+    public DBChunkProgress delete(List<DBQueryItem> andQuery, List<DBQueryItem> orQuery, boolean async) {
+        return execute("DELETE", andQuery, orQuery, null, async);
+    }
+
+    public DBChunkProgress update(List<DBQueryItem> andQuery, List<DBQueryItem> orQuery, Map<String, Object> values, boolean async) {
+        return execute("UPDATE", andQuery, orQuery, values, async);
+    }
+
+    private static ExecutorService newJobExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(MAX_RUNNING_JOBS, MAX_RUNNING_JOBS, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, "db-chunk-job");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    public static DBChunkProgress getProgress(String jobId) {
+        DBChunkProgress progress = JOBS.get(jobId);
+        return null == progress ? null : copy(progress);
+    }
+
+    /**
+     * 取消运行中的任务,当前批执行完后停止,返回任务是否存在
+     */
+    public static boolean cancel(String jobId) {
+        DBChunkProgress progress = JOBS.get(jobId);
+        if (null == progress) {
+            return false;
+        }
+        if (DBJobStatus.RUNNING.equals(progress.getStatus())) {
+            CANCELLED.add(jobId);
+        }
+        return true;
+    }
+
+    private DBChunkProgress execute(String operation, List<DBQueryItem> andQuery, List<DBQueryItem> orQuery, Map<String, Object> values, boolean async) {
+        if ("UPDATE".equals(operation) && MapUtils.isEmpty(values)) {
+            throw new IllegalArgumentException("update values is empty");
+        }
+        if (async && !RUNNING_JOBS.tryAcquire()) {
+            throw new IllegalStateException("too many running chunk jobs, max " + MAX_RUNNING_JOBS);
+        }
+        removeExpiredJobs();
+        DBChunkProgress progress = new DBChunkProgress();
+        progress.setJobId(UUID.randomUUID().toString().replace("-", ""));
+        progress.setOperation(operation);
+        progress.setStatus(DBJobStatus.RUNNING);
+        progress.setChunkSize(chunkSize);
+        progress.setStartAt(System.currentTimeMillis());
+        JOBS.put(progress.getJobId(), copy(progress));
+        if (async) {
+            DBChunkProgress started = copy(progress);
+            try {
+                JOB_EXECUTOR.execute(() -> {
+                    try {
+                        run(progress, andQuery, orQuery, values);
+                    } finally {
+                        RUNNING_JOBS.release();
+                    }
+                });
+            } catch (RuntimeException e) {
+                RUNNING_JOBS.release();
+                JOBS.remove(progress.getJobId());
+                throw e;
+            }
+            return started;
+        }
+        run(progress, andQuery, orQuery, values);
+        return copy(progress);
+    }
+
+    private void run(DBChunkProgress progress, List<DBQueryItem> andQuery, List<DBQueryItem> orQuery, Map<String, Object> values) {
+        String jobId = progress.getJobId();
+        try {
+            Object lastId = null;
+            while (true) {
+                if (CANCELLED.remove(jobId)) {
+                    progress.setStatus(DBJobStatus.CANCELLED);
+                    break;
+                }
+                List<Object> ids = repository.findIds(andQuery, orQuery, lastId, chunkSize);
+                if (CollectionUtils.isEmpty(ids)) {
+                    progress.setStatus(DBJobStatus.FINISHED);
+                    break;
+                }
+                int affected = null == values ? repository.deleteByIds(andQuery, orQuery, ids) : repository.updateByIds(andQuery, orQuery, ids, values);
+                lastId = ids.get(ids.size() - 1);
+                progress.setChunks(progress.getChunks() + 1);
+                progress.setMatched(progress.getMatched() + ids.size());
+                progress.setAffected(progress.getAffected() + affected);
+                progress.setLastId(lastId);
+                JOBS.put(jobId, copy(progress));
+                if (ids.size() < chunkSize) {
+                    progress.setStatus(DBJobStatus.FINISHED);
+                    break;
+                }
+                throttle(progress);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            progress.setStatus(DBJobStatus.CANCELLED);
+        } catch (Exception e) {
+            LOG.error("chunk {} job {} error", progress.getOperation(), jobId, e);
+            progress.setStatus(DBJobStatus.FAILED);
+            progress.setError(e.getMessage());
+        }
+        progress.setEndAt(System.currentTimeMillis());
+        CANCELLED.remove(jobId);
+        JOBS.put(jobId, copy(progress));
+        LOG.info("chunk {} job {} {} chunks {} affected {}", progress.getOperation(), jobId, progress.getStatus(), progress.getChunks(), progress.getAffected());
+    }
+
+    private void throttle(DBChunkProgress progress) throws InterruptedException {
+        long sleep = throttleMillis(progress.getMatched(), System.currentTimeMillis() - progress.getStartAt());
+        if (sleep > 0L) {
+            Thread.sleep(sleep);
+        }
+    }
+
+    /**
+     * 已处理matched行、已用时elapsed毫秒时下一批前需要休眠的毫秒数:不少于批间休眠,限速时补足按速率应耗的时间
+     */
+    long throttleMillis(long matched, long elapsed) {
+        long sleep = sleepMillis;
+        if (maxRowsPerSecond > 0L) {
+            long expected = matched * 1000L / maxRowsPerSecond;
+            sleep = Math.max(sleep, expected - elapsed);
+        }
+        return sleep;
+    }
+
+    private static void removeExpiredJobs() {
+        long expireAt = System.currentTimeMillis() - JOB_RETENTION_MILLIS;
+        Iterator<DBChunkProgress> iterator = JOBS.values().iterator();
+        while (iterator.hasNext()) {
+            DBChunkProgress progress = iterator.next();
+            if (null != progress.getEndAt() && progress.getEndAt() < expireAt) {
+                iterator.remove();
+            }
+        }
+        int excess = JOBS.size() - MAX_RETAINED_JOBS + 1;
+        if (excess > 0) {
+            JOBS.values().stream().filter(p -> null != p.getEndAt())
+                    .sorted(Comparator.comparing(DBChunkProgress::getEndAt)).limit(excess)
+                    .map(DBChunkProgress::getJobId).collect(Collectors.toList()).forEach(JOBS::remove);
+        }
+    }
+
+    private static DBChunkProgress copy(DBChunkProgress progress) {
+        DBChunkProgress copy = new DBChunkProgress();
+        BeanUtils.copyProperties(progress, copy);
+        return copy;
+    }
+}
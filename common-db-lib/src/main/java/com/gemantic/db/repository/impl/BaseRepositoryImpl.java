@@ -1,25 +1,60 @@
 package com.gemantic.db.repository.impl;
 
+import com.gemantic.db.constant.DBAggregateFunction;
+import com.gemantic.db.constant.DBCountMode;
+import com.gemantic.db.constant.DBFetchMode;
 import com.gemantic.db.constant.DBOperation;
+import com.gemantic.db.constant.DBTimeInterval;
+import com.gemantic.db.datasource.DBRoutingContext;
 import com.gemantic.db.model.BaseModel;
 import com.gemantic.db.repository.BaseRepository;
+import com.gemantic.db.repository.support.CompiledQuery;
+import com.gemantic.db.repository.support.CountCache;
+import com.gemantic.db.repository.support.EntityCache;
+import com.gemantic.db.repository.support.IdGenerator;
+import com.gemantic.db.repository.support.InsertPlan;
+import com.gemantic.db.repository.support.InsertPlanRegistry;
+import com.gemantic.db.repository.support.LargeInSplitter;
+import com.gemantic.db.repository.support.LargeInStrategy;
+import com.gemantic.db.repository.support.LoadDataInputStream;
+import com.gemantic.db.repository.support.FullScanAction;
+import com.gemantic.db.repository.support.IndexCoverage;
+import com.gemantic.db.repository.support.IndexPlan;
+import com.gemantic.db.repository.support.QueryDeadline;
+import com.gemantic.db.repository.support.QueryTimer;
+import com.gemantic.db.repository.support.RepositoryConfig;
+import com.gemantic.db.repository.support.RepositoryMetrics;
+import com.gemantic.db.repository.support.TableIndexes;
+import com.gemantic.db.repository.support.TimeBuckets;
 import com.gemantic.db.support.*;
 import com.gemantic.db.util.DBUtil;
 import com.gemantic.springcloud.model.PageResponse;
-import com.gemantic.springcloud.utils.PageUtil;
 import com.gemantic.springcloud.utils.ReflectUtil;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.collections4.MapUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.engine.spi.SessionImplementor;
 import org.hibernate.internal.SessionFactoryImpl;
 import org.hibernate.jdbc.Work;
 import org.hibernate.persister.entity.SingleTableEntityPersister;
+import org.hibernate.type.Type;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.ConfigurablePropertyAccessor;
+import org.springframework.beans.PropertyAccessorFactory;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
@@ -30,21 +65,39 @@ import org.springframework.data.jpa.repository.support.JpaEntityInformation;
 import org.springframework.data.jpa.repository.support.SimpleJpaRepository;
 import org.springframework.data.repository.support.PageableExecutionUtils;
 import org.springframework.lang.Nullable;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.util.Assert;
 
 import javax.persistence.*;
 import javax.persistence.criteria.*;
 import javax.persistence.metamodel.Attribute;
 import javax.persistence.metamodel.EntityType;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
 import java.util.stream.Collectors;
 
 public class BaseRepositoryImpl<T, ID> extends SimpleJpaRepository<T, ID> implements BaseRepository<T, ID> {
@@ -56,6 +109,18 @@ public class BaseRepositoryImpl<T, ID> extends SimpleJpaRepository<T, ID> implem
 
     private JpaEntityInformation<T, ?> ei;
 
+    private final RepositoryConfig config = new RepositoryConfig();
+
+    private final CountCache countCache = new CountCache(config);
+
+    private final Map<String, Optional<CompiledQuery>> compiledQueries = new ConcurrentHashMap<>();
+
+    private volatile EntityCache<T> entityCache;
+
+    private volatile RepositoryMetrics metrics;
+
+    private volatile Optional<TableIndexes> tableIndexes;
+
     public BaseRepositoryImpl(JpaEntityInformation<T, ?> entityInformation, EntityManager em) {
         super(entityInformation, em);
         this.em = em;
@@ -69,20 +134,218 @@ public class BaseRepositoryImpl<T, ID> extends SimpleJpaRepository<T, ID> implem
     }
 
 
+    @Override
+    public RepositoryConfig getConfig() {
+        return config;
+    }
+
+    @Override
+    @Transactional
+    public <S extends T> S save(S entity) {
+        S result = super.save(entity);
+        afterWrite(idsOf(Lists.newArrayList(result)));
+        return result;
+    }
+
+    /**
+     * 配置了IdGenerator时,新对象预先分配id后按批量插入写入(不经过persist,返回的新对象不受EntityManager管理,不触发实体监听与@PrePersist),
+     * 已有id的对象仍逐个save;有集合关联的实体需要级联插入,仍按JPA逐个save使用数据库自增id
+     */
+    @Override
+    @Transactional
+    public <S extends T> List<S> saveAll(Iterable<S> entities) {
+        IdGenerator idGenerator = config.getIdGenerator();
+        if (null == idGenerator || !BaseModel.class.isAssignableFrom(getDomainClass())) {
+            return super.saveAll(entities);
+        }
+        if (CollectionUtils.isNotEmpty(em.getMetamodel().entity(getDomainClass()).getPluralAttributes())) {
+            return super.saveAll(entities);
+        }
+        List<S> result = Lists.newArrayList();
+        List<T> inserts = Lists.newArrayList();
+        for (S entity : entities) {
+            if (assignId(entity)) {
+                inserts.add(entity);
+                result.add(entity);
+            } else {
+                result.add(save(entity));
+            }
+        }
+        if (CollectionUtils.isNotEmpty(inserts)) {
+            em.flush();
+            executeBatchWork(INSERT_TPL, null, inserts);
+            afterWrite(Lists.newArrayList());
+        }
+        return result;
+    }
+
+    @Override
+    @Transactional
+    public void delete(T entity) {
+        super.delete(entity);
+        afterWrite(idsOf(Lists.newArrayList(entity)));
+    }
+
+    @Override
+    @Transactional
+    public void deleteInBatch(Iterable<T> entities) {
+        super.deleteInBatch(entities);
+        afterWrite(idsOf(entities));
+    }
+
+    @Override
+    @Transactional
+    public void deleteAllInBatch() {
+        super.deleteAllInBatch();
+        afterWrite(null);
+    }
+
+    @Override
+    public T getOne(ID id) {
+        if (null == getEntityCache()) {
+            return super.getOne(id);
+        }
+        return findById(id).orElseThrow(() -> new EntityNotFoundException("Unable to find " + getDomainClass().getName() + " with id " + id));
+    }
+
+    @Override
+    public Optional<T> findById(ID id) {
+        boolean previous = DBRoutingContext.enter(config.isReadFromReplica());
+        QueryTimer timer = getMetrics().start("findById");
+        try {
+            Optional<T> result = doFindById(id);
+            timer.setRows(result.isPresent() ? 1L : 0L);
+            return result;
+        } finally {
+            timer.stop();
+            DBRoutingContext.exit(previous);
+        }
+    }
+
+    protected Optional<T> doFindById(ID id) {
+        EntityCache<T> cache = getReadCache();
+        if (null == cache) {
+            return super.findById(id);
+        }
+        T cached = cache.get(id);
+        if (null != cached) {
+            return Optional.of(cached);
+        }
+        Optional<T> result = super.findById(id);
+        result.ifPresent(r -> cache.put(id, r));
+        return result;
+    }
+
+    @Override
+    public List<T> findAllById(Iterable<ID> ids) {
+        boolean previous = DBRoutingContext.enter(config.isReadFromReplica());
+        QueryTimer timer = getMetrics().start("findAllById");
+        try {
+            List<T> result = doFindAllById(ids);
+            timer.setRows(result.size());
+            return result;
+        } finally {
+            timer.stop();
+            DBRoutingContext.exit(previous);
+        }
+    }
+
+    @Override
+    public long count(@Nullable Specification<T> spec) {
+        boolean previous = DBRoutingContext.enter(config.isReadFromReplica());
+        QueryTimer timer = getMetrics().start("count");
+        try {
+            return super.count(spec);
+        } finally {
+            timer.stop();
+            DBRoutingContext.exit(previous);
+        }
+    }
+
+    protected List<T> doFindAllById(Iterable<ID> ids) {
+        EntityCache<T> cache = getReadCache();
+        if (null == ids) {
+            return super.findAllById(ids);
+        }
+        if (null == cache) {
+            return loadAllById(Lists.newArrayList(ids));
+        }
+        List<T> result = Lists.newArrayList();
+        List<ID> missIds = Lists.newArrayList();
+        for (ID id : ids) {
+            T cached = cache.get(id);
+            if (null != cached) {
+                result.add(cached);
+            } else {
+                missIds.add(id);
+            }
+        }
+        if (CollectionUtils.isNotEmpty(missIds)) {
+            for (T loaded : loadAllById(missIds)) {
+                cache.put(((BaseModel) loaded).getId(), loaded);
+                result.add(loaded);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 编号个数超过大IN阈值时按阈值分组查询
+     */
+    protected List<T> loadAllById(List<ID> ids) {
+        int threshold = config.getLargeInThreshold();
+        if (!LargeInStrategy.CHUNK.equals(config.getLargeInStrategy()) || threshold <= 0 || ids.size() <= threshold) {
+            return super.findAllById(ids);
+        }
+        List<T> result = Lists.newArrayListWithCapacity(ids.size());
+        for (List<ID> chunk : LargeInSplitter.partition(ids, threshold)) {
+            result.addAll(super.findAllById(chunk));
+        }
+        return result;
+    }
+
     @Override
     @Transactional
     public int deleteByQuery(Specification var) throws Exception {
+        QueryTimer timer = getMetrics().start("delete");
+        try {
+            int count = executeDelete(var);
+            timer.setRows(count);
+            afterWrite(null);
+            return count;
+        } finally {
+            timer.stop();
+        }
+    }
+
+    private int executeDelete(Specification var) {
         CriteriaBuilder criteriaBuilder = em.getCriteriaBuilder();
         CriteriaDelete criteriaDelete = criteriaBuilder.createCriteriaDelete(getDomainClass());
         Root<T> root = criteriaDelete.from(getDomainClass());
         CriteriaQuery<T> query = criteriaBuilder.createQuery(getDomainClass());
         criteriaDelete.where(var.toPredicate(root, query, criteriaBuilder));
-        return em.createQuery(criteriaDelete).executeUpdate();
+        Query deleteQuery = applyTimeout(em.createQuery(criteriaDelete));
+        QueryTimer.mark("build");
+        int count = deleteQuery.executeUpdate();
+        QueryTimer.mark("execute");
+        return count;
     }
 
     @Override
     @Transactional
     public int updateByQuery(Specification var, Map<String, Object> values) throws Exception {
+        QueryTimer timer = getMetrics().start("update");
+        try {
+            int count = executeUpdate(var, values);
+            timer.setRows(count);
+            afterWrite(null);
+            return count;
+        } finally {
+            timer.stop();
+        }
+    }
+
+    private int executeUpdate(Specification var, Map<String, Object> values) {
         if (null == var || MapUtils.isEmpty(values)) {
             return 0;
         }
@@ -97,7 +360,11 @@ public class BaseRepositoryImpl<T, ID> extends SimpleJpaRepository<T, ID> implem
             Path<Object> path = DBUtil.getPath(field, root);
             criteriaUpdate.set(path, DBUtil.getPathValue(path, value));
         }
-        return em.createQuery(criteriaUpdate).executeUpdate();
+        Query updateQuery = applyTimeout(em.createQuery(criteriaUpdate));
+        QueryTimer.mark("build");
+        int count = updateQuery.executeUpdate();
+        QueryTimer.mark("execute");
+        return count;
     }
 
     @Override
@@ -106,95 +373,530 @@ public class BaseRepositoryImpl<T, ID> extends SimpleJpaRepository<T, ID> implem
         if (null == update) {
             return 0;
         }
-        return updateByQuery(getSpecification(update.getAndQuery(), update.getOrQuery(), Boolean.FALSE), update.getUpdateValues());
+        Long deadline = QueryDeadline.enter(update.getTimeout());
+        QueryTimer timer = startTimer("update", update.getAndQuery(), update.getOrQuery(), Boolean.FALSE, null);
+        try {
+            int count = 0;
+            for (List<DBQueryItem> andQuery : splitLargeIn(update.getAndQuery())) {
+                count += executeUpdate(getSpecification(andQuery, update.getOrQuery(), Boolean.FALSE), update.getUpdateValues());
+            }
+            timer.setRows(count);
+            afterWrite(idsOf(update.getAndQuery()));
+            return count;
+        } finally {
+            timer.stop();
+            QueryDeadline.exit(deadline);
+        }
+    }
+
+    @Override
+    public List<ID> findIds(List<DBQueryItem> andQuery, List<DBQueryItem> orQuery, ID afterId, int limit) throws Exception {
+        andQuery = convertedQueryItems(andQuery);
+        orQuery = convertedQueryItems(orQuery);
+        Specification<T> specification = getSpecification(andQuery, orQuery, Boolean.FALSE);
+        CriteriaBuilder criteriaBuilder = em.getCriteriaBuilder();
+        CriteriaQuery<Object> criteriaQuery = criteriaBuilder.createQuery(Object.class);
+        Root<T> root = criteriaQuery.from(getDomainClass());
+        Path<Comparable> idPath = root.get("id");
+        Predicate predicate = specification.toPredicate(root, criteriaQuery, criteriaBuilder);
+        if (null != afterId) {
+            predicate = criteriaBuilder.and(predicate, criteriaBuilder.greaterThan(idPath, (Comparable) afterId));
+        }
+        criteriaQuery.select(idPath).where(predicate).orderBy(criteriaBuilder.asc(idPath));
+        QueryTimer timer = startTimer("findIds", andQuery, orQuery, Boolean.FALSE, null);
+        try {
+            List<ID> ids = (List<ID>) applyTimeout(em.createQuery(criteriaQuery)).setMaxResults(limit).getResultList();
+            timer.setRows(ids.size());
+            return ids;
+        } finally {
+            timer.stop();
+        }
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public int deleteByIds(List<DBQueryItem> andQuery, List<DBQueryItem> orQuery, List<ID> ids) throws Exception {
+        if (CollectionUtils.isEmpty(ids)) {
+            return 0;
+        }
+        andQuery = convertedQueryItems(andQuery);
+        orQuery = convertedQueryItems(orQuery);
+        QueryTimer timer = startTimer("delete", andQuery, orQuery, Boolean.FALSE, null);
+        try {
+            int count = executeDelete(getSpecification(withIds(andQuery, ids), orQuery, Boolean.FALSE));
+            timer.setRows(count);
+            afterWrite(ids);
+            return count;
+        } finally {
+            timer.stop();
+        }
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public int updateByIds(List<DBQueryItem> andQuery, List<DBQueryItem> orQuery, List<ID> ids, Map<String, Object> values) throws Exception {
+        if (CollectionUtils.isEmpty(ids)) {
+            return 0;
+        }
+        andQuery = convertedQueryItems(andQuery);
+        orQuery = convertedQueryItems(orQuery);
+        QueryTimer timer = startTimer("update", andQuery, orQuery, Boolean.FALSE, null);
+        try {
+            int count = executeUpdate(getSpecification(withIds(andQuery, ids), orQuery, Boolean.FALSE), values);
+            timer.setRows(count);
+            afterWrite(ids);
+            return count;
+        } finally {
+            timer.stop();
+        }
+    }
+
+    /**
+     * 复制查询条件后再转义like值,分批任务每批都会重复传入同一组条件,不能在原对象上重复转义
+     */
+    private List<DBQueryItem> convertedQueryItems(List<DBQueryItem> queryItems) {
+        if (CollectionUtils.isEmpty(queryItems)) {
+            return queryItems;
+        }
+        List<DBQueryItem> copy = queryItems.stream().filter(Objects::nonNull)
+                .map(q -> new DBQueryItem(q.getField(), q.getOperation(), q.getValues())).collect(Collectors.toList());
+        convertQueryItem(copy);
+        return copy;
     }
 
-    private String INSERT_IGNORE_TPL = "INSERT IGNORE INTO %s (%s) values(%s) %s";
+    private List<DBQueryItem> withIds(List<DBQueryItem> andQuery, List<ID> ids) {
+        List<DBQueryItem> queryItems = Lists.newArrayList();
+        if (CollectionUtils.isNotEmpty(andQuery)) {
+            queryItems.addAll(andQuery);
+        }
+        DBQueryItem queryItem = new DBQueryItem();
+        queryItem.setOperation(DBOperation.IN);
+        queryItem.setValues(ids);
+        queryItem.setField("id");
+        queryItems.add(queryItem);
+        return queryItems;
+    }
 
-    private String INSERT_ON_UPDATE_TPL = "INSERT INTO %s (%s) values(%s) ON DUPLICATE KEY UPDATE %s";
+    private static final String UPDATE_AT_FIELD = "updateAt";
+
+    private String INSERT_TPL = "INSERT INTO %s (%s) values%s %s";
+
+    private String INSERT_IGNORE_TPL = "INSERT IGNORE INTO %s (%s) values%s %s";
+
+    private String INSERT_ON_UPDATE_TPL = "INSERT INTO %s (%s) values%s ON DUPLICATE KEY UPDATE %s";
 
     @Override
     @Transactional
     public void bulkInsert(List<T> data) throws Exception {
+        bulkInsertCounts(data);
+    }
+
+    @Override
+    @Transactional
+    public List<Integer> bulkInsertCounts(List<T> data) throws Exception {
         if (CollectionUtils.isEmpty(data)) {
-            return;
+            return Lists.newArrayList();
+        }
+        data.forEach(this::assignId);
+        QueryTimer timer = getMetrics().start("bulkInsert");
+        try {
+            List<Integer> counts = executeBatchWork(INSERT_IGNORE_TPL, null, data);
+            timer.setRows(counts.stream().mapToLong(Integer::longValue).sum());
+            afterWrite(Lists.newArrayList());
+            return counts;
+        } finally {
+            timer.stop();
         }
-        executeBatchWork(INSERT_IGNORE_TPL, null, data);
     }
 
 
     @Override
     @Transactional
     public void bulkSave(List<T> data, List<String> onlyInsertFields) throws Exception {
+        bulkSaveCounts(data, onlyInsertFields);
+    }
+
+    @Override
+    @Transactional
+    public List<Integer> bulkSaveCounts(List<T> data, List<String> onlyInsertFields) throws Exception {
         if (CollectionUtils.isEmpty(data) || CollectionUtils.isEmpty(onlyInsertFields)) {
-            return;
+            return Lists.newArrayList();
+        }
+        boolean assigned = false;
+        for (T object : data) {
+            assigned |= assignId(object);
+        }
+        if (assigned) {
+            //分配的id只在插入时写入,唯一键重复时不修改已有记录的id
+            onlyInsertFields = Lists.newArrayList(onlyInsertFields);
+            onlyInsertFields.add("id");
+        }
+        QueryTimer timer = getMetrics().start("bulkSave");
+        try {
+            List<Integer> counts = executeBatchWork(INSERT_ON_UPDATE_TPL, onlyInsertFields, data);
+            timer.setRows(counts.stream().mapToLong(Integer::longValue).sum());
+            afterWrite(null);
+            return counts;
+        } finally {
+            timer.stop();
         }
-        executeBatchWork(INSERT_ON_UPDATE_TPL, onlyInsertFields, data);
     }
 
 
-    private void executeBatchWork(String tpl, List<String> onlyInsertFields, List<T> data) {
+    /**
+     * REPLACE与bulkSave的ON DUPLICATE KEY UPDATE不同:唯一键重复时先删除旧记录再插入,onlyInsertFields(如createAt)也会被新值覆盖,
+     * id为空的记录会得到新的自增id,并触发删除相关的外键动作
+     */
+    @Override
+    @Transactional
+    public long bulkLoad(Iterable<T> data, boolean replace) throws Exception {
+        if (null == data) {
+            return 0L;
+        }
         Session session = em.unwrap(Session.class);
-        List<Field> fields = Lists.newArrayList();
-        String sql = getInsertSqlAndFillFields(tpl, onlyInsertFields, fields);
-        session.doWork(new Work() {
-            @Override
-            public void execute(Connection connection) throws SQLException {
-                PreparedStatement statement = connection.prepareStatement(sql);
-                for (T object : data) {
-                    try {
-                        for (int i = 0; i < fields.size(); i++) {
-                            int stateInt = i + 1;
-                            Object value = fields.get(i).get(object);
-
-                            if (null != value && value instanceof BaseModel) {
-                                statement.setObject(stateInt, ((BaseModel) value).getId());
-                            } else {
-                                statement.setObject(stateInt, value);
+        InsertPlan plan = getInsertPlan(INSERT_IGNORE_TPL, null);
+        QueryTimer timer = getMetrics().start("bulkLoad");
+        try {
+            long count = session.doReturningWork(connection -> {
+                LoadDataInputStream in = new LoadDataInputStream(Iterators.transform(data.iterator(), t -> {
+                    assignId(t);
+                    return t;
+                }), plan);
+                try (Statement statement = applyTimeout(connection.createStatement())) {
+                    in.attachTo(statement);
+                    statement.execute(LoadDataInputStream.getSql(plan, replace));
+                    long updateCount = statement.getUpdateCount();
+                    LOG.info("load data {} rows {} update count {}", plan.getTableName(), in.getRows(), updateCount);
+                    return updateCount;
+                }
+            });
+            timer.setRows(count);
+            afterWrite(replace ? null : Lists.newArrayList());
+            return count;
+        } finally {
+            timer.stop();
+        }
+    }
+
+    /**
+     * 配置了IdGenerator时为没有id的新对象分配id,返回是否分配。
+     * 号段与表的AUTO_INCREMENT互不感知,同一实体混用两种方式插入会产生重复id,所以配置后所有插入都由IdGenerator分配id
+     */
+    protected boolean assignId(T entity) {
+        IdGenerator idGenerator = config.getIdGenerator();
+        if (null == idGenerator || !(entity instanceof BaseModel) || null != ((BaseModel) entity).getId()) {
+            return false;
+        }
+        ((BaseModel) entity).setId(idGenerator.nextId());
+        return true;
+    }
+
+    /**
+     * 字段集合相同的补丁为一组,每组一条 UPDATE 表 SET 列=?,...,update_at=? WHERE id=? 按批大小以jdbc batch执行,
+     * 只更新补丁中的字段与updateAt(补丁未传时为当前时间),不查询实体,返回影响行数
+     */
+    @Override
+    @Transactional
+    public int bulkPatch(List<DBPatch<ID>> patches) throws Exception {
+        if (CollectionUtils.isEmpty(patches)) {
+            return 0;
+        }
+        Map<List<String>, List<DBPatch<ID>>> groups = Maps.newLinkedHashMap();
+        List<Object> ids = Lists.newArrayList();
+        for (DBPatch<ID> patch : patches) {
+            if (null == patch || null == patch.getId() || MapUtils.isEmpty(patch.getFields())) {
+                continue;
+            }
+            TreeSet<String> fields = new TreeSet<>(patch.getFields().keySet());
+            fields.remove("id");
+            fields.add(UPDATE_AT_FIELD);
+            groups.computeIfAbsent(Lists.newArrayList(fields), k -> Lists.newArrayList()).add(patch);
+            ids.add(patch.getId());
+        }
+        if (groups.isEmpty()) {
+            return 0;
+        }
+        SingleTableEntityPersister persister = getEntityPersister();
+        Map<List<String>, String> sqls = Maps.newHashMap();
+        for (List<String> fields : groups.keySet()) {
+            List<String> sets = Lists.newArrayList();
+            for (String field : fields) {
+                sets.add(getPatchColumn(persister, field) + "=?");
+            }
+            sqls.put(fields, "UPDATE " + persister.getTableName() + " SET " + String.join(",", sets) + " WHERE " + persister.getIdentifierColumnNames()[0] + "=?");
+        }
+        SessionImplementor session = em.unwrap(SessionImplementor.class);
+        Long now = System.currentTimeMillis();
+        int batchSize = Math.max(1, config.getBulkBatchSize());
+        QueryTimer timer = getMetrics().start("bulkPatch");
+        try {
+            int count = session.doReturningWork(connection -> {
+                int total = 0;
+                for (Map.Entry<List<String>, List<DBPatch<ID>>> group : groups.entrySet()) {
+                    List<String> fields = group.getKey();
+                    List<Type> types = fields.stream().map(f -> getPatchType(persister, f)).collect(Collectors.toList());
+                    try (PreparedStatement statement = connection.prepareStatement(sqls.get(fields))) {
+                        for (List<DBPatch<ID>> chunk : Lists.partition(group.getValue(), batchSize)) {
+                            for (DBPatch<ID> patch : chunk) {
+                                int index = 1;
+                                for (int i = 0; i < fields.size(); i++) {
+                                    Object value = patch.getFields().get(fields.get(i));
+                                    if (null == value && UPDATE_AT_FIELD.equals(fields.get(i))) {
+                                        value = now;
+                                    }
+                                    types.get(i).nullSafeSet(statement, getPatchValue(value, types.get(i)), index++, session);
+                                }
+                                persister.getIdentifierType().nullSafeSet(statement, getPatchValue(patch.getId(), persister.getIdentifierType()), index, session);
+                                statement.addBatch();
                             }
+                            for (int result : applyTimeout(statement).executeBatch()) {
+                                if (result > 0) {
+                                    total += result;
+                                }
+                            }
+                            statement.clearBatch();
                         }
-                        statement.addBatch();
-                    } catch (Exception e) {
-                        LOG.error("bulkSave {} error {}", sql, object, e);
                     }
                 }
-                statement.executeBatch();
+                return total;
+            });
+            timer.setRows(count);
+            afterWrite(ids);
+            return count;
+        } finally {
+            timer.stop();
+        }
+    }
+
+    /**
+     * 同一事务(同一连接)中依次执行,SAVE后flush使后续的jdbc批量语句能看到保存的数据
+     */
+    @Override
+    @Transactional
+    public List<DBBatchResult> batch(List<DBBatchOperation<T>> operations, List<String> onlyInsertFields) throws Exception {
+        List<DBBatchResult> results = Lists.newArrayList();
+        if (CollectionUtils.isEmpty(operations)) {
+            return results;
+        }
+        QueryTimer timer = getMetrics().start("batch");
+        try {
+            for (int i = 0; i < operations.size(); i++) {
+                DBBatchOperation<T> operation = operations.get(i);
+                if (null == operation || null == operation.getType()) {
+                    throw new IllegalArgumentException("batch operation " + i + " type is empty");
+                }
+                DBBatchResult result = new DBBatchResult();
+                result.setIndex(i);
+                result.setType(operation.getType());
+                switch (operation.getType()) {
+                    case SAVE:
+                        List<T> saved = CollectionUtils.isEmpty(operation.getData()) ? Lists.newArrayList() : saveAll(operation.getData());
+                        em.flush();
+                        result.setIds(saved.stream().map(s -> ((BaseModel) s).getId()).collect(Collectors.toList()));
+                        result.setCount(saved.size());
+                        break;
+                    case BULK_INSERT:
+                        result.setCount(bulkInsertCounts(operation.getData()).stream().mapToLong(Integer::longValue).sum());
+                        break;
+                    case BULK_SAVE:
+                        result.setCount(bulkSaveCounts(operation.getData(), onlyInsertFields).stream().mapToLong(Integer::longValue).sum());
+                        break;
+                    case UPDATE:
+                        result.setCount(updateByQuery(operation.getUpdate()));
+                        break;
+                    case DELETE:
+                        result.setCount(deleteByQuery((DBQuery) operation.getQuery()));
+                        break;
+                    case PATCH:
+                        result.setCount(bulkPatch((List) operation.getPatches()));
+                        break;
+                }
+                results.add(result);
+            }
+            timer.setRows(results.stream().mapToLong(DBBatchResult::getCount).sum());
+            return results;
+        } finally {
+            timer.stop();
+        }
+    }
+
+    private String getPatchColumn(SingleTableEntityPersister persister, String field) {
+        String[] columns;
+        try {
+            columns = persister.getPropertyColumnNames(field);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("unknown patch field " + field, e);
+        }
+        if (columns.length != 1 || null == columns[0]) {
+            throw new IllegalArgumentException("patch field " + field + " is not a single column");
+        }
+        return columns[0];
+    }
+
+    /**
+     * 补丁字段的绑定类型,多对一字段使用关联对象的编号类型
+     */
+    private Type getPatchType(SingleTableEntityPersister persister, String field) {
+        Type type = persister.getPropertyType(field);
+        if (type instanceof org.hibernate.type.EntityType) {
+            return ((org.hibernate.type.EntityType) type).getIdentifierOrUniqueKeyType(persister.getFactory());
+        }
+        return type;
+    }
+
+    private Object getPatchValue(Object value, Type type) {
+        if (value instanceof Map) {
+            value = ((Map<?, ?>) value).get("id");
+        } else if (value instanceof BaseModel) {
+            value = ((BaseModel) value).getId();
+        }
+        if (null == value) {
+            return null;
+        }
+        return DBUtil.convertValue(value, type.getReturnedClass());
+    }
+
+    /**
+     * 按配置的批大小分批写入,返回每批影响行数
+     */
+    private List<Integer> executeBatchWork(String tpl, List<String> onlyInsertFields, List<T> data) {
+        Session session = em.unwrap(Session.class);
+        InsertPlan plan = getInsertPlan(tpl, onlyInsertFields);
+        boolean multiRow = config.isBulkMultiRow();
+        int batchSize = Math.max(1, config.getBulkBatchSize());
+        if (multiRow) {
+            batchSize = Math.min(batchSize, plan.getMaxRows());
+        }
+        List<List<T>> chunks = Lists.partition(data, batchSize);
+        List<Integer> counts = Lists.newArrayListWithCapacity(chunks.size());
+        session.doWork(new Work() {
+            @Override
+            public void execute(Connection connection) throws SQLException {
+                if (multiRow) {
+                    executeMultiRow(connection, plan, chunks, counts);
+                } else {
+                    executeBatch(connection, plan, chunks, counts);
+                }
             }
         });
+        return counts;
     }
 
+    private void executeMultiRow(Connection connection, InsertPlan plan, List<List<T>> chunks, List<Integer> counts) throws SQLException {
+        PreparedStatement statement = null;
+        int statementRows = 0;
+        try {
+            for (List<T> chunk : chunks) {
+                if (null == statement || statementRows != chunk.size()) {
+                    if (null != statement) {
+                        statement.close();
+                    }
+                    statementRows = chunk.size();
+                    statement = connection.prepareStatement(plan.getSql(statementRows));
+                }
+                int index = 1;
+                for (T object : chunk) {
+                    index = bindValues(statement, plan, object, index);
+                }
+                counts.add(applyTimeout(statement).executeUpdate());
+            }
+        } finally {
+            if (null != statement) {
+                statement.close();
+            }
+        }
+    }
 
-    private String getInsertSqlAndFillFields(String tpl, List<String> onlyInsertFields, List<Field> fields) {
-        EntityType<T> entityType = em.getMetamodel().entity(getDomainClass());
+    private void executeBatch(Connection connection, InsertPlan plan, List<List<T>> chunks, List<Integer> counts) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(plan.getSql())) {
+            for (List<T> chunk : chunks) {
+                for (T object : chunk) {
+                    bindValues(statement, plan, object, 1);
+                    statement.addBatch();
+                }
+                int count = 0;
+                for (int result : applyTimeout(statement).executeBatch()) {
+                    if (result > 0) {
+                        count += result;
+                    }
+                }
+                statement.clearBatch();
+                counts.add(count);
+            }
+        }
+    }
+
+    private int bindValues(PreparedStatement statement, InsertPlan plan, T object, int index) throws SQLException {
+        for (int i = 0; i < plan.size(); i++) {
+            Object value;
+            try {
+                value = plan.getValue(i, object);
+            } catch (Throwable e) {
+                throw new SQLException("bulk bind " + plan.getColumns().get(i) + " error " + object, e);
+            }
+            statement.setObject(index++, value);
+        }
+        return index;
+    }
+
+
+    protected SingleTableEntityPersister getEntityPersister() {
         SessionFactoryImpl sessionFactory = em.getEntityManagerFactory().unwrap(SessionFactoryImpl.class);
-        SingleTableEntityPersister entityPersister = (SingleTableEntityPersister) sessionFactory.getMetamodel().entityPersister(getDomainClass());
-        StringBuilder columns = new StringBuilder();
-        StringBuilder values = new StringBuilder();
-        StringBuilder update = new StringBuilder();
-        for (Attribute attribute : entityType.getAttributes()) {
-            if (columns.length() > 0) {
-                columns.append(",");
-                values.append(",");
+        return (SingleTableEntityPersister) sessionFactory.getMetamodel().entityPersister(getDomainClass());
+    }
+
+    protected InsertPlan getInsertPlan(String tpl, List<String> onlyInsertFields) {
+        List<String> onlyInsertColumns = getOnlyInsertColumns(onlyInsertFields);
+        return InsertPlanRegistry.get(getDomainClass(), tpl, onlyInsertColumns, () -> buildInsertPlan(tpl, onlyInsertColumns));
+    }
+
+    /**
+     * 仅插入字段(字段名或列名)归一化为排序去重后的列名,实体中不存在的忽略,计划缓存的key不受调用方传入的顺序与内容影响;没有仅插入字段时返回null
+     */
+    private List<String> getOnlyInsertColumns(List<String> onlyInsertFields) {
+        if (CollectionUtils.isEmpty(onlyInsertFields)) {
+            return null;
+        }
+        Set<String> columns = new TreeSet<>();
+        SingleTableEntityPersister entityPersister = getEntityPersister();
+        for (Attribute attribute : em.getMetamodel().entity(getDomainClass()).getAttributes()) {
+            String column = entityPersister.getPropertyColumnNames(attribute.getName())[0];
+            if (onlyInsertFields.contains(attribute.getName()) || onlyInsertFields.contains(column)) {
+                columns.add(column);
             }
+        }
+        return Lists.newArrayList(columns);
+    }
 
+    private InsertPlan buildInsertPlan(String tpl, List<String> onlyInsertColumns) {
+        EntityType<T> entityType = em.getMetamodel().entity(getDomainClass());
+        SingleTableEntityPersister entityPersister = getEntityPersister();
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        List<String> columnList = Lists.newArrayList();
+        List<MethodHandle> getters = Lists.newArrayList();
+        StringBuilder update = new StringBuilder();
+        for (Attribute attribute : entityType.getAttributes()) {
             String column = entityPersister.getPropertyColumnNames(attribute.getName())[0];
-            columns.append(column);
+            columnList.add(column);
             Field field = ReflectUtil.getField(attribute.getName(), getDomainClass());
             field.setAccessible(Boolean.TRUE);
-            fields.add(field);
-            values.append("?");
-            if (CollectionUtils.isEmpty(onlyInsertFields) || onlyInsertFields.contains(attribute.getName()) || onlyInsertFields.contains(column)) {
+            try {
+                getters.add(lookup.unreflectGetter(field).asType(MethodType.methodType(Object.class, Object.class)));
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException("can not access field " + field, e);
+            }
+            if (null == onlyInsertColumns || onlyInsertColumns.contains(column)) {
                 continue;
             }
             if (update.length() > 0) {
                 update.append(",");
             }
-            update.append(String.format("%s=values(%s)", column, column));
+            update.append(column).append("=values(").append(column).append(")");
 
         }
-        String sql = String.format(tpl, entityPersister.getTableName(), columns.toString(), values.toString(), update.toString());
-        LOG.info(sql);
-        return sql;
+        InsertPlan plan = new InsertPlan(tpl, entityPersister.getTableName(), columnList, getters, update.toString());
+        LOG.info("insert plan {} [{}]", getDomainClass().getSimpleName(), plan.getSql());
+        return plan;
     }
 
     @Override
@@ -209,33 +911,70 @@ public class BaseRepositoryImpl<T, ID> extends SimpleJpaRepository<T, ID> implem
             queryItem.setValues(query.getIds());
             queryItem.setField("id");
             List<DBQueryItem> queryItems = Lists.newArrayList(queryItem);
+            Long timeout = query.getTimeout();
             query = new DBQuery();
             query.setAndQuery(queryItems);
+            query.setTimeout(timeout);
+        }
+        Long deadline = QueryDeadline.enter(query.getTimeout());
+        QueryTimer timer = startTimer("delete", query.getAndQuery(), query.getOrQuery(), Boolean.FALSE, null);
+        try {
+            int count = 0;
+            for (List<DBQueryItem> andQuery : splitLargeIn(query.getAndQuery())) {
+                count += executeDelete(getSpecification(andQuery, query.getOrQuery(), Boolean.FALSE));
+            }
+            timer.setRows(count);
+            afterWrite(idsOf(query.getAndQuery()));
+            return count;
+        } finally {
+            timer.stop();
+            QueryDeadline.exit(deadline);
         }
-        return deleteByQuery(getSpecification(query.getAndQuery(), query.getOrQuery(), Boolean.FALSE));
     }
 
     @Override
     public PageResponse<T> findByQuery(DBQuery<ID> query) throws Exception {
+        boolean previous = DBRoutingContext.enter(config.isReadFromReplica());
+        Long deadline = QueryDeadline.enter(null == query ? null : query.getTimeout());
+        QueryTimer timer = null == query ? getMetrics().start("find") : startTimer("find", query);
+        try {
+            query = checkIndex("find", query);
+            PageResponse<T> pageResponse = doFindByQuery(query);
+            if (null != query && MapUtils.isEmpty(query.getIncludeFields())) {
+                batchFetch(pageResponse.getList(), getFetchFields(query, DBFetchMode.BATCH));
+            }
+            timer.setRows(null == pageResponse.getList() ? 0L : pageResponse.getList().size());
+            return pageResponse;
+        } finally {
+            timer.stop();
+            QueryDeadline.exit(deadline);
+            DBRoutingContext.exit(previous);
+        }
+    }
+
+    protected PageResponse<T> doFindByQuery(DBQuery<ID> query) throws Exception {
         if (null == query) {
             return new PageResponse<>();
         }
         if (query.getCurrentPage() <= 0) {
             query.setCurrentPage(1);
         }
+        checkCountMode(query);
         if (CollectionUtils.isNotEmpty(query.getIds())) {
             PageResponse<T> pageResponse = new PageResponse<T>();
+            List<ID> ids = query.getIds().stream().filter(Objects::nonNull).distinct().collect(Collectors.toList());
             if(MapUtils.isEmpty(query.getIncludeFields())){
-                pageResponse.setList(findAllById(query.getIds()));
+                pageResponse.setList(findAllById(ids));
             }else {
                 DBQueryItem queryItem = new DBQueryItem();
                 queryItem.setOperation(DBOperation.IN);
-                queryItem.setValues(query.getIds());
+                queryItem.setValues(ids);
                 queryItem.setField("id");
-                List<DBQueryItem> queryItems = Lists.newArrayList(queryItem);
-                query = new DBQuery();
-                query.setAndQuery(queryItems);
-                pageResponse.setList(DBUtil.tuple2Object(findTuple(query.getIncludeFields(),getSpecification(query.getAndQuery(),null,Boolean.FALSE),DBUtil.getSort(query.getSorts())),getDomainClass()));
+                List<T> list = Lists.newArrayList();
+                for (List<DBQueryItem> andQuery : splitLargeIn(Lists.newArrayList(queryItem))) {
+                    list.addAll(DBUtil.tuple2Object(findTuple(query.getIncludeFields(), getSpecification(andQuery, null, Boolean.FALSE), DBUtil.getSort(query.getSorts())), getDomainClass()));
+                }
+                pageResponse.setList(list);
             }
 
             pageResponse.setTotalCountInt(pageResponse.getList().size());
@@ -246,33 +985,73 @@ public class BaseRepositoryImpl<T, ID> extends SimpleJpaRepository<T, ID> implem
         }
         convertQueryItem(query.getAndQuery());
         convertQueryItem(query.getOrQuery());
-        LOG.info("query [{}]", query);
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("query [{}]", query);
+        }
         PageResponse<T> pageResponse = null;
-        Specification<T> specification = getSpecification(query.getAndQuery(), query.getOrQuery(), query.isFetch());
+        List<DBQueryItem> matchItems = query.isRelevanceSort() && !query.isSeek() ? DBUtil.getMatchItems(query.getAndQuery(), query.getOrQuery()) : Lists.newArrayList();
+        List<List<DBQueryItem>> chunks = splitLargeIn(query.getAndQuery());
+        //相关度无法在内存中合并排序,按相关度排序时不拆分
+        if (chunks.size() > 1 && !query.isSeek() && matchItems.isEmpty()) {
+            if (MapUtils.isEmpty(query.getIncludeFields())) {
+                return findByChunks(query, chunks, (spec, sort, maxResults) -> {
+                    TypedQuery<T> typedQuery = getQuery(spec, sort);
+                    if (maxResults > 0) {
+                        typedQuery.setMaxResults(maxResults);
+                    }
+                    return typedQuery.getResultList();
+                }, (row, field) -> PropertyAccessorFactory.forBeanPropertyAccess(row).getPropertyValue(field));
+            }
+            Map<String, String> includeFields = withSortFields(query.getIncludeFields(), query.getSorts());
+            return findByChunks(query, chunks, (spec, sort, maxResults) -> {
+                TypedQuery<Tuple> typedQuery = getTupleQuery(includeFields, spec, sort);
+                if (maxResults > 0) {
+                    typedQuery.setMaxResults(maxResults);
+                }
+                return DBUtil.tuple2Object(typedQuery.getResultList(), getDomainClass());
+            }, (row, field) -> PropertyAccessorFactory.forBeanPropertyAccess(row).getPropertyValue(field));
+        }
+        Specification<T> specification = getSpecification(query.getAndQuery(), query.getOrQuery(), getFetchFields(query, DBFetchMode.JOIN));
         if (query.getPageSize() <= 0) {
-            Long total = count(specification);
+            CompiledQuery compiled = getCompiledQuery(query, null);
+            Long total = countByMode(query, null == compiled ? exactCount(specification) : exactCount(compiled, query));
             pageResponse = new PageResponse<>();
             pageResponse.setTotalCount(total);
             pageResponse.setCurrentPage(1);
             pageResponse.setPageSize(query.getPageSize());
             return pageResponse;
         }
+        if (query.isSeek()) {
+            return findBySeek(query, specification);
+        }
         if (query.isPage()) {
             Pageable pageable = DBUtil.getPageable(query.getCurrentPage(), query.getPageSize(), query.getSorts());
-            if(MapUtils.isEmpty(query.getIncludeFields())){
-                Page<T> result = findAll(specification,pageable);
-                pageResponse = PageUtil.page2pageResponse(result);
+            CompiledQuery compiled = MapUtils.isEmpty(query.getIncludeFields()) ? getCompiledQuery(query, pageable.getSort()) : null;
+            //按相关度排序时排序在查询条件中设置,分页参数不带排序
+            Specification<T> selectSpecification = matchItems.isEmpty() ? specification : orderByRelevance(specification, matchItems, pageable.getSort());
+            Pageable selectPageable = matchItems.isEmpty() ? pageable : PageRequest.of(pageable.getPageNumber(), pageable.getPageSize());
+            if (null != compiled) {
+                Page<T> result = readPage(applyTimeout(compiled.createQuery(em, getDomainClass(), query.getAndQuery(), query.getOrQuery())), pageable, query, exactCount(compiled, query));
+                pageResponse = toPageResponse(result, result.getContent());
+            } else if(MapUtils.isEmpty(query.getIncludeFields())){
+                Page<T> result = readPage(getQuery(selectSpecification, selectPageable), pageable, query, exactCount(specification));
+                pageResponse = toPageResponse(result, result.getContent());
             }else {
-                Page<Tuple> tupleResult = findTuple(query.getIncludeFields(),specification,pageable);
-                pageResponse = DBUtil.tuple2pageResponse(tupleResult,getDomainClass());
+                Page<Tuple> tupleResult = readPage(getTupleQuery(query.getIncludeFields(), selectSpecification, selectPageable), pageable, query, exactCount(specification));
+                pageResponse = toPageResponse(tupleResult, DBUtil.tuple2Object(tupleResult.getContent(), getDomainClass()));
             }
        } else {
             pageResponse = new PageResponse<>();
             Sort sort = DBUtil.getSort(query.getSorts());
-            if(MapUtils.isEmpty(query.getIncludeFields())){
-                pageResponse.setList(findAll(specification, sort));
+            CompiledQuery compiled = MapUtils.isEmpty(query.getIncludeFields()) ? getCompiledQuery(query, sort) : null;
+            Specification<T> selectSpecification = matchItems.isEmpty() ? specification : orderByRelevance(specification, matchItems, sort);
+            Sort selectSort = matchItems.isEmpty() ? sort : Sort.unsorted();
+            if (null != compiled) {
+                pageResponse.setList(applyTimeout(compiled.createQuery(em, getDomainClass(), query.getAndQuery(), query.getOrQuery())).getResultList());
+            } else if(MapUtils.isEmpty(query.getIncludeFields())){
+                pageResponse.setList(findAll(selectSpecification, selectSort));
             }else {
-                pageResponse.setList(DBUtil.tuple2Object(findTuple(query.getIncludeFields(),specification,sort),getDomainClass()));
+                pageResponse.setList(DBUtil.tuple2Object(findTuple(query.getIncludeFields(),selectSpecification,selectSort),getDomainClass()));
             }
             pageResponse.setTotalCount(Long.MAX_VALUE);
             pageResponse.setCurrentPage(1);
@@ -283,25 +1062,309 @@ public class BaseRepositoryImpl<T, ID> extends SimpleJpaRepository<T, ID> implem
     }
 
 
+    /**
+     * 按DBQuery.fetchMode取级联字段:mode为JOIN时返回需要在查询中left join fetch的字段,为BATCH时返回查询后批量加载的字段。
+     * JOIN方式加载全部字段,BATCH方式单值关联仍使用join(不会使行数增加),只有集合关联批量加载
+     */
+    protected List<String> getFetchFields(DBQuery<ID> query, DBFetchMode mode) {
+        DBFetchMode fetchMode = !query.isFetch() ? DBFetchMode.NONE : null == query.getFetchMode() ? DBFetchMode.JOIN : query.getFetchMode();
+        if (DBFetchMode.NONE.equals(fetchMode)) {
+            return Lists.newArrayList();
+        }
+        List<String> fetchFields = DBUtil.getFetchFields(getDomainClass());
+        if (CollectionUtils.isNotEmpty(query.getFetchFields())) {
+            fetchFields.retainAll(query.getFetchFields());
+        }
+        if (DBFetchMode.JOIN.equals(fetchMode)) {
+            return DBFetchMode.JOIN.equals(mode) ? fetchFields : Lists.newArrayList();
+        }
+        EntityType<T> entityType = em.getMetamodel().entity(getDomainClass());
+        boolean collection = DBFetchMode.BATCH.equals(mode);
+        return fetchFields.stream().filter(f -> entityType.getAttribute(f).isCollection() == collection).collect(Collectors.toList());
+    }
+
+    /**
+     * 批量加载集合关联:每个字段按编号分组执行 select distinct e from E e left join fetch e.字段 where e.id in :ids,
+     * 再把加载的关联设置到本页对象上(对象不在当前持久化上下文时同样有效)
+     */
+    protected void batchFetch(List<T> roots, List<String> fields) {
+        if (CollectionUtils.isEmpty(roots) || CollectionUtils.isEmpty(fields)) {
+            return;
+        }
+        List<Object> ids = idsOf(roots);
+        if (CollectionUtils.isEmpty(ids)) {
+            return;
+        }
+        String entityName = em.getMetamodel().entity(getDomainClass()).getName();
+        int chunkSize = config.getLargeInThreshold() > 0 ? config.getLargeInThreshold() : ids.size();
+        for (String field : fields) {
+            String jpql = "select distinct e from " + entityName + " e left join fetch e." + field + " where e.id in :ids";
+            Map<Object, Object> values = Maps.newHashMap();
+            for (List<Object> chunk : LargeInSplitter.partition(ids, chunkSize)) {
+                for (T loaded : applyTimeout(em.createQuery(jpql, getDomainClass())).setParameter("ids", chunk).getResultList()) {
+                    values.put(((BaseModel) loaded).getId(), PropertyAccessorFactory.forDirectFieldAccess(loaded).getPropertyValue(field));
+                }
+            }
+            for (T root : roots) {
+                Object id = ((BaseModel) root).getId();
+                if (values.containsKey(id)) {
+                    PropertyAccessorFactory.forDirectFieldAccess(root).setPropertyValue(field, values.get(id));
+                }
+            }
+        }
+        QueryTimer.mark("fetch");
+    }
+
+    /**
+     * 在查询条件中设置排序:先按MATCH相关度从高到低,再按sort,统计总数的查询不排序
+     */
+    protected Specification<T> orderByRelevance(Specification<T> specification, List<DBQueryItem> matchItems, Sort sort) {
+        return (root, criteriaQuery, criteriaBuilder) -> {
+            Predicate predicate = specification.toPredicate(root, criteriaQuery, criteriaBuilder);
+            if (!Long.class.equals(criteriaQuery.getResultType())) {
+                List<Order> orders = Lists.newArrayList();
+                matchItems.forEach(m -> orders.add(criteriaBuilder.desc(DBUtil.getMatchExpression(m, root, criteriaBuilder))));
+                orders.addAll(QueryUtils.toOrders(sort, root, criteriaBuilder));
+                criteriaQuery.orderBy(orders);
+            }
+            return predicate;
+        };
+    }
+
+    /**
+     * 按配置拆分and查询中超过大IN阈值的IN条件,不需要拆分时只返回原查询
+     */
+    protected List<List<DBQueryItem>> splitLargeIn(List<DBQueryItem> andQuery) {
+        int threshold = config.getLargeInThreshold();
+        int index = LargeInStrategy.CHUNK.equals(config.getLargeInStrategy()) ? LargeInSplitter.indexOf(andQuery, threshold) : -1;
+        if (index < 0) {
+            return Collections.singletonList(andQuery);
+        }
+        List<List<DBQueryItem>> chunks = LargeInSplitter.split(andQuery, index, threshold);
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("large in {} values {} chunks {}", andQuery.get(index).getField(), andQuery.get(index).getValues().size(), chunks.size());
+        }
+        return chunks;
+    }
+
+    /**
+     * 拆分后的各组查询顺序执行,合并结果后在内存中排序分页。分页时每组只取前offset+pageSize+1行,总数为各组总数之和
+     */
+    protected <R> PageResponse<R> findByChunks(DBQuery<ID> query, List<List<DBQueryItem>> chunks, ChunkReader<T, R> reader, BiFunction<R, String, Object> valueGetter) throws Exception {
+        LongSupplier exactCount = () -> {
+            long total = 0L;
+            for (List<DBQueryItem> andQuery : chunks) {
+                total += exactCount(getSpecification(andQuery, query.getOrQuery(), Boolean.FALSE)).getAsLong();
+            }
+            return total;
+        };
+        if (query.getPageSize() <= 0) {
+            PageResponse<R> pageResponse = new PageResponse<>();
+            pageResponse.setTotalCount(countByMode(query, exactCount));
+            pageResponse.setCurrentPage(1);
+            pageResponse.setPageSize(query.getPageSize());
+            return pageResponse;
+        }
+        Pageable pageable = query.isPage() ? DBUtil.getPageable(query.getCurrentPage(), query.getPageSize(), query.getSorts()) : null;
+        Sort sort = null == pageable ? DBUtil.getSort(query.getSorts()) : pageable.getSort();
+        int maxResults = null == pageable ? 0 : (int) pageable.getOffset() + pageable.getPageSize() + 1;
+        List<R> rows = Lists.newArrayList();
+        for (List<DBQueryItem> andQuery : chunks) {
+            rows.addAll(reader.read(getSpecification(andQuery, query.getOrQuery(), getFetchFields(query, DBFetchMode.JOIN)), sort, maxResults));
+        }
+        QueryTimer.mark("execute");
+        rows.sort(LargeInSplitter.comparator(sort, valueGetter));
+        if (null == pageable) {
+            PageResponse<R> pageResponse = new PageResponse<>();
+            pageResponse.setList(rows);
+            pageResponse.setTotalCount(Long.MAX_VALUE);
+            pageResponse.setCurrentPage(1);
+            pageResponse.setPageSize(query.getPageSize());
+            return pageResponse;
+        }
+        int from = (int) Math.min(pageable.getOffset(), rows.size());
+        int to = (int) Math.min(pageable.getOffset() + pageable.getPageSize(), rows.size());
+        List<R> content = Lists.newArrayList(rows.subList(from, to));
+        long total;
+        if (DBCountMode.HAS_NEXT.equals(query.getCountMode())) {
+            total = pageable.getOffset() + content.size() + (rows.size() > to ? 1 : 0);
+        } else {
+            total = countByMode(query, exactCount);
+        }
+        QueryTimer.mark("count");
+        return toPageResponse(new PageImpl<>(content, pageable, total), content);
+    }
+
+    /**
+     * 指定查询字段时补充排序字段,用于合并结果后排序
+     */
+    protected Map<String, String> withSortFields(Map<String, String> includeFields, List<DBSortItem> sorts) {
+        Map<String, String> result = Maps.newLinkedHashMap(includeFields);
+        result.putIfAbsent("id", "id");
+        if (CollectionUtils.isNotEmpty(sorts)) {
+            sorts.forEach(s -> result.putIfAbsent(s.getField(), s.getField()));
+        }
+        return result;
+    }
+
+    /**
+     * 读取拆分后一组查询的结果,maxResults为0时不限制行数
+     */
+    protected interface ChunkReader<T, R> {
+        List<R> read(Specification<T> specification, Sort sort, int maxResults) throws Exception;
+    }
+
+    /**
+     * 游标分页:用排序字段(末尾追加id)大于上一页最后一行的条件代替offset,每页耗时与页号无关
+     */
+    protected PageResponse<T> findBySeek(DBQuery<ID> query, Specification<T> specification) throws Exception {
+        List<DBSortItem> sortItems = DBUtil.getSortItemsWithId(query.getSorts(), null);
+        List<String> cursorValues = DBUtil.decodeCursor(query.getCursor());
+        if (null != cursorValues && cursorValues.size() != sortItems.size()) {
+            throw new IllegalArgumentException("cursor does not match sorts " + sortItems);
+        }
+        Specification<T> seekSpecification = specification;
+        if (null != cursorValues) {
+            seekSpecification = specification.and((root, criteriaQuery, criteriaBuilder) -> DBUtil.getSeekPredicate(sortItems, cursorValues, root, criteriaBuilder));
+        }
+        Sort sort = DBUtil.getSort(sortItems);
+        int pageSize = query.getPageSize();
+        //多取一行判断是否有下一页
+        List<T> list;
+        List<Object> lastValues = Lists.newArrayList();
+        boolean hasNext;
+        if (MapUtils.isEmpty(query.getIncludeFields())) {
+            list = getQuery(seekSpecification, sort).setMaxResults(pageSize + 1).getResultList();
+            hasNext = list.size() > pageSize;
+            if (hasNext) {
+                list = list.subList(0, pageSize);
+                BeanWrapper last = PropertyAccessorFactory.forBeanPropertyAccess(list.get(pageSize - 1));
+                for (DBSortItem sortItem : sortItems) {
+                    lastValues.add(last.getPropertyValue(sortItem.getField()));
+                }
+            }
+        } else {
+            //排序字段已在includeFields中时沿用其别名,游标值按别名从查询结果中读取
+            Map<String, String> includeFields = Maps.newLinkedHashMap(query.getIncludeFields());
+            sortItems.forEach(s -> includeFields.putIfAbsent(s.getField(), s.getField()));
+            List<Tuple> tuples = getTupleQuery(includeFields, seekSpecification, sort).setMaxResults(pageSize + 1).getResultList();
+            hasNext = tuples.size() > pageSize;
+            if (hasNext) {
+                tuples = tuples.subList(0, pageSize);
+                Tuple last = tuples.get(pageSize - 1);
+                for (DBSortItem sortItem : sortItems) {
+                    lastValues.add(last.get(StringUtils.defaultIfBlank(includeFields.get(sortItem.getField()), sortItem.getField())));
+                }
+            }
+            list = DBUtil.tuple2Object(tuples, getDomainClass());
+        }
+        DBPageResponse<T> pageResponse = new DBPageResponse<>();
+        pageResponse.setList(list);
+        pageResponse.setCurrentPage(query.getCurrentPage());
+        pageResponse.setPageSize(pageSize);
+        pageResponse.setHasNext(hasNext);
+        if (hasNext) {
+            pageResponse.setNextCursor(DBUtil.encodeCursor(lastValues));
+        }
+        return pageResponse;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public long streamByQuery(DBQuery<ID> query, Consumer<T> consumer) throws Exception {
+        boolean previous = DBRoutingContext.enter(config.isReadFromReplica());
+        Long deadline = QueryDeadline.enter(null == query ? null : query.getTimeout());
+        QueryTimer timer = null == query ? getMetrics().start("stream") : startTimer("stream", query);
+        try {
+            query = checkIndex("stream", query);
+            long count = doStreamByQuery(query, consumer);
+            timer.setRows(count);
+            return count;
+        } finally {
+            timer.stop();
+            QueryDeadline.exit(deadline);
+            DBRoutingContext.exit(previous);
+        }
+    }
+
+    protected long doStreamByQuery(DBQuery<ID> query, Consumer<T> consumer) throws Exception {
+        if (null == query) {
+            return 0L;
+        }
+        List<DBQueryItem> andQuery = Lists.newArrayList();
+        if (CollectionUtils.isNotEmpty(query.getAndQuery())) {
+            andQuery.addAll(query.getAndQuery());
+        }
+        if (CollectionUtils.isNotEmpty(query.getIds())) {
+            DBQueryItem queryItem = new DBQueryItem();
+            queryItem.setOperation(DBOperation.IN);
+            queryItem.setValues(query.getIds());
+            queryItem.setField("id");
+            andQuery.add(queryItem);
+        }
+        convertQueryItem(andQuery);
+        convertQueryItem(query.getOrQuery());
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("stream query [{}]", query);
+        }
+        //集合关联的join fetch会使根对象按子记录重复返回,且分批clear后集合只加载了一部分,流式读取只join单值关联,集合关联不加载
+        EntityType<T> entityType = em.getMetamodel().entity(getDomainClass());
+        List<String> fetchFields = getFetchFields(query, DBFetchMode.JOIN).stream().filter(f -> !entityType.getAttribute(f).isCollection()).collect(Collectors.toList());
+        TypedQuery<T> typedQuery = getQuery(getSpecification(andQuery, query.getOrQuery(), fetchFields), DBUtil.getSort(query.getSorts()));
+        int fetchSize = null != query.getFetchSize() && query.getFetchSize() != 0 ? query.getFetchSize() : config.getStreamFetchSize();
+        int clearInterval = Math.max(1, config.getStreamClearInterval());
+        Session session = em.unwrap(Session.class);
+        long count = 0L;
+        try (ScrollableResults results = typedQuery.unwrap(org.hibernate.query.Query.class)
+                .setFetchSize(fetchSize)
+                .setReadOnly(Boolean.TRUE)
+                .scroll(ScrollMode.FORWARD_ONLY)) {
+            while (results.next()) {
+                consumer.accept((T) results.get(0));
+                count++;
+                if (count % clearInterval == 0) {
+                    session.clear();
+                }
+            }
+        }
+        return count;
+    }
+
     @Override
     public PageResponse<Map<String,Object>> findByMapQuery(DBQuery<ID> query) throws Exception {
+        boolean previous = DBRoutingContext.enter(config.isReadFromReplica());
+        Long deadline = QueryDeadline.enter(null == query ? null : query.getTimeout());
+        QueryTimer timer = null == query ? getMetrics().start("findMap") : startTimer("findMap", query);
+        try {
+            query = checkIndex("findMap", query);
+            PageResponse<Map<String,Object>> pageResponse = doFindByMapQuery(query);
+            timer.setRows(null == pageResponse.getList() ? 0L : pageResponse.getList().size());
+            return pageResponse;
+        } finally {
+            timer.stop();
+            QueryDeadline.exit(deadline);
+            DBRoutingContext.exit(previous);
+        }
+    }
+
+    protected PageResponse<Map<String,Object>> doFindByMapQuery(DBQuery<ID> query) throws Exception {
         if (null == query) {
             return new PageResponse<>();
         }
         if (query.getCurrentPage() <= 0) {
             query.setCurrentPage(1);
         }
-        PageResponse<Map<String,Object>> pageResponse = new PageResponse<Map<String,Object>>();
+        checkCountMode(query);
+        PageResponse<Map<String,Object>> pageResponse = new DBPageResponse<Map<String,Object>>();
         if (CollectionUtils.isNotEmpty(query.getIds())) {
             DBQueryItem queryItem = new DBQueryItem();
             queryItem.setOperation(DBOperation.IN);
-            queryItem.setValues(query.getIds());
+            queryItem.setValues(query.getIds().stream().filter(Objects::nonNull).distinct().collect(Collectors.toList()));
             queryItem.setField("id");
-            List<DBQueryItem> queryItems = Lists.newArrayList(queryItem);
-            query = new DBQuery();
-            query.setAndQuery(queryItems);
-
-            List<Map<String,Object>> result = findMap(query.getIncludeFields(),getSpecification(query.getAndQuery(),query.getOrQuery(),query.isFetch()),DBUtil.getSort(query.getSorts()));
+            List<Map<String,Object>> result = Lists.newArrayList();
+            for (List<DBQueryItem> andQuery : splitLargeIn(Lists.newArrayList(queryItem))) {
+                result.addAll(findMap(query.getIncludeFields(), getSpecification(andQuery, null, query.isFetch()), DBUtil.getSort(query.getSorts())));
+            }
             pageResponse.setList(result);
             pageResponse.setTotalCountInt(result.size());
             pageResponse.setTotalPage(1);
@@ -311,22 +1374,41 @@ public class BaseRepositoryImpl<T, ID> extends SimpleJpaRepository<T, ID> implem
         }
         convertQueryItem(query.getAndQuery());
         convertQueryItem(query.getOrQuery());
-        LOG.info("query [{}]", query);
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("query [{}]", query);
+        }
+        List<List<DBQueryItem>> chunks = splitLargeIn(query.getAndQuery());
+        if (chunks.size() > 1) {
+            Map<String, String> includeFields = withSortFields(query.getIncludeFields(), query.getSorts());
+            PageResponse<Map<String,Object>> chunkResponse = findByChunks(query, chunks, (spec, sort, maxResults) -> {
+                TypedQuery<Tuple> typedQuery = getTupleQuery(includeFields, spec, sort);
+                if (maxResults > 0) {
+                    typedQuery.setMaxResults(maxResults);
+                }
+                return DBUtil.tuple2Map(typedQuery.getResultList());
+            }, (row, field) -> row.get(StringUtils.defaultIfBlank(includeFields.get(field), field)));
+            //去掉为排序补充的字段
+            Set<String> sortFields = Sets.newHashSet(includeFields.keySet());
+            sortFields.removeAll(query.getIncludeFields().keySet());
+            if (null != chunkResponse.getList() && CollectionUtils.isNotEmpty(sortFields)) {
+                chunkResponse.setList(chunkResponse.getList().stream().map(row -> {
+                    Map<String, Object> copy = Maps.newLinkedHashMap(row);
+                    copy.keySet().removeAll(sortFields);
+                    return copy;
+                }).collect(Collectors.toList()));
+            }
+            return chunkResponse;
+        }
         if (query.getPageSize() <= 0) {
-            Long total = count(getSpecification(query.getAndQuery(), query.getOrQuery(), query.isFetch()));
+            Long total = countByMode(query, exactCount(getSpecification(query.getAndQuery(), query.getOrQuery(), query.isFetch())));
             pageResponse.setTotalCount(total);
             pageResponse.setCurrentPage(1);
             pageResponse.setPageSize(query.getPageSize());
         } else if (query.isPage()) {
             Pageable pageable = DBUtil.getPageable(query.getCurrentPage(), query.getPageSize(),  query.getSorts());
-            Page<Tuple> result = findTuple(query.getIncludeFields(), getSpecification(query.getAndQuery(), query.getOrQuery(), query.isFetch()), pageable);
-            if(null != result) {
-                pageResponse.setList(DBUtil.tuple2Map(result.getContent()));
-                pageResponse.setCurrentPage(result.getNumber() + 1);
-                pageResponse.setPageSize(result.getSize());
-                pageResponse.setTotalPage(result.getTotalPages());
-                pageResponse.setTotalCountInt((int) result.getTotalElements());
-            }
+            Specification<T> specification = getSpecification(query.getAndQuery(), query.getOrQuery(), query.isFetch());
+            Page<Tuple> result = readPage(getTupleQuery(query.getIncludeFields(), specification, pageable), pageable, query, exactCount(specification));
+            pageResponse = toPageResponse(result, DBUtil.tuple2Map(result.getContent()));
         } else {
             pageResponse.setList(findMap(query.getIncludeFields(), getSpecification(query.getAndQuery(), query.getOrQuery(), query.isFetch()), DBUtil.getSort(query.getSorts())));
             pageResponse.setTotalCount(Long.MAX_VALUE);
@@ -340,10 +1422,234 @@ public class BaseRepositoryImpl<T, ID> extends SimpleJpaRepository<T, ID> implem
 
     @Override
     public List<Map<String,Object>> findMap(Map<String,String> includeFields, Specification<T> spec, Sort sort) {
-        List<Tuple> tuples = getTupleQuery(includeFields, spec, sort).getResultList();
-        return DBUtil.tuple2Map(tuples);
+        boolean previous = DBRoutingContext.enter(config.isReadFromReplica());
+        QueryTimer timer = getMetrics().start("tuple");
+        try {
+            TypedQuery<Tuple> tupleQuery = getTupleQuery(includeFields, spec, sort);
+            QueryTimer.mark("build");
+            List<Tuple> tuples = tupleQuery.getResultList();
+            QueryTimer.mark("execute");
+            timer.setRows(tuples.size());
+            return DBUtil.tuple2Map(tuples);
+        } finally {
+            timer.stop();
+            DBRoutingContext.exit(previous);
+        }
+    }
+
+
+    @Override
+    public List<DBGroupResult> group(DBGroupQuery query) throws Exception {
+        boolean previous = DBRoutingContext.enter(config.isReadFromReplica());
+        Long deadline = QueryDeadline.enter(query.getTimeout());
+        String shape = CompiledQuery.shapeOf(query.getAndQuery(), query.getOrQuery(), Boolean.FALSE, null)
+                + "group" + query.getGroupBy() + "aggregates" + query.getAggregates() + "having" + CompiledQuery.shapeOf(query.getHaving(), null, Boolean.FALSE, null);
+        QueryTimer timer = getMetrics().start("group", shape, RepositoryMetrics.countParameters(query.getAndQuery(), query.getOrQuery()));
+        try {
+            List<DBGroupResult> result = doGroup(query);
+            timer.setRows(result.size());
+            return result;
+        } finally {
+            timer.stop();
+            QueryDeadline.exit(deadline);
+            DBRoutingContext.exit(previous);
+        }
+    }
+
+    /**
+     * 分组字段与聚合函数编译为一条 GROUP BY 查询,having/排序/limit均在数据库执行,只返回聚合后的行
+     */
+    protected List<DBGroupResult> doGroup(DBGroupQuery query) throws Exception {
+        convertQueryItem(query.getAndQuery());
+        convertQueryItem(query.getOrQuery());
+        List<String> groupBy = null == query.getGroupBy() ? Lists.newArrayList() : query.getGroupBy();
+        List<DBAggregateItem> aggregates = CollectionUtils.isEmpty(query.getAggregates()) ? Lists.newArrayList(new DBAggregateItem()) : query.getAggregates();
+        Specification<T> specification = getSpecification(query.getAndQuery(), query.getOrQuery(), Boolean.FALSE);
+        CriteriaBuilder criteriaBuilder = em.getCriteriaBuilder();
+        CriteriaQuery<Tuple> criteriaQuery = criteriaBuilder.createTupleQuery();
+        Root<T> root = criteriaQuery.from(getDomainClass());
+        Predicate predicate = specification.toPredicate(root, criteriaQuery, criteriaBuilder);
+        if (null != predicate) {
+            criteriaQuery.where(predicate);
+        }
+        //结果名可能含.等jpql不支持的字符,查询中使用内部别名
+        Map<String, Expression<?>> expressions = Maps.newLinkedHashMap();
+        List<Selection<?>> selections = Lists.newArrayList();
+        List<Expression<?>> groupings = Lists.newArrayList();
+        for (String field : groupBy) {
+            Path<Object> path = DBUtil.getPath(field, root);
+            groupings.add(path);
+            selections.add(path.alias("g" + selections.size()));
+            expressions.put(field, path);
+        }
+        List<String> aliases = Lists.newArrayList();
+        for (DBAggregateItem aggregateItem : aggregates) {
+            Expression<?> expression = DBUtil.getAggregateExpression(aggregateItem, root, criteriaBuilder);
+            String alias = DBUtil.getAggregateAlias(aggregateItem);
+            selections.add(expression.alias("a" + aliases.size()));
+            aliases.add(alias);
+            expressions.put(alias, expression);
+        }
+        criteriaQuery.multiselect(selections);
+        if (CollectionUtils.isNotEmpty(groupings)) {
+            criteriaQuery.groupBy(groupings);
+        }
+        Predicate having = DBUtil.getHavingPredicate(query.getHaving(), expressions, criteriaBuilder);
+        if (null != having) {
+            criteriaQuery.having(having);
+        }
+        if (CollectionUtils.isNotEmpty(query.getSorts())) {
+            List<Order> orders = Lists.newArrayList();
+            for (DBSortItem sortItem : query.getSorts()) {
+                Expression<?> expression = expressions.get(sortItem.getField());
+                if (null == expression) {
+                    throw new IllegalArgumentException("sort field " + sortItem.getField() + " is not a group field or aggregate alias");
+                }
+                orders.add(Sort.Direction.ASC.name().equalsIgnoreCase(sortItem.getDirection()) ? criteriaBuilder.asc(expression) : criteriaBuilder.desc(expression));
+            }
+            criteriaQuery.orderBy(orders);
+        }
+        TypedQuery<Tuple> typedQuery = applyTimeout(em.createQuery(criteriaQuery));
+        if (null != query.getLimit() && query.getLimit() > 0) {
+            typedQuery.setMaxResults(query.getLimit());
+        }
+        QueryTimer.mark("build");
+        List<Tuple> tuples = typedQuery.getResultList();
+        QueryTimer.mark("execute");
+        List<DBGroupResult> result = Lists.newArrayListWithCapacity(tuples.size());
+        for (Tuple tuple : tuples) {
+            DBGroupResult groupResult = new DBGroupResult();
+            Map<String, Object> groupValues = Maps.newLinkedHashMap();
+            for (int i = 0; i < groupBy.size(); i++) {
+                groupValues.put(groupBy.get(i), tuple.get("g" + i));
+            }
+            Map<String, Object> aggregateValues = Maps.newLinkedHashMap();
+            for (int i = 0; i < aliases.size(); i++) {
+                aggregateValues.put(aliases.get(i), tuple.get("a" + i));
+            }
+            groupResult.setGroupBy(groupValues);
+            groupResult.setAggregates(aggregateValues);
+            result.add(groupResult);
+        }
+        return result;
     }
 
+    @Override
+    public List<DBHistogramBucket> histogram(DBHistogramQuery query) throws Exception {
+        boolean previous = DBRoutingContext.enter(config.isReadFromReplica());
+        Long deadline = QueryDeadline.enter(query.getTimeout());
+        String shape = CompiledQuery.shapeOf(query.getAndQuery(), query.getOrQuery(), Boolean.FALSE, null)
+                + "histogram" + query.getTimeField() + query.getInterval() + "aggregates" + query.getAggregates();
+        QueryTimer timer = getMetrics().start("histogram", shape, RepositoryMetrics.countParameters(query.getAndQuery(), query.getOrQuery()));
+        try {
+            List<DBHistogramBucket> result = doHistogram(query);
+            timer.setRows(result.size());
+            return result;
+        } finally {
+            timer.stop();
+            QueryDeadline.exit(deadline);
+            DBRoutingContext.exit(previous);
+        }
+    }
+
+    /**
+     * 在数据库中按 floor((时间 + 时区偏移) / 间隔) 分组统计,每个桶一行,再由TimeBuckets补齐没有数据的桶(MONTH按天分组后合并)。
+     * 时区有夏令时切换时偏移为按切换时间分段的case表达式,未指定起止时间时先查询时间字段的最小/最大值确定分段
+     */
+    protected List<DBHistogramBucket> doHistogram(DBHistogramQuery query) throws Exception {
+        String timeField = StringUtils.defaultIfBlank(query.getTimeField(), "createAt");
+        DBTimeInterval interval = null == query.getInterval() ? DBTimeInterval.DAY : query.getInterval();
+        ZoneId zone = StringUtils.isBlank(query.getTimeZone()) ? ZoneId.systemDefault() : ZoneId.of(query.getTimeZone());
+        List<DBAggregateItem> aggregates = null == query.getAggregates() ? Lists.newArrayList() : query.getAggregates();
+        TimeBuckets buckets = new TimeBuckets(interval, zone, aggregates);
+        if (buckets.isRollup() && aggregates.stream().anyMatch(a -> DBAggregateFunction.COUNT_DISTINCT.equals(a.getFunction()))) {
+            throw new IllegalArgumentException("COUNT_DISTINCT can not be rolled up by " + interval);
+        }
+        List<DBQueryItem> andQuery = Lists.newArrayList();
+        if (CollectionUtils.isNotEmpty(query.getAndQuery())) {
+            andQuery.addAll(query.getAndQuery());
+        }
+        if (null != query.getStartAt()) {
+            andQuery.add(new DBQueryItem(timeField, DBOperation.GTE, Lists.newArrayList(query.getStartAt())));
+        }
+        if (null != query.getEndAt()) {
+            andQuery.add(new DBQueryItem(timeField, DBOperation.LTE, Lists.newArrayList(query.getEndAt())));
+        }
+        convertQueryItem(andQuery);
+        convertQueryItem(query.getOrQuery());
+        Specification<T> specification = getSpecification(andQuery, query.getOrQuery(), Boolean.FALSE);
+        CriteriaBuilder criteriaBuilder = em.getCriteriaBuilder();
+        CriteriaQuery<Tuple> criteriaQuery = criteriaBuilder.createTupleQuery();
+        Root<T> root = criteriaQuery.from(getDomainClass());
+        Predicate predicate = specification.toPredicate(root, criteriaQuery, criteriaBuilder);
+        if (null != predicate) {
+            criteriaQuery.where(predicate);
+        }
+        Path<Long> timePath = DBUtil.getPath(timeField, root);
+        Long startAt = query.getStartAt();
+        Long endAt = query.getEndAt();
+        if (!buckets.isFixedOffset() && (null == startAt || null == endAt)) {
+            CriteriaQuery<Tuple> rangeQuery = criteriaBuilder.createTupleQuery();
+            Root<T> rangeRoot = rangeQuery.from(getDomainClass());
+            Predicate rangePredicate = specification.toPredicate(rangeRoot, rangeQuery, criteriaBuilder);
+            Path<Long> rangePath = DBUtil.getPath(timeField, rangeRoot);
+            rangeQuery.multiselect(criteriaBuilder.min(rangePath).alias("min"), criteriaBuilder.max(rangePath).alias("max"));
+            if (null != rangePredicate) {
+                rangeQuery.where(rangePredicate);
+            }
+            Tuple range = applyTimeout(em.createQuery(rangeQuery)).getSingleResult();
+            if (null == range.get("min")) {
+                return buckets.build(query.getStartAt(), query.getEndAt());
+            }
+            startAt = null != startAt ? startAt : ((Number) range.get("min")).longValue();
+            endAt = null != endAt ? endAt : ((Number) range.get("max")).longValue();
+        }
+        //偏移与间隔为数值字面量,select与group by渲染为相同的表达式
+        NavigableMap<Long, Long> offsets = buckets.getOffsets(null != startAt ? startAt : 0L, null != endAt ? endAt : 0L);
+        Expression<Long> offset;
+        if (offsets.size() == 1) {
+            offset = criteriaBuilder.literal(offsets.firstEntry().getValue());
+        } else {
+            CriteriaBuilder.Case<Long> offsetCase = criteriaBuilder.selectCase();
+            for (Map.Entry<Long, Long> entry : offsets.entrySet()) {
+                Long next = offsets.higherKey(entry.getKey());
+                if (null != next) {
+                    offsetCase.when(criteriaBuilder.lessThan(timePath, next), entry.getValue());
+                }
+            }
+            offset = offsetCase.otherwise(offsets.lastEntry().getValue());
+        }
+        Expression<Long> bucket = criteriaBuilder.function("floor", Long.class,
+                criteriaBuilder.quot(criteriaBuilder.sum(timePath, offset), buckets.getWidth()));
+        List<Selection<?>> selections = Lists.newArrayList(bucket.alias("b"), criteriaBuilder.count(root).alias("c"));
+        for (int i = 0; i < aggregates.size(); i++) {
+            DBAggregateItem aggregateItem = aggregates.get(i);
+            if (buckets.isRollup() && DBAggregateFunction.AVG.equals(aggregateItem.getFunction())) {
+                Path<Number> path = DBUtil.getPath(aggregateItem.getField(), root);
+                selections.add(criteriaBuilder.sum(path).alias("a" + i));
+                selections.add(criteriaBuilder.count(path).alias("n" + i));
+            } else {
+                selections.add(DBUtil.getAggregateExpression(aggregateItem, root, criteriaBuilder).alias("a" + i));
+            }
+        }
+        criteriaQuery.multiselect(selections).groupBy(bucket);
+        TypedQuery<Tuple> typedQuery = applyTimeout(em.createQuery(criteriaQuery));
+        QueryTimer.mark("build");
+        List<Tuple> tuples = typedQuery.getResultList();
+        QueryTimer.mark("execute");
+        for (Tuple tuple : tuples) {
+            Object[] values = new Object[aggregates.size()];
+            long[] avgCounts = buckets.isRollup() ? new long[aggregates.size()] : null;
+            for (int i = 0; i < aggregates.size(); i++) {
+                values[i] = tuple.get("a" + i);
+                if (null != avgCounts && DBAggregateFunction.AVG.equals(aggregates.get(i).getFunction())) {
+                    avgCounts[i] = ((Number) tuple.get("n" + i)).longValue();
+                }
+            }
+            buckets.add(((Number) tuple.get("b")).longValue(), ((Number) tuple.get("c")).longValue(), values, avgCounts);
+        }
+        return buckets.build(query.getStartAt(), query.getEndAt());
+    }
 
     protected Page<Tuple> findTuple(Map<String,String> includeFields, Specification<T> spec, Pageable pageable) {
         TypedQuery<Tuple> query = getTupleQuery(includeFields, spec, pageable);
@@ -382,7 +1688,7 @@ public class BaseRepositoryImpl<T, ID> extends SimpleJpaRepository<T, ID> implem
         if (sort.isSorted()) {
             query.orderBy(QueryUtils.toOrders(sort, root, builder));
         }
-        return em.createQuery(query);
+        return applyTimeout(em.createQuery(query));
     }
 
     protected Page<Tuple> readPageTuple(TypedQuery<Tuple> query, Pageable pageable, @Nullable Specification<T> spec) {
@@ -396,6 +1702,376 @@ public class BaseRepositoryImpl<T, ID> extends SimpleJpaRepository<T, ID> implem
         });
     }
 
+    /**
+     * 按DBQuery.countMode读取一页,HAS_NEXT多取一行判断是否有下一页,不执行count
+     */
+    protected <R> Page<R> readPage(TypedQuery<R> typedQuery, Pageable pageable, DBQuery<ID> query, LongSupplier exactCount) {
+        QueryTimer.mark("build");
+        typedQuery.setFirstResult((int) pageable.getOffset());
+        if (DBCountMode.HAS_NEXT.equals(query.getCountMode())) {
+            typedQuery.setMaxResults(pageable.getPageSize() + 1);
+            List<R> content = typedQuery.getResultList();
+            QueryTimer.mark("execute");
+            boolean hasNext = content.size() > pageable.getPageSize();
+            if (hasNext) {
+                content = content.subList(0, pageable.getPageSize());
+            }
+            return new PageImpl<>(content, pageable, pageable.getOffset() + content.size() + (hasNext ? 1 : 0));
+        }
+        typedQuery.setMaxResults(pageable.getPageSize());
+        List<R> content = typedQuery.getResultList();
+        QueryTimer.mark("execute");
+        Page<R> page = PageableExecutionUtils.getPage(content, pageable, () -> countByMode(query, exactCount));
+        QueryTimer.mark("count");
+        return page;
+    }
+
+    protected <R, X> PageResponse<X> toPageResponse(Page<R> page, List<X> list) {
+        DBPageResponse<X> pageResponse = new DBPageResponse<>();
+        pageResponse.setList(list);
+        pageResponse.setCurrentPage(page.getNumber() + 1);
+        pageResponse.setPageSize(page.getSize());
+        pageResponse.setTotalPage(page.getTotalPages());
+        pageResponse.setTotalCount(page.getTotalElements());
+        pageResponse.setHasNext(page.hasNext());
+        return pageResponse;
+    }
+
+    /**
+     * ESTIMATE只支持无条件查询,有条件时表行数估计值与实际总数无关,直接拒绝而不是改为精确统计
+     */
+    protected void checkCountMode(DBQuery<ID> query) {
+        if (DBCountMode.ESTIMATE.equals(query.getCountMode()) && (CollectionUtils.isNotEmpty(query.getAndQuery()) || CollectionUtils.isNotEmpty(query.getOrQuery()))) {
+            throw new IllegalArgumentException("count mode ESTIMATE does not support filtered query, use CACHED or HAS_NEXT");
+        }
+    }
+
+    /**
+     * 按DBQuery.countMode统计总数,ESTIMATE取表行数估计值,取不到时精确统计
+     */
+    protected long countByMode(DBQuery<ID> query, LongSupplier exactCount) {
+        DBCountMode countMode = null == query.getCountMode() ? DBCountMode.EXACT : query.getCountMode();
+        if (DBCountMode.ESTIMATE.equals(countMode)) {
+            checkCountMode(query);
+            Long estimate = estimateRows();
+            return null != estimate ? estimate : exactCount.getAsLong();
+        }
+        if (DBCountMode.CACHED.equals(countMode)) {
+            String key = getCountKey(query);
+            Long total = countCache.get(key);
+            if (null == total) {
+                total = exactCount.getAsLong();
+                countCache.put(key, total);
+            }
+            return total;
+        }
+        return exactCount.getAsLong();
+    }
+
+    protected LongSupplier exactCount(Specification<T> spec) {
+        return () -> {
+            QueryTimer timer = getMetrics().start("count");
+            try {
+                return executeCountTupleQuery(getCountQuery(spec, getDomainClass()));
+            } finally {
+                timer.stop();
+            }
+        };
+    }
+
+    protected LongSupplier exactCount(CompiledQuery compiled, DBQuery<ID> query) {
+        return () -> {
+            QueryTimer timer = getMetrics().start("count");
+            try {
+                return applyTimeout(compiled.createCountQuery(em, query.getAndQuery(), query.getOrQuery())).getSingleResult();
+            } finally {
+                timer.stop();
+            }
+        };
+    }
+
+    /**
+     * 取查询形态对应的参数化jpql,未开启或形态不支持时返回null
+     */
+    protected CompiledQuery getCompiledQuery(DBQuery<ID> query, Sort sort) {
+        if (!config.isCompiledQuery()) {
+            return null;
+        }
+        List<String> fetchFields = getFetchFields(query, DBFetchMode.JOIN);
+        String shape = CompiledQuery.shapeOf(query.getAndQuery(), query.getOrQuery(), query.isFetch(), sort) + fetchFields;
+        Optional<CompiledQuery> compiled = compiledQueries.get(shape);
+        if (null == compiled) {
+            if (compiledQueries.size() >= config.getCompiledQueryCacheSize()) {
+                compiledQueries.clear();
+            }
+            compiled = Optional.ofNullable(CompiledQuery.compile(em.getMetamodel(), getDomainClass(), em.getMetamodel().entity(getDomainClass()).getName(),
+                    fetchFields, query.getAndQuery(), query.getOrQuery(), sort));
+            compiledQueries.put(shape, compiled);
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("compiled query {} [{}]", shape, compiled.map(CompiledQuery::getJpql).orElse(null));
+            }
+        }
+        return compiled.orElse(null);
+    }
+
+    @Override
+    protected <S extends T> TypedQuery<S> getQuery(@Nullable Specification<S> spec, Class<S> domainClass, Sort sort) {
+        return applyTimeout(super.getQuery(spec, domainClass, sort));
+    }
+
+    @Override
+    protected <S extends T> TypedQuery<Long> getCountQuery(@Nullable Specification<S> spec, Class<S> domainClass) {
+        return applyTimeout(super.getCountQuery(spec, domainClass));
+    }
+
+    /**
+     * 分析查询条件的索引使用情况并记录指标,全表扫描时按fullScanAction处理,返回实际执行的查询。
+     * and条件按选中索引的列顺序重排、ROW_CAP限制行数都在副本上进行,不修改调用方的查询对象
+     */
+    protected DBQuery<ID> checkIndex(String operation, DBQuery<ID> query) {
+        if (null == query || !config.isIndexCheck()) {
+            return query;
+        }
+        TableIndexes indexes = getTableIndexes();
+        if (null == indexes) {
+            return query;
+        }
+        IndexPlan plan = CollectionUtils.isNotEmpty(query.getIds()) ? new IndexPlan(IndexCoverage.COVERED, null, query.getAndQuery())
+                : indexes.plan(query.getAndQuery(), query.getOrQuery(), query.getSorts());
+        getMetrics().recordIndex(operation, plan.getCoverage());
+        DBQuery<ID> checked = copyQuery(query);
+        checked.setAndQuery(plan.getAndQuery());
+        if (!IndexCoverage.FULL_SCAN.equals(plan.getCoverage())) {
+            return checked;
+        }
+        FullScanAction action = config.getFullScanAction();
+        if (FullScanAction.REJECT.equals(action)) {
+            throw new IllegalArgumentException("full scan query rejected, and " + query.getAndQuery() + " or " + query.getOrQuery() + " sorts " + query.getSorts());
+        }
+        if (FullScanAction.ROW_CAP.equals(action) && !"stream".equals(operation)) {
+            int rowCap = config.getFullScanRowCap();
+            if (checked.getPageSize() <= 0 || checked.getPageSize() > rowCap) {
+                checked.setPageSize(rowCap);
+            }
+            if (checked.isPage()) {
+                checked.setCountMode(DBCountMode.HAS_NEXT);
+            }
+        }
+        if (!FullScanAction.NONE.equals(action)) {
+            LOG.warn("full scan {} {} and {} or {} sorts {}", getDomainClass().getSimpleName(), operation, query.getAndQuery(), query.getOrQuery(), query.getSorts());
+        }
+        return checked;
+    }
+
+    private DBQuery<ID> copyQuery(DBQuery<ID> query) {
+        DBQuery<ID> copy = new DBQuery<>();
+        BeanUtils.copyProperties(query, copy);
+        return copy;
+    }
+
+    /**
+     * 实体表的索引元数据,首次使用时读取,读取失败时为null(不做索引分析)
+     */
+    protected TableIndexes getTableIndexes() {
+        if (null == tableIndexes) {
+            synchronized (this) {
+                if (null == tableIndexes) {
+                    tableIndexes = Optional.ofNullable(loadTableIndexes());
+                }
+            }
+        }
+        return tableIndexes.orElse(null);
+    }
+
+    protected TableIndexes loadTableIndexes() {
+        SingleTableEntityPersister persister = getEntityPersister();
+        Map<String, String> columnFields = Maps.newHashMap();
+        columnFields.put(StringUtils.strip(persister.getIdentifierColumnNames()[0], "`\"").toLowerCase(), persister.getIdentifierPropertyName());
+        for (String property : persister.getPropertyNames()) {
+            String[] columns = persister.getPropertyColumnNames(property);
+            if (columns.length == 1 && null != columns[0]) {
+                columnFields.put(StringUtils.strip(columns[0], "`\"").toLowerCase(), property);
+            }
+        }
+        String table = StringUtils.strip(persister.getTableName(), "`\"");
+        ConnectionProvider connectionProvider = em.getEntityManagerFactory().unwrap(SessionFactoryImpl.class).getServiceRegistry().getService(ConnectionProvider.class);
+        try {
+            Connection connection = connectionProvider.getConnection();
+            try {
+                TableIndexes indexes = TableIndexes.load(connection.getMetaData(), connection.getCatalog(), table, columnFields);
+                LOG.info("table {} indexes {}", table, indexes.getIndexes());
+                return indexes;
+            } finally {
+                connectionProvider.closeConnection(connection);
+            }
+        } catch (SQLException | RuntimeException e) {
+            LOG.warn("load table {} indexes error, skip index check", table, e);
+            return null;
+        }
+    }
+
+    /**
+     * 按当前线程的截止时间设置语句超时,没有截止时间时使用配置的queryTimeoutMillis
+     */
+    protected <Q extends Query> Q applyTimeout(Q query) {
+        return QueryDeadline.apply(query, config.getQueryTimeoutMillis());
+    }
+
+    protected <S extends Statement> S applyTimeout(S statement) throws SQLException {
+        return QueryDeadline.apply(statement, config.getQueryTimeoutMillis());
+    }
+
+    protected String getCountKey(DBQuery<ID> query) {
+        return "and" + getCountKey(query.getAndQuery()) + "or" + getCountKey(query.getOrQuery());
+    }
+
+    private String getCountKey(List<DBQueryItem> queryItems) {
+        if (CollectionUtils.isEmpty(queryItems)) {
+            return "[]";
+        }
+        return queryItems.stream().filter(Objects::nonNull).map(DBQueryItem::toString).sorted().collect(Collectors.toList()).toString();
+    }
+
+    /**
+     * 取information_schema中的表行数估计值
+     */
+    protected Long estimateRows() {
+        List<?> rows = applyTimeout(em.createNativeQuery("SELECT TABLE_ROWS FROM information_schema.TABLES WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ?1"))
+                .setParameter(1, getEntityPersister().getTableName())
+                .getResultList();
+        if (CollectionUtils.isEmpty(rows) || null == rows.get(0)) {
+            return null;
+        }
+        return ((Number) rows.get(0)).longValue();
+    }
+
+    /**
+     * 实体有写操作后调用,清除总数缓存;ids为被修改的记录编号,null表示可能修改了任意记录
+     */
+    protected void afterWrite(Collection<?> ids) {
+        invalidateCaches(ids);
+        //提交前失效后,并发的读取仍可能把提交前的旧记录放回缓存,提交后再失效一次
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            List<Object> committedIds = null == ids ? null : Lists.newArrayList(ids);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    invalidateCaches(committedIds);
+                }
+            });
+        }
+    }
+
+    private void invalidateCaches(Collection<?> ids) {
+        countCache.invalidate();
+        EntityCache<T> cache = getEntityCache();
+        if (null != cache) {
+            cache.invalidate(ids);
+        }
+    }
+
+    /**
+     * and查询中有id的等值或in条件时,匹配记录只可能是这些id,否则返回null
+     */
+    protected List<Object> idsOf(List<DBQueryItem> andQuery) {
+        if (CollectionUtils.isEmpty(andQuery)) {
+            return null;
+        }
+        for (DBQueryItem queryItem : andQuery) {
+            if (null != queryItem && "id".equals(queryItem.getField()) && CollectionUtils.isNotEmpty(queryItem.getValues())
+                    && (DBOperation.EQ.equals(queryItem.getOperation()) || DBOperation.IN.equals(queryItem.getOperation()))) {
+                return Lists.newArrayList(queryItem.getValues());
+            }
+        }
+        return null;
+    }
+
+    protected List<Object> idsOf(Iterable<?> entities) {
+        List<Object> ids = Lists.newArrayList();
+        for (Object entity : entities) {
+            if (!(entity instanceof BaseModel)) {
+                return null;
+            }
+            ids.add(((BaseModel) entity).getId());
+        }
+        return ids;
+    }
+
+    /**
+     * 按id读取时使用的缓存:读写事务中读取的可能是本事务未提交的修改,不读也不写缓存
+     */
+    protected EntityCache<T> getReadCache() {
+        if (TransactionSynchronizationManager.isActualTransactionActive() && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return null;
+        }
+        return getEntityCache();
+    }
+
+    /**
+     * 配置了entityCacheSize且实体只有基本类型字段时返回按id的实体缓存,否则返回null。
+     * 缓存保存字段值的快照,关联对象(懒加载代理)不能脱离持久化上下文共享,有关联或嵌入字段的实体不缓存
+     */
+    public EntityCache<T> getEntityCache() {
+        if (config.getEntityCacheSize() <= 0 || !BaseModel.class.isAssignableFrom(getDomainClass())) {
+            return null;
+        }
+        if (null == entityCache) {
+            synchronized (this) {
+                if (null == entityCache) {
+                    if (em.getMetamodel().entity(getDomainClass()).getAttributes().stream()
+                            .anyMatch(a -> !Attribute.PersistentAttributeType.BASIC.equals(a.getPersistentAttributeType()))) {
+                        return null;
+                    }
+                    entityCache = new EntityCache<>(config.getEntityCacheSize(), config.getEntityCacheTtl(), this::copyEntity);
+                    getMetrics().bindEntityCache(entityCache);
+                }
+            }
+        }
+        return entityCache;
+    }
+
+    /**
+     * 按实体字段复制出不在任何持久化上下文中的新对象
+     */
+    protected T copyEntity(T source) {
+        T target = BeanUtils.instantiateClass(getDomainClass());
+        ConfigurablePropertyAccessor sourceAccessor = PropertyAccessorFactory.forDirectFieldAccess(source);
+        ConfigurablePropertyAccessor targetAccessor = PropertyAccessorFactory.forDirectFieldAccess(target);
+        for (Attribute<? super T, ?> attribute : em.getMetamodel().entity(getDomainClass()).getAttributes()) {
+            targetAccessor.setPropertyValue(attribute.getName(), sourceAccessor.getPropertyValue(attribute.getName()));
+        }
+        return target;
+    }
+
+    protected RepositoryMetrics getMetrics() {
+        if (null == metrics) {
+            synchronized (this) {
+                if (null == metrics) {
+                    metrics = new RepositoryMetrics(getDomainClass().getSimpleName(), config);
+                }
+            }
+        }
+        return metrics;
+    }
+
+    protected QueryTimer startTimer(String operation, DBQuery<ID> query) {
+        String shape = CompiledQuery.shapeOf(query.getAndQuery(), query.getOrQuery(), query.isFetch(), null);
+        if (CollectionUtils.isNotEmpty(query.getSorts())) {
+            shape = shape + "sorts" + query.getSorts();
+        }
+        if (MapUtils.isNotEmpty(query.getIncludeFields())) {
+            shape = shape + "include" + query.getIncludeFields().keySet();
+        }
+        if (CollectionUtils.isNotEmpty(query.getIds())) {
+            shape = shape + "ids[" + query.getIds().size() + "]";
+        }
+        return getMetrics().start(operation, shape, RepositoryMetrics.countParameters(query.getAndQuery(), query.getOrQuery()) + (null == query.getIds() ? 0 : query.getIds().size()));
+    }
+
+    protected QueryTimer startTimer(String operation, List<DBQueryItem> andQuery, List<DBQueryItem> orQuery, boolean fetch, Sort sort) {
+        return getMetrics().start(operation, CompiledQuery.shapeOf(andQuery, orQuery, fetch, sort), RepositoryMetrics.countParameters(andQuery, orQuery));
+    }
+
     protected long executeCountTupleQuery(TypedQuery<Long> query) {
         Assert.notNull(query, "TypedQuery must not be null!");
         List<Long> totals = query.getResultList();
@@ -426,16 +2102,20 @@ public class BaseRepositoryImpl<T, ID> extends SimpleJpaRepository<T, ID> implem
 
 
     protected <T> Specification<T> getSpecification(List<DBQueryItem> andQuery, List<DBQueryItem> orQuery, boolean isFetch) {
+        return getSpecification(andQuery, orQuery, isFetch ? DBUtil.getFetchFields(getDomainClass()) : null);
+    }
+
+    /**
+     * fetchFields为需要left join fetch的级联字段
+     */
+    protected <T> Specification<T> getSpecification(List<DBQueryItem> andQuery, List<DBQueryItem> orQuery, List<String> fetchFields) {
         Specification<T> specification = new Specification<T>() {
             @Override
             public Predicate toPredicate(Root<T> root, CriteriaQuery<?> criteriaQuery, CriteriaBuilder criteriaBuilder) {
-                if (isFetch) {
-                    List<String> fetchFields = DBUtil.getFetchFields(getDomainClass());
-                    //总数统计不能使用fetch
-                    if (CollectionUtils.isNotEmpty(fetchFields) && !criteriaQuery.getResultType().getSimpleName().equalsIgnoreCase(Long.class.getSimpleName())) {
-                        for (String fetchfield : fetchFields) {
-                            root.fetch(fetchfield, JoinType.LEFT);
-                        }
+                //总数统计不能使用fetch
+                if (CollectionUtils.isNotEmpty(fetchFields) && !criteriaQuery.getResultType().getSimpleName().equalsIgnoreCase(Long.class.getSimpleName())) {
+                    for (String fetchfield : fetchFields) {
+                        root.fetch(fetchfield, JoinType.LEFT);
                     }
                 }
 
@@ -0,0 +1,271 @@
+package com.gemantic.db.repository.support;
+
+import com.gemantic.db.constant.DBOperation;
+import com.gemantic.db.support.DBQueryItem;
+import com.gemantic.db.util.DBUtil;
+import com.google.common.collect.Lists;
+import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.data.domain.Sort;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import javax.persistence.TypedQuery;
+import javax.persistence.metamodel.Attribute;
+import javax.persistence.metamodel.ManagedType;
+import javax.persistence.metamodel.Metamodel;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * 按查询形态(字段,操作符,值个数分档,排序,是否级联)编译的参数化jpql,同一形态的查询只生成一次jpql,执行时绑定参数值
+ */
+public class CompiledQuery {
+
+    private static final String ALIAS = "e";
+
+    private final String jpql;
+
+    private final String countJpql;
+
+    private final List<Parameter> parameters;
+
+    private CompiledQuery(String jpql, String countJpql, List<Parameter> parameters) {
+        this.jpql = jpql;
+        this.countJpql = countJpql;
+        this.parameters = parameters;
+    }
+
+    public String getJpql() {
+        return jpql;
+    }
+
+    public <T> TypedQuery<T> createQuery(EntityManager em, Class<T> domainClass, List<DBQueryItem> andQuery, List<DBQueryItem> orQuery) {
+        TypedQuery<T> query = em.createQuery(jpql, domainClass);
+        bind(query, andQuery, orQuery);
+        return query;
+    }
+
+    public TypedQuery<Long> createCountQuery(EntityManager em, List<DBQueryItem> andQuery, List<DBQueryItem> orQuery) {
+        TypedQuery<Long> query = em.createQuery(countJpql, Long.class);
+        bind(query, andQuery, orQuery);
+        return query;
+    }
+
+    private void bind(Query query, List<DBQueryItem> andQuery, List<DBQueryItem> orQuery) {
+        List<DBQueryItem> items = Lists.newArrayList(effectiveItems(andQuery));
+        items.addAll(effectiveItems(orQuery));
+        for (int i = 0; i < parameters.size(); i++) {
+            parameters.get(i).bind(query, items.get(i));
+        }
+    }
+
+    /**
+     * 查询形态,值只计入个数分档,可用作缓存key
+     */
+    public static String shapeOf(List<DBQueryItem> andQuery, List<DBQueryItem> orQuery, boolean fetch, Sort sort) {
+        StringBuilder shape = new StringBuilder();
+        shape.append("and[");
+        appendShape(shape, andQuery);
+        shape.append("]or[");
+        appendShape(shape, orQuery);
+        shape.append("]sort[");
+        if (null != sort) {
+            sort.forEach(o -> shape.append(o.getProperty()).append(' ').append(o.getDirection()).append(','));
+        }
+        return shape.append("]fetch[").append(fetch).append(']').toString();
+    }
+
+    private static void appendShape(StringBuilder shape, List<DBQueryItem> queryItems) {
+        for (DBQueryItem queryItem : effectiveItems(queryItems)) {
+            shape.append(queryItem.getField()).append(' ').append(queryItem.getOperation()).append(' ').append(bucket(queryItem)).append(',');
+        }
+    }
+
+    /**
+     * 编译查询形态,存在不支持的操作符,或查询/排序字段不是实体的单值属性路径时返回null,由调用方使用criteria查询(criteria对未知字段报错)。
+     * 字段名直接拼入jpql,必须先经元模型校验,防止order by等位置注入hql
+     */
+    public static CompiledQuery compile(Metamodel metamodel, Class<?> domainClass, String entityName, List<String> fetchFields,
+                                        List<DBQueryItem> andQuery, List<DBQueryItem> orQuery, Sort sort) {
+        List<Parameter> parameters = Lists.newArrayList();
+        List<String> andClauses = Lists.newArrayList();
+        List<String> orClauses = Lists.newArrayList();
+        for (DBQueryItem queryItem : effectiveItems(andQuery)) {
+            String clause = compileItem(metamodel, domainClass, queryItem, parameters);
+            if (null == clause) {
+                return null;
+            }
+            andClauses.add(clause);
+        }
+        for (DBQueryItem queryItem : effectiveItems(orQuery)) {
+            String clause = compileItem(metamodel, domainClass, queryItem, parameters);
+            if (null == clause) {
+                return null;
+            }
+            orClauses.add(clause);
+        }
+        if (null != sort && sort.stream().anyMatch(o -> null == getJavaType(metamodel, domainClass, o.getProperty()))) {
+            return null;
+        }
+        StringBuilder where = new StringBuilder();
+        if (CollectionUtils.isNotEmpty(andClauses)) {
+            where.append("(").append(StringUtils.join(andClauses, " and ")).append(")");
+        }
+        if (CollectionUtils.isNotEmpty(orClauses)) {
+            if (where.length() > 0) {
+                where.append(" and ");
+            }
+            where.append("(").append(StringUtils.join(orClauses, " or ")).append(")");
+        }
+        String from = " from " + entityName + " " + ALIAS;
+        StringBuilder jpql = new StringBuilder("select ").append(ALIAS).append(from);
+        if (CollectionUtils.isNotEmpty(fetchFields)) {
+            fetchFields.forEach(f -> jpql.append(" left join fetch ").append(ALIAS).append('.').append(f));
+        }
+        StringBuilder countJpql = new StringBuilder("select count(").append(ALIAS).append(")").append(from);
+        if (where.length() > 0) {
+            jpql.append(" where ").append(where);
+            countJpql.append(" where ").append(where);
+        }
+        if (null != sort && sort.isSorted()) {
+            jpql.append(" order by ").append(sort.stream()
+                    .map(o -> ALIAS + "." + o.getProperty() + (o.isAscending() ? " asc" : " desc"))
+                    .collect(Collectors.joining(",")));
+        }
+        return new CompiledQuery(jpql.toString(), countJpql.toString(), parameters);
+    }
+
+    private static String compileItem(Metamodel metamodel, Class<?> domainClass, DBQueryItem queryItem, List<Parameter> parameters) {
+        Class<?> javaType = getJavaType(metamodel, domainClass, queryItem.getField());
+        if (null == javaType) {
+            return null;
+        }
+        String path = ALIAS + "." + queryItem.getField();
+        String name = "p" + parameters.size();
+        int bucket = bucket(queryItem);
+        String clause;
+        switch (queryItem.getOperation()) {
+            case EQ:
+                clause = path + " = :" + name;
+                break;
+            case NEQ:
+                clause = path + " <> :" + name;
+                break;
+            case LIKE:
+                clause = path + " like :" + name;
+                break;
+            case NLIKE:
+                clause = path + " not like :" + name;
+                break;
+            case GT:
+                clause = path + " > :" + name;
+                break;
+            case GTE:
+                clause = path + " >= :" + name;
+                break;
+            case LT:
+                clause = path + " < :" + name;
+                break;
+            case LTE:
+                clause = path + " <= :" + name;
+                break;
+            case IN:
+                clause = bucket == 0 ? path + " = :" + name : path + " in (:" + name + ")";
+                break;
+            case NIN:
+                clause = bucket == 0 ? path + " <> :" + name : path + " not in (:" + name + ")";
+                break;
+            default:
+                return null;
+        }
+        parameters.add(new Parameter(name, queryItem.getOperation(), bucket, javaType));
+        return clause;
+    }
+
+    /**
+     * IN/NIN的值个数按2的幂分档,单值为0档(渲染为等值),其他操作符为0档
+     */
+    static int bucket(DBQueryItem queryItem) {
+        if (!DBOperation.IN.equals(queryItem.getOperation()) && !DBOperation.NIN.equals(queryItem.getOperation())) {
+            return 0;
+        }
+        int size = queryItem.getValues().size();
+        if (size <= 1) {
+            return 0;
+        }
+        return Integer.highestOneBit(size - 1) << 1;
+    }
+
+    private static List<DBQueryItem> effectiveItems(List<DBQueryItem> queryItems) {
+        if (CollectionUtils.isEmpty(queryItems)) {
+            return Lists.newArrayList();
+        }
+        return queryItems.stream().filter(Objects::nonNull).filter(q -> CollectionUtils.isNotEmpty(q.getValues())).collect(Collectors.toList());
+    }
+
+    /**
+     * 按元模型逐段解析字段路径(如user.name)的类型,任一段不是单值属性时返回null
+     */
+    static Class<?> getJavaType(Metamodel metamodel, Class<?> domainClass, String field) {
+        if (StringUtils.isBlank(field)) {
+            return null;
+        }
+        try {
+            ManagedType<?> managedType = metamodel.managedType(domainClass);
+            Class<?> javaType = domainClass;
+            String[] fieldPaths = StringUtils.splitPreserveAllTokens(field, ".");
+            for (int i = 0; i < fieldPaths.length; i++) {
+                Attribute<?, ?> attribute = managedType.getAttribute(fieldPaths[i]);
+                if (attribute.isCollection()) {
+                    return null;
+                }
+                javaType = attribute.getJavaType();
+                if (i < fieldPaths.length - 1) {
+                    managedType = metamodel.managedType(javaType);
+                }
+            }
+            return javaType;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static class Parameter {
+
+        private final String name;
+
+        private final DBOperation operation;
+
+        private final int bucket;
+
+        private final Class<?> javaType;
+
+        private Parameter(String name, DBOperation operation, int bucket, Class<?> javaType) {
+            this.name = name;
+            this.operation = operation;
+            this.bucket = bucket;
+            this.javaType = javaType;
+        }
+
+        private void bind(Query query, DBQueryItem queryItem) {
+            List values = queryItem.getValues();
+            if (DBOperation.LIKE.equals(operation) || DBOperation.NLIKE.equals(operation)) {
+                query.setParameter(name, "%" + values.get(0).toString() + "%");
+            } else if (bucket == 0) {
+                query.setParameter(name, DBUtil.convertValue(values.get(0), javaType));
+            } else {
+                List<Object> padded = Lists.newArrayListWithCapacity(bucket);
+                for (Object value : values) {
+                    padded.add(DBUtil.convertValue(value, javaType));
+                }
+                Object last = padded.get(padded.size() - 1);
+                while (padded.size() < bucket) {
+                    padded.add(last);
+                }
+                query.setParameter(name, padded);
+            }
+        }
+    }
+}
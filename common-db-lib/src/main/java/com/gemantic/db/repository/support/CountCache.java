@@ -0,0 +1,48 @@
+package com.gemantic.db.repository.support;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 分页总数缓存,key为归一化后的查询条件,超过容量按最近最少使用淘汰,实体有写操作时整体失效
+ */
+public class CountCache {
+
+    private final RepositoryConfig config;
+
+    private final LinkedHashMap<String, long[]> totals;
+
+    public CountCache(RepositoryConfig config) {
+        this.config = config;
+        this.totals = new LinkedHashMap<String, long[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, long[]> eldest) {
+                return size() > CountCache.this.config.getCountCacheSize();
+            }
+        };
+    }
+
+    public synchronized Long get(String key) {
+        long[] entry = totals.get(key);
+        if (null == entry) {
+            return null;
+        }
+        if (entry[1] < System.currentTimeMillis()) {
+            totals.remove(key);
+            return null;
+        }
+        return entry[0];
+    }
+
+    public synchronized void put(String key, long total) {
+        totals.put(key, new long[]{total, System.currentTimeMillis() + config.getCountCacheTtl()});
+    }
+
+    public synchronized int size() {
+        return totals.size();
+    }
+
+    public synchronized void invalidate() {
+        totals.clear();
+    }
+}
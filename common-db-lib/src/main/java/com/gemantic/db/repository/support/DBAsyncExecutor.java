@@ -0,0 +1,100 @@
+package com.gemantic.db.repository.support;
+
+import com.google.common.collect.Maps;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 异步查询/写入的有界线程池,线程数应与数据库连接池大小一致,队列满时拒绝并计数,不在调用线程执行
+ */
+public class DBAsyncExecutor {
+
+    public static final int DEFAULT_POOL_SIZE = 10;
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 1000;
+
+    private static volatile DBAsyncExecutor defaultExecutor;
+
+    private final ThreadPoolExecutor executor;
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    public DBAsyncExecutor(String name, int poolSize, int queueCapacity) {
+        AtomicInteger index = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 60L, TimeUnit.SECONDS, new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), r -> {
+            Thread thread = new Thread(r, name + "-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 未配置时所有仓库共享的线程池
+     */
+    public static DBAsyncExecutor getDefault() {
+        if (null == defaultExecutor) {
+            synchronized (DBAsyncExecutor.class) {
+                if (null == defaultExecutor) {
+                    defaultExecutor = new DBAsyncExecutor("db-async", DEFAULT_POOL_SIZE, DEFAULT_QUEUE_CAPACITY);
+                }
+            }
+        }
+        return defaultExecutor;
+    }
+
+    /**
+     * 提交任务,队列已满时返回以RejectedExecutionException失败的future
+     */
+    public <R> CompletableFuture<R> submit(Callable<R> task) {
+        CompletableFuture<R> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                try {
+                    future.complete(task.call());
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = Maps.newLinkedHashMap();
+        stats.put("poolSize", (long) executor.getMaximumPoolSize());
+        stats.put("active", (long) executor.getActiveCount());
+        stats.put("queueDepth", (long) executor.getQueue().size());
+        stats.put("queueRemaining", (long) executor.getQueue().remainingCapacity());
+        stats.put("completed", executor.getCompletedTaskCount());
+        stats.put("rejected", rejected.get());
+        return stats;
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
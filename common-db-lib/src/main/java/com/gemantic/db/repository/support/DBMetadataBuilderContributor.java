@@ -0,0 +1,17 @@
+package com.gemantic.db.repository.support;
+
+import com.gemantic.db.util.DBUtil;
+import org.hibernate.boot.MetadataBuilder;
+import org.hibernate.boot.spi.MetadataBuilderContributor;
+
+/**
+ * 注册DBOperation.MATCH使用的全文检索函数,配置
+ * spring.jpa.properties.hibernate.metadata_builder_contributor=com.gemantic.db.repository.support.DBMetadataBuilderContributor
+ */
+public class DBMetadataBuilderContributor implements MetadataBuilderContributor {
+
+    @Override
+    public void contribute(MetadataBuilder metadataBuilder) {
+        metadataBuilder.applySqlFunction(DBUtil.MATCH_FUNCTION, new MatchAgainstFunction());
+    }
+}
@@ -0,0 +1,144 @@
+package com.gemantic.db.repository.support;
+
+import com.google.common.collect.Maps;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
+
+/**
+ * 按id缓存实体,超过容量按最近最少使用淘汰,超过有效期失效;写操作按id或整体失效。
+ * 放入时保存copier复制的快照,每次命中返回快照的新副本,调用方修改返回的对象不影响缓存及其他调用方
+ */
+public class EntityCache<T> {
+
+    private final int maxSize;
+
+    private final UnaryOperator<T> copier;
+
+    private final long ttl;
+
+    private final LinkedHashMap<String, Entry<T>> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public EntityCache(int maxSize, long ttl) {
+        this(maxSize, ttl, UnaryOperator.identity());
+    }
+
+    public EntityCache(int maxSize, long ttl, UnaryOperator<T> copier) {
+        this.maxSize = maxSize;
+        this.ttl = ttl;
+        this.copier = copier;
+        this.entries = new LinkedHashMap<String, Entry<T>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry<T>> eldest) {
+                if (size() > EntityCache.this.maxSize) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public synchronized T get(Object id) {
+        String key = String.valueOf(id);
+        Entry<T> entry = entries.get(key);
+        if (null != entry && entry.expireAt < System.currentTimeMillis()) {
+            entries.remove(key);
+            evictions.incrementAndGet();
+            entry = null;
+        }
+        if (null == entry) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return copier.apply(entry.value);
+    }
+
+    public synchronized void put(Object id, T value) {
+        if (null == id || null == value) {
+            return;
+        }
+        entries.put(String.valueOf(id), new Entry<>(copier.apply(value), System.currentTimeMillis() + ttl));
+    }
+
+    public synchronized void invalidate(Collection<?> ids) {
+        if (null == ids) {
+            invalidations.addAndGet(entries.size());
+            entries.clear();
+            return;
+        }
+        for (Object id : ids) {
+            if (null != entries.remove(String.valueOf(id))) {
+                invalidations.incrementAndGet();
+            }
+        }
+    }
+
+    public synchronized void invalidateAll() {
+        invalidate(null);
+    }
+
+    public synchronized int size() {
+        Iterator<Entry<T>> iterator = entries.values().iterator();
+        long now = System.currentTimeMillis();
+        while (iterator.hasNext()) {
+            if (iterator.next().expireAt < now) {
+                iterator.remove();
+                evictions.incrementAndGet();
+            }
+        }
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public long getInvalidations() {
+        return invalidations.get();
+    }
+
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = Maps.newLinkedHashMap();
+        stats.put("size", (long) size());
+        stats.put("maxSize", (long) maxSize);
+        stats.put("hits", getHits());
+        stats.put("misses", getMisses());
+        stats.put("evictions", getEvictions());
+        stats.put("invalidations", getInvalidations());
+        return stats;
+    }
+
+    private static class Entry<T> {
+
+        private final T value;
+
+        private final long expireAt;
+
+        private Entry(T value, long expireAt) {
+            this.value = value;
+            this.expireAt = expireAt;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.gemantic.db.repository.support;
+
+/**
+ * 全表扫描查询的处理方式
+ * NONE:只记录指标,
+ * LOG:输出告警日志,
+ * REJECT:拒绝查询(IllegalArgumentException),
+ * ROW_CAP:分页查询每页行数不超过fullScanRowCap且不统计总数(HAS_NEXT),流式导出只输出告警日志
+ */
+public enum FullScanAction {
+    NONE,LOG,REJECT,ROW_CAP
+
+}
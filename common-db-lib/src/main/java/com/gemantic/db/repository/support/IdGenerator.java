@@ -0,0 +1,9 @@
+package com.gemantic.db.repository.support;
+
+/**
+ * 内存分配主键,配置后saveAll对新对象预先分配id并批量插入
+ */
+public interface IdGenerator {
+
+    long nextId();
+}
@@ -0,0 +1,12 @@
+package com.gemantic.db.repository.support;
+
+/**
+ * 查询条件的索引使用情况
+ * COVERED:and条件与排序字段都在同一个索引可用的前缀内(或按主键查询),
+ * PARTIAL:有条件可使用索引,其余条件/排序在索引结果上过滤,
+ * FULL_SCAN:没有可使用索引的条件
+ */
+public enum IndexCoverage {
+    COVERED,PARTIAL,FULL_SCAN
+
+}
@@ -0,0 +1,46 @@
+package com.gemantic.db.repository.support;
+
+import com.gemantic.db.support.DBQueryItem;
+
+import java.util.List;
+
+/**
+ * 查询的索引分析结果:使用情况,选中的索引,按索引列顺序排列的and条件
+ */
+public class IndexPlan {
+
+    private final IndexCoverage coverage;
+
+    private final String index;
+
+    private final List<DBQueryItem> andQuery;
+
+    public IndexPlan(IndexCoverage coverage, String index, List<DBQueryItem> andQuery) {
+        this.coverage = coverage;
+        this.index = index;
+        this.andQuery = andQuery;
+    }
+
+    public IndexCoverage getCoverage() {
+        return coverage;
+    }
+
+    /**
+     * 选中的索引名,没有可用索引时为null
+     */
+    public String getIndex() {
+        return index;
+    }
+
+    /**
+     * 选中索引的列对应的条件在前(按索引列顺序),其余条件保持原顺序
+     */
+    public List<DBQueryItem> getAndQuery() {
+        return andQuery;
+    }
+
+    @Override
+    public String toString() {
+        return coverage + (null == index ? "" : "(" + index + ")");
+    }
+}
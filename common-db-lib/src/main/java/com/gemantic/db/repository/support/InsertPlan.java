@@ -0,0 +1,100 @@
+package com.gemantic.db.repository.support;
+
+import com.gemantic.db.model.BaseModel;
+import com.google.common.collect.ImmutableList;
+
+import java.lang.invoke.MethodHandle;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 实体批量插入的预编译计划:sql文本与按列顺序排列的取值句柄,同一实体/模板/仅插入字段只构建一次
+ */
+public class InsertPlan {
+
+    /**
+     * mysql单条语句占位符上限
+     */
+    public static final int MAX_PARAMETERS = 65535;
+
+    private final String tpl;
+
+    private final String tableName;
+
+    private final List<String> columns;
+
+    private final List<MethodHandle> getters;
+
+    private final String update;
+
+    private final String valueGroup;
+
+    private final Map<Integer, String> sqls = new ConcurrentHashMap<>();
+
+    public InsertPlan(String tpl, String tableName, List<String> columns, List<MethodHandle> getters, String update) {
+        this.tpl = tpl;
+        this.tableName = tableName;
+        this.columns = ImmutableList.copyOf(columns);
+        this.getters = ImmutableList.copyOf(getters);
+        this.update = update;
+        StringBuilder group = new StringBuilder("(");
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) {
+                group.append(",");
+            }
+            group.append("?");
+        }
+        this.valueGroup = group.append(")").toString();
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    public String getSql() {
+        return getSql(1);
+    }
+
+    /**
+     * 一次插入rows行的sql
+     */
+    public String getSql(int rows) {
+        return sqls.computeIfAbsent(rows, r -> {
+            StringBuilder values = new StringBuilder(valueGroup.length() * r + r);
+            for (int i = 0; i < r; i++) {
+                if (i > 0) {
+                    values.append(",");
+                }
+                values.append(valueGroup);
+            }
+            return String.format(tpl, tableName, String.join(",", columns), values.toString(), update);
+        });
+    }
+
+    /**
+     * 多值插入时一条语句最多容纳的行数
+     */
+    public int getMaxRows() {
+        return Math.max(1, MAX_PARAMETERS / Math.max(1, columns.size()));
+    }
+
+    public int size() {
+        return getters.size();
+    }
+
+    /**
+     * 取第index列的值,ManyToOne等内嵌对象取其id
+     */
+    public Object getValue(int index, Object object) throws Throwable {
+        Object value = (Object) getters.get(index).invokeExact(object);
+        if (null != value && value instanceof BaseModel) {
+            return ((BaseModel) value).getId();
+        }
+        return value;
+    }
+}
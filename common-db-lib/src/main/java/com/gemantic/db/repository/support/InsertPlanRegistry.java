@@ -0,0 +1,40 @@
+package com.gemantic.db.repository.support;
+
+import com.google.common.collect.Lists;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * 批量插入计划缓存,key为(实体类,sql模板,排序后的仅插入列名),超过容量按最近最少使用淘汰
+ */
+public class InsertPlanRegistry {
+
+    public static final int MAX_PLANS = 512;
+
+    private static final Map<List<Object>, InsertPlan> PLANS = Collections.synchronizedMap(new LinkedHashMap<List<Object>, InsertPlan>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<List<Object>, InsertPlan> eldest) {
+            return size() > MAX_PLANS;
+        }
+    });
+
+    /**
+     * onlyInsertColumns需已归一化为排序去重后的实体列名,null表示没有仅插入字段
+     */
+    public static InsertPlan get(Class<?> domainClass, String tpl, List<String> onlyInsertColumns, Supplier<InsertPlan> builder) {
+        List<Object> key = Lists.newArrayList(domainClass, tpl, null == onlyInsertColumns ? null : Lists.newArrayList(onlyInsertColumns));
+        return PLANS.computeIfAbsent(key, k -> builder.get());
+    }
+
+    public static int size() {
+        return PLANS.size();
+    }
+
+    public static void clear() {
+        PLANS.clear();
+    }
+}
@@ -0,0 +1,107 @@
+package com.gemantic.db.repository.support;
+
+import com.gemantic.db.constant.DBOperation;
+import com.gemantic.db.support.DBQueryItem;
+import com.google.common.collect.Lists;
+import org.apache.commons.collections4.CollectionUtils;
+import org.springframework.data.domain.Sort;
+
+import java.text.Collator;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.BiFunction;
+
+/**
+ * 大IN条件拆分:值去重后按固定大小分组,末组用最后一个值补齐使每组生成相同的sql,便于语句缓存复用。
+ * and查询中的IN条件拆分后各组匹配的记录互不重叠,合并结果即原查询结果
+ */
+public class LargeInSplitter {
+
+    /**
+     * and查询中去重后取值个数最多且超过threshold的IN条件位置,没有返回-1
+     */
+    public static int indexOf(List<DBQueryItem> andQuery, int threshold) {
+        if (CollectionUtils.isEmpty(andQuery) || threshold <= 0) {
+            return -1;
+        }
+        int index = -1;
+        int max = threshold;
+        for (int i = 0; i < andQuery.size(); i++) {
+            DBQueryItem queryItem = andQuery.get(i);
+            if (null == queryItem || !DBOperation.IN.equals(queryItem.getOperation()) || null == queryItem.getValues() || queryItem.getValues().size() <= max) {
+                continue;
+            }
+            int size = new LinkedHashSet<Object>(queryItem.getValues()).size();
+            if (size > max) {
+                index = i;
+                max = size;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * 将andQuery中index位置的IN条件拆分为每组最多chunkSize个值,返回各组的and查询
+     */
+    public static List<List<DBQueryItem>> split(List<DBQueryItem> andQuery, int index, int chunkSize) {
+        DBQueryItem inItem = andQuery.get(index);
+        List<Object> inValues = inItem.getValues();
+        List<List<DBQueryItem>> result = Lists.newArrayList();
+        for (List<Object> values : partition(inValues, chunkSize)) {
+            List<DBQueryItem> chunk = Lists.newArrayList(andQuery);
+            chunk.set(index, new DBQueryItem(inItem.getField(), DBOperation.IN, values));
+            result.add(chunk);
+        }
+        return result;
+    }
+
+    /**
+     * 去重后按size分组,末组用最后一个值补齐到size
+     */
+    public static <V> List<List<V>> partition(Collection<? extends V> values, int size) {
+        List<V> distinct = Lists.newArrayList(new LinkedHashSet<V>(values));
+        List<List<V>> result = Lists.newArrayList();
+        for (List<V> part : Lists.partition(distinct, size)) {
+            List<V> chunk = Lists.newArrayListWithCapacity(size);
+            chunk.addAll(part);
+            V last = part.get(part.size() - 1);
+            while (chunk.size() < size && distinct.size() > size) {
+                chunk.add(last);
+            }
+            result.add(chunk);
+        }
+        return result;
+    }
+
+    /**
+     * 按排序字段比较合并后的结果,null同mysql在升序最前,降序最后。
+     * 字符串按忽略大小写和重音的Collator比较,近似mysql默认的*_ci排序规则,_bin等其他排序规则的字段合并后顺序可能与数据库不一致
+     */
+    public static <R> Comparator<R> comparator(Sort sort, BiFunction<R, String, Object> valueGetter) {
+        Collator collator = Collator.getInstance(Locale.ROOT);
+        collator.setStrength(Collator.PRIMARY);
+        return (a, b) -> {
+            for (Sort.Order order : sort) {
+                Object va = valueGetter.apply(a, order.getProperty());
+                Object vb = valueGetter.apply(b, order.getProperty());
+                int compare;
+                if (null == va || null == vb) {
+                    compare = null == va ? (null == vb ? 0 : -1) : 1;
+                } else if (va instanceof String && vb instanceof String) {
+                    compare = collator.compare(va, vb);
+                } else if (va instanceof Comparable) {
+                    compare = ((Comparable) va).compareTo(vb);
+                } else {
+                    compare = 0;
+                }
+                if (compare != 0) {
+                    return order.isAscending() ? compare : -compare;
+                }
+            }
+            return 0;
+        };
+    }
+}
@@ -0,0 +1,15 @@
+package com.gemantic.db.repository.support;
+
+/**
+ * 大IN条件处理方式
+ */
+public enum LargeInStrategy {
+    /**
+     * 不处理,所有值展开为一个IN条件,默认方式
+     */
+    NONE,
+    /**
+     * 按阈值拆分为多条查询在当前事务中顺序执行,结果合并
+     */
+    CHUNK
+}
@@ -0,0 +1,179 @@
+package com.gemantic.db.repository.support;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Date;
+import java.util.Iterator;
+
+/**
+ * 将实体逐行编码为LOAD DATA的TSV字节流(列顺序同InsertPlan,null为\N,制表符/换行/反斜杠转义),边读边编码,不落临时文件
+ */
+public class LoadDataInputStream extends InputStream {
+
+    /**
+     * 按顺序尝试的驱动语句接口:Connector/J 8, Connector/J 5
+     */
+    private static final String[] LOCAL_INFILE_STATEMENTS = {"com.mysql.cj.jdbc.JdbcStatement", "com.mysql.jdbc.Statement"};
+
+    private static final byte[] NULL = {'\\', 'N'};
+
+    private final Iterator<?> iterator;
+
+    private final InsertPlan plan;
+
+    private final ByteArrayOutputStream row = new ByteArrayOutputStream(256);
+
+    private byte[] buffer = new byte[0];
+
+    private int position;
+
+    private long rows;
+
+    public LoadDataInputStream(Iterator<?> iterator, InsertPlan plan) {
+        this.iterator = iterator;
+        this.plan = plan;
+    }
+
+    /**
+     * LOAD DATA LOCAL INFILE语句,replace为true时使用REPLACE,否则使用IGNORE
+     */
+    public static String getSql(InsertPlan plan, boolean replace) {
+        return "LOAD DATA LOCAL INFILE 'stream' " + (replace ? "REPLACE" : "IGNORE") + " INTO TABLE " + plan.getTableName()
+                + " CHARACTER SET utf8mb4 FIELDS TERMINATED BY '\\t' ESCAPED BY '\\\\' LINES TERMINATED BY '\\n' ("
+                + String.join(",", plan.getColumns()) + ")";
+    }
+
+    /**
+     * 通过驱动的setLocalInfileInputStream把本流交给语句,连接需开启allowLoadLocalInfile=true
+     */
+    public void attachTo(Statement statement) throws SQLException {
+        for (String name : LOCAL_INFILE_STATEMENTS) {
+            Class<?> statementClass;
+            try {
+                statementClass = Class.forName(name);
+            } catch (ClassNotFoundException e) {
+                continue;
+            }
+            if (!statement.isWrapperFor(statementClass)) {
+                continue;
+            }
+            try {
+                statementClass.getMethod("setLocalInfileInputStream", InputStream.class).invoke(statement.unwrap(statementClass), this);
+                return;
+            } catch (ReflectiveOperationException e) {
+                throw new SQLException("set local infile input stream error", e);
+            }
+        }
+        throw new SQLException("jdbc driver does not support LOAD DATA LOCAL INFILE input stream");
+    }
+
+    /**
+     * 已编码的行数
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        return buffer[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        int read = 0;
+        while (read < len && fill()) {
+            int count = Math.min(len - read, buffer.length - position);
+            System.arraycopy(buffer, position, b, off + read, count);
+            position += count;
+            read += count;
+        }
+        return read == 0 ? -1 : read;
+    }
+
+    private boolean fill() throws IOException {
+        while (position >= buffer.length) {
+            if (!iterator.hasNext()) {
+                return false;
+            }
+            row.reset();
+            Object object = iterator.next();
+            for (int i = 0; i < plan.size(); i++) {
+                if (i > 0) {
+                    row.write('\t');
+                }
+                Object value;
+                try {
+                    value = plan.getValue(i, object);
+                } catch (Throwable e) {
+                    throw new IOException("load data " + plan.getColumns().get(i) + " error " + object, e);
+                }
+                writeValue(value);
+            }
+            row.write('\n');
+            buffer = row.toByteArray();
+            position = 0;
+            rows++;
+        }
+        return true;
+    }
+
+    private void writeValue(Object value) {
+        if (null == value) {
+            row.write(NULL, 0, NULL.length);
+            return;
+        }
+        byte[] bytes;
+        if (value instanceof byte[]) {
+            bytes = (byte[]) value;
+        } else if (value instanceof Boolean) {
+            bytes = new byte[]{(byte) ((Boolean) value ? '1' : '0')};
+        } else if (value instanceof Enum) {
+            bytes = ((Enum<?>) value).name().getBytes(StandardCharsets.UTF_8);
+        } else if (value instanceof Date) {
+            bytes = new Timestamp(((Date) value).getTime()).toString().getBytes(StandardCharsets.UTF_8);
+        } else if (value instanceof LocalDateTime) {
+            bytes = Timestamp.valueOf((LocalDateTime) value).toString().getBytes(StandardCharsets.UTF_8);
+        } else {
+            bytes = value.toString().getBytes(StandardCharsets.UTF_8);
+        }
+        for (byte b : bytes) {
+            switch (b) {
+                case '\\':
+                    row.write('\\');
+                    row.write('\\');
+                    break;
+                case '\t':
+                    row.write('\\');
+                    row.write('t');
+                    break;
+                case '\n':
+                    row.write('\\');
+                    row.write('n');
+                    break;
+                case '\r':
+                    row.write('\\');
+                    row.write('r');
+                    break;
+                case 0:
+                    row.write('\\');
+                    row.write('0');
+                    break;
+                default:
+                    row.write(b);
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.gemantic.db.repository.support;
+
+import org.hibernate.QueryException;
+import org.hibernate.dialect.function.SQLFunction;
+import org.hibernate.engine.spi.Mapping;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.type.StandardBasicTypes;
+import org.hibernate.type.Type;
+
+import java.util.List;
+
+/**
+ * match_against(字段1,...,字段n,检索式) 渲染为 MATCH(字段1,...,字段n) AGAINST(检索式 IN BOOLEAN MODE),返回相关度
+ */
+public class MatchAgainstFunction implements SQLFunction {
+
+    @Override
+    public boolean hasArguments() {
+        return true;
+    }
+
+    @Override
+    public boolean hasParenthesesIfNoArguments() {
+        return false;
+    }
+
+    @Override
+    public Type getReturnType(Type firstArgumentType, Mapping mapping) throws QueryException {
+        return StandardBasicTypes.DOUBLE;
+    }
+
+    @Override
+    public String render(Type firstArgumentType, List arguments, SessionFactoryImplementor factory) throws QueryException {
+        if (arguments.size() < 2) {
+            throw new QueryException("match_against requires at least one column and a search expression");
+        }
+        StringBuilder sql = new StringBuilder("MATCH(");
+        for (int i = 0; i < arguments.size() - 1; i++) {
+            if (i > 0) {
+                sql.append(',');
+            }
+            sql.append(arguments.get(i));
+        }
+        return sql.append(") AGAINST(").append(arguments.get(arguments.size() - 1)).append(" IN BOOLEAN MODE)").toString();
+    }
+}
@@ -0,0 +1,68 @@
+package com.gemantic.db.repository.support;
+
+import javax.persistence.Query;
+import javax.persistence.QueryTimeoutException;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * 当前线程仓库操作的截止时间,由带timeout的查询设置,嵌套进入时取较早的截止时间。
+ * 每条语句执行前按剩余时间设置语句超时(秒,向上取整),超时后由驱动取消数据库中正在执行的语句;已超过截止时间时不再执行直接抛出QueryTimeoutException
+ */
+public class QueryDeadline {
+
+    public static final String TIMEOUT_HINT = "javax.persistence.query.timeout";
+
+    private static final ThreadLocal<Long> DEADLINE = new ThreadLocal<>();
+
+    /**
+     * 进入超时范围,timeoutMillis为空或不大于0时不改变截止时间,返回进入前的截止时间,退出时传给exit恢复
+     */
+    public static Long enter(Long timeoutMillis) {
+        Long previous = DEADLINE.get();
+        if (null != timeoutMillis && timeoutMillis > 0) {
+            long deadline = System.currentTimeMillis() + timeoutMillis;
+            DEADLINE.set(null == previous ? deadline : Math.min(previous, deadline));
+        }
+        return previous;
+    }
+
+    public static void exit(Long previous) {
+        if (null != previous) {
+            DEADLINE.set(previous);
+        } else {
+            DEADLINE.remove();
+        }
+    }
+
+    /**
+     * 下一条语句的超时秒数:有截止时间时取剩余时间,否则取defaultMillis,0不限制
+     */
+    public static int getTimeoutSeconds(long defaultMillis) {
+        Long deadline = DEADLINE.get();
+        long millis = defaultMillis;
+        if (null != deadline) {
+            millis = deadline - System.currentTimeMillis();
+            if (millis <= 0) {
+                throw new QueryTimeoutException("query deadline exceeded " + (-millis) + "ms ago");
+            }
+        }
+        return millis > 0 ? (int) Math.min(Integer.MAX_VALUE, (millis + 999) / 1000) : 0;
+    }
+
+    public static <Q extends Query> Q apply(Q query, long defaultMillis) {
+        int seconds = getTimeoutSeconds(defaultMillis);
+        if (seconds > 0) {
+            query.setHint(TIMEOUT_HINT, seconds * 1000);
+        }
+        return query;
+    }
+
+    public static <S extends Statement> S apply(S statement, long defaultMillis) throws SQLException {
+        int seconds = getTimeoutSeconds(defaultMillis);
+        if (seconds > 0) {
+            statement.setQueryTimeout(seconds);
+        }
+        return statement;
+    }
+}
@@ -0,0 +1,106 @@
+package com.gemantic.db.repository.support;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一次仓库操作的计时,按阶段(build:构建查询,execute:执行,count:统计总数,map:结果转换)累计耗时,结束时记录指标并按阈值输出慢查询日志。
+ * 当前线程最内层的计时可通过mark记录阶段,没有计时时mark不做任何事;最后一次mark之后的耗时记为map,没有mark时整体记为execute
+ */
+public class QueryTimer {
+
+    private static final ThreadLocal<QueryTimer> CURRENT = new ThreadLocal<>();
+
+    private final RepositoryMetrics metrics;
+
+    private final String operation;
+
+    private final String shape;
+
+    private final int parameters;
+
+    private final QueryTimer previous;
+
+    private final long startAt;
+
+    private final Map<String, Long> phases = new LinkedHashMap<>();
+
+    private long lastAt;
+
+    private long rows = -1L;
+
+    private boolean stopped;
+
+    QueryTimer(RepositoryMetrics metrics, String operation, String shape, int parameters) {
+        this.metrics = metrics;
+        this.operation = operation;
+        this.shape = shape;
+        this.parameters = parameters;
+        this.previous = CURRENT.get();
+        this.startAt = System.nanoTime();
+        this.lastAt = startAt;
+        CURRENT.set(this);
+    }
+
+    /**
+     * 当前线程最内层计时记录从上一阶段结束到现在的耗时
+     */
+    public static void mark(String phase) {
+        QueryTimer timer = CURRENT.get();
+        if (null != timer) {
+            timer.phase(phase);
+        }
+    }
+
+    public void phase(String phase) {
+        long now = System.nanoTime();
+        phases.merge(phase, now - lastAt, Long::sum);
+        lastAt = now;
+    }
+
+    public void setRows(long rows) {
+        this.rows = rows;
+    }
+
+    public void stop() {
+        if (stopped) {
+            return;
+        }
+        stopped = true;
+        if (previous != null) {
+            CURRENT.set(previous);
+        } else {
+            CURRENT.remove();
+        }
+        long end = System.nanoTime();
+        phases.merge(phases.isEmpty() ? "execute" : "map", end - lastAt, Long::sum);
+        long total = end - startAt;
+        metrics.record(this, total);
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public String getShape() {
+        return shape;
+    }
+
+    public int getParameters() {
+        return parameters;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * 各阶段耗时(毫秒)
+     */
+    public Map<String, Long> getPhaseMillis() {
+        Map<String, Long> millis = new LinkedHashMap<>();
+        phases.forEach((k, v) -> millis.put(k, TimeUnit.NANOSECONDS.toMillis(v)));
+        return millis;
+    }
+}
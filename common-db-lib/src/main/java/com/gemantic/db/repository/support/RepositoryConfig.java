@@ -0,0 +1,406 @@
+package com.gemantic.db.repository.support;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * 仓库配置,未设置的项取全局默认配置(getDefault),全局默认未设置的项取内置默认值
+ */
+public class RepositoryConfig {
+
+    public static final int DEFAULT_BULK_BATCH_SIZE = 1000;
+
+    /**
+     * mysql驱动逐行流式读取
+     */
+    public static final int DEFAULT_STREAM_FETCH_SIZE = Integer.MIN_VALUE;
+
+    public static final int DEFAULT_STREAM_CLEAR_INTERVAL = 1000;
+
+    public static final long DEFAULT_COUNT_CACHE_TTL = 60000L;
+
+    public static final int DEFAULT_COUNT_CACHE_SIZE = 10000;
+
+    public static final int DEFAULT_COMPILED_QUERY_CACHE_SIZE = 1000;
+
+    public static final long DEFAULT_ENTITY_CACHE_TTL = 60000L;
+
+    public static final long DEFAULT_SLOW_QUERY_MILLIS = 1000L;
+
+    public static final int DEFAULT_LARGE_IN_THRESHOLD = 1000;
+
+    public static final int DEFAULT_FULL_SCAN_ROW_CAP = 1000;
+
+    private static final RepositoryConfig DEFAULT = new RepositoryConfig(null);
+
+    private final RepositoryConfig parent;
+
+    private Integer bulkBatchSize;
+
+    private Boolean bulkMultiRow;
+
+    private Integer streamFetchSize;
+
+    private Integer streamClearInterval;
+
+    private Long countCacheTtl;
+
+    private Integer countCacheSize;
+
+    private Boolean compiledQuery;
+
+    private Integer compiledQueryCacheSize;
+
+    private IdGenerator idGenerator;
+
+    private Integer entityCacheSize;
+
+    private Long entityCacheTtl;
+
+    private Boolean readFromReplica;
+
+    private DBAsyncExecutor asyncExecutor;
+
+    private Boolean metricsEnabled;
+
+    private MeterRegistry meterRegistry;
+
+    private Long slowQueryMillis;
+
+    private Integer largeInThreshold;
+
+    private LargeInStrategy largeInStrategy;
+
+    private Long queryTimeoutMillis;
+
+    private Boolean indexCheck;
+
+    private FullScanAction fullScanAction;
+
+    private Integer fullScanRowCap;
+
+    public RepositoryConfig() {
+        this(DEFAULT);
+    }
+
+    private RepositoryConfig(RepositoryConfig parent) {
+        this.parent = parent;
+    }
+
+    /**
+     * 全局默认配置,所有仓库共享
+     */
+    public static RepositoryConfig getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * 批量插入/保存每批行数
+     */
+    public int getBulkBatchSize() {
+        if (null != bulkBatchSize) {
+            return bulkBatchSize;
+        }
+        return null != parent ? parent.getBulkBatchSize() : DEFAULT_BULK_BATCH_SIZE;
+    }
+
+    public void setBulkBatchSize(Integer bulkBatchSize) {
+        this.bulkBatchSize = bulkBatchSize;
+    }
+
+    /**
+     * 批量插入/保存是否使用多值 INSERT ... VALUES (...),(...),否则使用jdbc batch(可配合驱动的rewriteBatchedStatements,默认)
+     */
+    public boolean isBulkMultiRow() {
+        if (null != bulkMultiRow) {
+            return bulkMultiRow;
+        }
+        return null != parent && parent.isBulkMultiRow();
+    }
+
+    public void setBulkMultiRow(Boolean bulkMultiRow) {
+        this.bulkMultiRow = bulkMultiRow;
+    }
+
+    /**
+     * 流式导出的jdbc fetchSize,mysql默认Integer.MIN_VALUE逐行读取,使用正数需要连接参数useCursorFetch=true
+     */
+    public int getStreamFetchSize() {
+        if (null != streamFetchSize) {
+            return streamFetchSize;
+        }
+        return null != parent ? parent.getStreamFetchSize() : DEFAULT_STREAM_FETCH_SIZE;
+    }
+
+    public void setStreamFetchSize(Integer streamFetchSize) {
+        this.streamFetchSize = streamFetchSize;
+    }
+
+    /**
+     * 流式导出每读取多少行清空一次session
+     */
+    public int getStreamClearInterval() {
+        if (null != streamClearInterval) {
+            return streamClearInterval;
+        }
+        return null != parent ? parent.getStreamClearInterval() : DEFAULT_STREAM_CLEAR_INTERVAL;
+    }
+
+    public void setStreamClearInterval(Integer streamClearInterval) {
+        this.streamClearInterval = streamClearInterval;
+    }
+
+    /**
+     * CACHED方式统计的总数缓存时间(毫秒)
+     */
+    public long getCountCacheTtl() {
+        if (null != countCacheTtl) {
+            return countCacheTtl;
+        }
+        return null != parent ? parent.getCountCacheTtl() : DEFAULT_COUNT_CACHE_TTL;
+    }
+
+    public void setCountCacheTtl(Long countCacheTtl) {
+        this.countCacheTtl = countCacheTtl;
+    }
+
+    /**
+     * 每个实体最多缓存的查询总数个数
+     */
+    public int getCountCacheSize() {
+        if (null != countCacheSize) {
+            return countCacheSize;
+        }
+        return null != parent ? parent.getCountCacheSize() : DEFAULT_COUNT_CACHE_SIZE;
+    }
+
+    public void setCountCacheSize(Integer countCacheSize) {
+        this.countCacheSize = countCacheSize;
+    }
+
+    /**
+     * 实体查询是否使用按查询形态缓存的参数化jpql代替每次构建criteria,默认关闭
+     */
+    public boolean isCompiledQuery() {
+        if (null != compiledQuery) {
+            return compiledQuery;
+        }
+        return null != parent && parent.isCompiledQuery();
+    }
+
+    public void setCompiledQuery(Boolean compiledQuery) {
+        this.compiledQuery = compiledQuery;
+    }
+
+    /**
+     * 每个实体最多缓存的查询形态个数
+     */
+    public int getCompiledQueryCacheSize() {
+        if (null != compiledQueryCacheSize) {
+            return compiledQueryCacheSize;
+        }
+        return null != parent ? parent.getCompiledQueryCacheSize() : DEFAULT_COMPILED_QUERY_CACHE_SIZE;
+    }
+
+    public void setCompiledQueryCacheSize(Integer compiledQueryCacheSize) {
+        this.compiledQueryCacheSize = compiledQueryCacheSize;
+    }
+
+    /**
+     * 主键生成器,配置后saveAll、bulkInsert、bulkSave、bulkLoad插入的新对象在内存中分配id后按批量insert写入,不经过EntityManager.persist:
+     * saveAll返回的新对象不受管理(detached),实体监听与@PrePersist等回调不执行。单个save及有集合关联的实体仍走JPA并使用数据库自增id;
+     * 默认不配置使用数据库自增id逐条插入
+     */
+    public IdGenerator getIdGenerator() {
+        if (null != idGenerator) {
+            return idGenerator;
+        }
+        return null != parent ? parent.getIdGenerator() : null;
+    }
+
+    public void setIdGenerator(IdGenerator idGenerator) {
+        this.idGenerator = idGenerator;
+    }
+
+    /**
+     * 按id缓存的实体个数上限,0不缓存(默认);只缓存没有关联/嵌入字段的实体,读写事务中按id读取不使用缓存
+     */
+    public int getEntityCacheSize() {
+        if (null != entityCacheSize) {
+            return entityCacheSize;
+        }
+        return null != parent ? parent.getEntityCacheSize() : 0;
+    }
+
+    public void setEntityCacheSize(Integer entityCacheSize) {
+        this.entityCacheSize = entityCacheSize;
+    }
+
+    /**
+     * 实体缓存有效期(毫秒)
+     */
+    public long getEntityCacheTtl() {
+        if (null != entityCacheTtl) {
+            return entityCacheTtl;
+        }
+        return null != parent ? parent.getEntityCacheTtl() : DEFAULT_ENTITY_CACHE_TTL;
+    }
+
+    public void setEntityCacheTtl(Long entityCacheTtl) {
+        this.entityCacheTtl = entityCacheTtl;
+    }
+
+    /**
+     * 只读查询是否访问从库(需要配置DBRoutingDataSource),读写事务中的查询始终访问主库
+     */
+    public boolean isReadFromReplica() {
+        if (null != readFromReplica) {
+            return readFromReplica;
+        }
+        return null != parent && parent.isReadFromReplica();
+    }
+
+    public void setReadFromReplica(Boolean readFromReplica) {
+        this.readFromReplica = readFromReplica;
+    }
+
+    /**
+     * 异步接口使用的线程池,默认所有仓库共享DBAsyncExecutor.getDefault()
+     */
+    public DBAsyncExecutor getAsyncExecutor() {
+        if (null != asyncExecutor) {
+            return asyncExecutor;
+        }
+        return null != parent ? parent.getAsyncExecutor() : DBAsyncExecutor.getDefault();
+    }
+
+    public void setAsyncExecutor(DBAsyncExecutor asyncExecutor) {
+        this.asyncExecutor = asyncExecutor;
+    }
+
+    /**
+     * 是否记录仓库操作指标
+     */
+    public boolean isMetricsEnabled() {
+        if (null != metricsEnabled) {
+            return metricsEnabled;
+        }
+        return null == parent || parent.isMetricsEnabled();
+    }
+
+    public void setMetricsEnabled(Boolean metricsEnabled) {
+        this.metricsEnabled = metricsEnabled;
+    }
+
+    /**
+     * 指标注册表,默认Metrics.globalRegistry(spring boot actuator的注册表默认已加入)
+     */
+    public MeterRegistry getMeterRegistry() {
+        if (null != meterRegistry) {
+            return meterRegistry;
+        }
+        return null != parent ? parent.getMeterRegistry() : null;
+    }
+
+    public void setMeterRegistry(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * 慢查询日志阈值(毫秒),超过时输出查询形态,参数个数与各阶段耗时,负数不输出
+     */
+    public long getSlowQueryMillis() {
+        if (null != slowQueryMillis) {
+            return slowQueryMillis;
+        }
+        return null != parent ? parent.getSlowQueryMillis() : DEFAULT_SLOW_QUERY_MILLIS;
+    }
+
+    public void setSlowQueryMillis(Long slowQueryMillis) {
+        this.slowQueryMillis = slowQueryMillis;
+    }
+
+    /**
+     * 大IN条件阈值:编号集合或and查询中IN条件去重后的值个数超过该值时按largeInStrategy处理,同时作为拆分后每组的值个数,0不处理
+     */
+    public int getLargeInThreshold() {
+        if (null != largeInThreshold) {
+            return largeInThreshold;
+        }
+        return null != parent ? parent.getLargeInThreshold() : DEFAULT_LARGE_IN_THRESHOLD;
+    }
+
+    public void setLargeInThreshold(Integer largeInThreshold) {
+        this.largeInThreshold = largeInThreshold;
+    }
+
+    /**
+     * 大IN条件处理方式,默认NONE。CHUNK拆分后带排序的结果在内存中合并,字符串按近似mysql *_ci排序规则比较,
+     * 使用_bin等其他排序规则的字段顺序可能与数据库不一致,建议排序字段为数值或时间类型
+     */
+    public LargeInStrategy getLargeInStrategy() {
+        if (null != largeInStrategy) {
+            return largeInStrategy;
+        }
+        return null != parent ? parent.getLargeInStrategy() : LargeInStrategy.NONE;
+    }
+
+    public void setLargeInStrategy(LargeInStrategy largeInStrategy) {
+        this.largeInStrategy = largeInStrategy;
+    }
+
+    /**
+     * 语句默认超时时间(毫秒),查询未传timeout时对每条语句生效,超时后由驱动取消数据库中的语句,0不限制(默认)
+     */
+    public long getQueryTimeoutMillis() {
+        if (null != queryTimeoutMillis) {
+            return queryTimeoutMillis;
+        }
+        return null != parent ? parent.getQueryTimeoutMillis() : 0L;
+    }
+
+    public void setQueryTimeoutMillis(Long queryTimeoutMillis) {
+        this.queryTimeoutMillis = queryTimeoutMillis;
+    }
+
+    /**
+     * 是否按表索引分析查询条件(首次查询时读取索引元数据),记录db.repository.index指标并按fullScanAction处理全表扫描查询,默认false
+     */
+    public boolean isIndexCheck() {
+        if (null != indexCheck) {
+            return indexCheck;
+        }
+        return null != parent && parent.isIndexCheck();
+    }
+
+    public void setIndexCheck(Boolean indexCheck) {
+        this.indexCheck = indexCheck;
+    }
+
+    /**
+     * 全表扫描查询的处理方式,默认NONE只记录指标
+     */
+    public FullScanAction getFullScanAction() {
+        if (null != fullScanAction) {
+            return fullScanAction;
+        }
+        return null != parent ? parent.getFullScanAction() : FullScanAction.NONE;
+    }
+
+    public void setFullScanAction(FullScanAction fullScanAction) {
+        this.fullScanAction = fullScanAction;
+    }
+
+    /**
+     * fullScanAction为ROW_CAP时全表扫描查询每页的最大行数
+     */
+    public int getFullScanRowCap() {
+        if (null != fullScanRowCap) {
+            return fullScanRowCap;
+        }
+        return null != parent ? parent.getFullScanRowCap() : DEFAULT_FULL_SCAN_ROW_CAP;
+    }
+
+    public void setFullScanRowCap(Integer fullScanRowCap) {
+        this.fullScanRowCap = fullScanRowCap;
+    }
+}
@@ -0,0 +1,149 @@
+package com.gemantic.db.repository.support;
+
+import com.gemantic.db.support.DBQueryItem;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.apache.commons.collections4.CollectionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 仓库操作指标:db.repository耗时(tag:entity,operation,shape),db.repository.rows返回/影响行数与db.repository.index查询的索引使用情况(tag:entity,operation,coverage),
+ * shape为归一化查询形态的hash,每个实体最多MAX_SHAPES个,超出记为other;默认注册到Metrics.globalRegistry
+ */
+public class RepositoryMetrics {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RepositoryMetrics.class);
+
+    public static final String TIMER_NAME = "db.repository";
+
+    public static final String ROWS_NAME = "db.repository.rows";
+
+    public static final String INDEX_NAME = "db.repository.index";
+
+    public static final int MAX_SHAPES = 200;
+
+    private static final String NONE = "none";
+
+    private static final String OTHER = "other";
+
+    private final String entity;
+
+    private final RepositoryConfig config;
+
+    private final Map<String, String> shapes = new ConcurrentHashMap<>();
+
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    private final Map<String, DistributionSummary> summaries = new ConcurrentHashMap<>();
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+    public RepositoryMetrics(String entity, RepositoryConfig config) {
+        this.entity = entity;
+        this.config = config;
+    }
+
+    public QueryTimer start(String operation) {
+        return new QueryTimer(this, operation, null, 0);
+    }
+
+    /**
+     * @param shape      归一化的查询形态,不含参数值
+     * @param parameters 绑定参数个数
+     */
+    public QueryTimer start(String operation, String shape, int parameters) {
+        return new QueryTimer(this, operation, shape, parameters);
+    }
+
+    void record(QueryTimer timer, long nanos) {
+        if (config.isMetricsEnabled()) {
+            MeterRegistry registry = getRegistry();
+            String shapeTag = getShapeTag(timer.getShape());
+            timers.computeIfAbsent(timer.getOperation() + "|" + shapeTag, k -> Timer.builder(TIMER_NAME)
+                    .tag("entity", entity).tag("operation", timer.getOperation()).tag("shape", shapeTag)
+                    .register(registry)).record(nanos, TimeUnit.NANOSECONDS);
+            if (timer.getRows() >= 0L) {
+                summaries.computeIfAbsent(timer.getOperation(), k -> DistributionSummary.builder(ROWS_NAME)
+                        .tag("entity", entity).tag("operation", timer.getOperation())
+                        .register(registry)).record(timer.getRows());
+            }
+        }
+        long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+        long threshold = config.getSlowQueryMillis();
+        if (threshold >= 0L && millis >= threshold) {
+            LOG.warn("slow {} {} {}ms rows {} parameters {} phases {} shape [{}]", entity, timer.getOperation(), millis,
+                    timer.getRows(), timer.getParameters(), timer.getPhaseMillis(), timer.getShape());
+        }
+    }
+
+    /**
+     * 记录一次查询的索引使用情况
+     */
+    public void recordIndex(String operation, IndexCoverage coverage) {
+        if (!config.isMetricsEnabled()) {
+            return;
+        }
+        counters.computeIfAbsent(operation + "|" + coverage, k -> Counter.builder(INDEX_NAME)
+                .tag("entity", entity).tag("operation", operation).tag("coverage", coverage.name())
+                .register(getRegistry())).increment();
+    }
+
+    /**
+     * 注册实体缓存的大小与命中/未命中计数
+     */
+    public void bindEntityCache(EntityCache<?> cache) {
+        if (!config.isMetricsEnabled()) {
+            return;
+        }
+        MeterRegistry registry = getRegistry();
+        Gauge.builder("db.entity.cache.size", cache, EntityCache::size).tag("entity", entity).register(registry);
+        FunctionCounter.builder("db.entity.cache.hits", cache, EntityCache::getHits).tag("entity", entity).register(registry);
+        FunctionCounter.builder("db.entity.cache.misses", cache, EntityCache::getMisses).tag("entity", entity).register(registry);
+        FunctionCounter.builder("db.entity.cache.evictions", cache, EntityCache::getEvictions).tag("entity", entity).register(registry);
+    }
+
+    private MeterRegistry getRegistry() {
+        MeterRegistry registry = config.getMeterRegistry();
+        return null == registry ? Metrics.globalRegistry : registry;
+    }
+
+    private String getShapeTag(String shape) {
+        if (null == shape) {
+            return NONE;
+        }
+        String tag = shapes.get(shape);
+        if (null != tag) {
+            return tag;
+        }
+        if (shapes.size() >= MAX_SHAPES) {
+            return OTHER;
+        }
+        return shapes.computeIfAbsent(shape, s -> Integer.toHexString(s.hashCode()));
+    }
+
+    /**
+     * 查询条件的参数值个数
+     */
+    public static int countParameters(List<DBQueryItem> andQuery, List<DBQueryItem> orQuery) {
+        return countParameters(andQuery) + countParameters(orQuery);
+    }
+
+    private static int countParameters(List<DBQueryItem> queryItems) {
+        if (CollectionUtils.isEmpty(queryItems)) {
+            return 0;
+        }
+        return queryItems.stream().filter(Objects::nonNull).mapToInt(q -> null == q.getValues() ? 0 : q.getValues().size()).sum();
+    }
+}
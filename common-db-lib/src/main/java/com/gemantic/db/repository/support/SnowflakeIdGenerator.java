@@ -0,0 +1,55 @@
+package com.gemantic.db.repository.support;
+
+/**
+ * 按时间递增的64位id:41位毫秒时间戳(自2020-01-01起)+10位节点号+12位序列号
+ */
+public class SnowflakeIdGenerator implements IdGenerator {
+
+    public static final long EPOCH = 1577836800000L;
+
+    private static final int WORKER_BITS = 10;
+
+    private static final int SEQUENCE_BITS = 12;
+
+    public static final long MAX_WORKER_ID = (1L << WORKER_BITS) - 1;
+
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private final long workerId;
+
+    private long lastTimestamp = -1L;
+
+    private long sequence = 0L;
+
+    public SnowflakeIdGenerator(long workerId) {
+        if (workerId < 0 || workerId > MAX_WORKER_ID) {
+            throw new IllegalArgumentException("workerId must be between 0 and " + MAX_WORKER_ID);
+        }
+        this.workerId = workerId;
+    }
+
+    @Override
+    public synchronized long nextId() {
+        long now = System.currentTimeMillis();
+        long timestamp = Math.max(now, lastTimestamp);
+        if (timestamp == lastTimestamp) {
+            sequence = (sequence + 1) & SEQUENCE_MASK;
+            if (sequence == 0) {
+                //时钟回拨期间(逻辑时间已领先墙上时钟)序列号用尽时直接推进逻辑时间,不在锁内空转等待时钟追上
+                timestamp = now < lastTimestamp ? lastTimestamp + 1 : waitNextMillis(lastTimestamp);
+            }
+        } else {
+            sequence = 0L;
+        }
+        lastTimestamp = timestamp;
+        return ((timestamp - EPOCH) << (WORKER_BITS + SEQUENCE_BITS)) | (workerId << SEQUENCE_BITS) | sequence;
+    }
+
+    private long waitNextMillis(long lastTimestamp) {
+        long timestamp = System.currentTimeMillis();
+        while (timestamp <= lastTimestamp) {
+            timestamp = System.currentTimeMillis();
+        }
+        return timestamp;
+    }
+}
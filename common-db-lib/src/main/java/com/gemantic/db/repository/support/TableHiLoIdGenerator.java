@@ -0,0 +1,98 @@
+package com.gemantic.db.repository.support;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * 基于序列表的号段分配,每次从数据库取poolSize个id在内存中分配,序列初始值取表中最大id+1,可用于已有数据的自增表。
+ * 号段不会推进表的AUTO_INCREMENT,而显式插入的id会推进AUTO_INCREMENT,混用自增插入会与号段产生重复id:
+ * 配置到仓库后saveAll/bulkInsert/bulkSave/bulkLoad由生成器分配id,而单个save及有集合关联的实体仍使用自增id,
+ * 同一张表两种来源并存时必须让区间不相交,如序列表next_val从远大于当前AUTO_INCREMENT的值开始,或只通过批量接口插入该表
+ * <pre>
+ * CREATE TABLE `db_id_sequence` (
+ *   `name` varchar(128) NOT NULL,
+ *   `next_val` bigint(20) NOT NULL,
+ *   PRIMARY KEY (`name`)
+ * ) ENGINE=InnoDB
+ * </pre>
+ */
+public class TableHiLoIdGenerator implements IdGenerator {
+
+    public static final String DEFAULT_SEQUENCE_TABLE = "db_id_sequence";
+
+    private final DataSource dataSource;
+
+    private final String sequenceTable;
+
+    private final String tableName;
+
+    private final int poolSize;
+
+    private long next = 0L;
+
+    private long max = 0L;
+
+    public TableHiLoIdGenerator(DataSource dataSource, String tableName, int poolSize) {
+        this(dataSource, DEFAULT_SEQUENCE_TABLE, tableName, poolSize);
+    }
+
+    public TableHiLoIdGenerator(DataSource dataSource, String sequenceTable, String tableName, int poolSize) {
+        if (poolSize <= 0) {
+            throw new IllegalArgumentException("poolSize must be positive");
+        }
+        this.dataSource = dataSource;
+        this.sequenceTable = sequenceTable;
+        this.tableName = tableName;
+        this.poolSize = poolSize;
+    }
+
+    @Override
+    public synchronized long nextId() {
+        if (next >= max) {
+            try {
+                max = allocate();
+            } catch (SQLException e) {
+                throw new IllegalStateException("allocate id from " + sequenceTable + " for " + tableName + " error", e);
+            }
+            next = max - poolSize;
+        }
+        return next++;
+    }
+
+    private int increase(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("UPDATE " + sequenceTable + " SET next_val = LAST_INSERT_ID(next_val + ?) WHERE name = ?")) {
+            statement.setLong(1, poolSize);
+            statement.setString(2, tableName);
+            return statement.executeUpdate();
+        }
+    }
+
+    /**
+     * 独立连接自动提交分配号段,返回号段上界(不含),连接归还连接池前恢复原来的提交方式
+     */
+    private long allocate() throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(true);
+            try {
+                if (increase(connection) == 0) {
+                    try (Statement statement = connection.createStatement()) {
+                        statement.executeUpdate("INSERT IGNORE INTO " + sequenceTable + " (name, next_val) SELECT '" + tableName.replace("'", "''")
+                                + "', COALESCE(MAX(id), 0) + 1 FROM " + tableName);
+                    }
+                    increase(connection);
+                }
+                try (Statement statement = connection.createStatement(); ResultSet resultSet = statement.executeQuery("SELECT LAST_INSERT_ID()")) {
+                    resultSet.next();
+                    return resultSet.getLong(1);
+                }
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.gemantic.db.repository.support;
+
+import com.gemantic.db.constant.DBOperation;
+import com.gemantic.db.support.DBQueryItem;
+import com.gemantic.db.support.DBSortItem;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.apache.commons.collections4.CollectionUtils;
+
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * 实体表的索引元数据(jdbc DatabaseMetaData.getIndexInfo,列名已转换为实体字段名),按最左前缀规则分析查询条件能否使用索引:
+ * 索引列依次有EQ/IN条件时继续匹配,遇到范围条件(GT/GTE/LT/LTE)时计入并停止,LIKE(%x%)/NEQ/NIN/NLIKE不能使用索引,MATCH使用FULLTEXT索引
+ */
+public class TableIndexes {
+
+    private static final Set<DBOperation> EQUALITY = EnumSet.of(DBOperation.EQ, DBOperation.IN);
+
+    private static final Set<DBOperation> RANGE = EnumSet.of(DBOperation.GT, DBOperation.GTE, DBOperation.LT, DBOperation.LTE);
+
+    /**
+     * 索引名 - 索引列对应的字段名(按列顺序)
+     */
+    private final Map<String, List<String>> indexes;
+
+    public TableIndexes(Map<String, List<String>> indexes) {
+        this.indexes = indexes;
+    }
+
+    /**
+     * 读取表的索引,columnFields为小写列名到字段名的映射,索引中第一个没有对应字段的列及之后的列不参与分析
+     */
+    public static TableIndexes load(DatabaseMetaData metaData, String catalog, String table, Map<String, String> columnFields) throws SQLException {
+        Map<String, TreeMap<Short, String>> columns = new LinkedHashMap<>();
+        //元数据中表名的大小写与数据库设置有关,依次尝试原名/大写/小写
+        for (String name : Sets.newLinkedHashSet(Lists.newArrayList(table, table.toUpperCase(), table.toLowerCase()))) {
+            try (ResultSet resultSet = metaData.getIndexInfo(catalog, null, name, false, true)) {
+                while (resultSet.next()) {
+                    String indexName = resultSet.getString("INDEX_NAME");
+                    String column = resultSet.getString("COLUMN_NAME");
+                    if (null == indexName || null == column || resultSet.getShort("TYPE") == DatabaseMetaData.tableIndexStatistic) {
+                        continue;
+                    }
+                    columns.computeIfAbsent(indexName, k -> new TreeMap<>()).put(resultSet.getShort("ORDINAL_POSITION"), column);
+                }
+            }
+            if (!columns.isEmpty()) {
+                break;
+            }
+        }
+        Map<String, List<String>> indexes = new LinkedHashMap<>();
+        for (Map.Entry<String, TreeMap<Short, String>> entry : columns.entrySet()) {
+            List<String> fields = Lists.newArrayList();
+            for (String column : entry.getValue().values()) {
+                String field = columnFields.get(column.toLowerCase());
+                if (null == field) {
+                    break;
+                }
+                fields.add(field);
+            }
+            if (!fields.isEmpty()) {
+                indexes.put(entry.getKey(), fields);
+            }
+        }
+        return new TableIndexes(indexes);
+    }
+
+    public Map<String, List<String>> getIndexes() {
+        return Collections.unmodifiableMap(indexes);
+    }
+
+    /**
+     * 选出可使用前缀最长的索引并判断使用情况,返回的and条件把该索引前缀上的条件按列顺序排在前面
+     */
+    public IndexPlan plan(List<DBQueryItem> andQuery, List<DBQueryItem> orQuery, List<DBSortItem> sorts) {
+        List<DBQueryItem> andItems = effective(andQuery);
+        List<DBQueryItem> orItems = effective(orQuery);
+        String index = null;
+        int prefix = 0;
+        for (Map.Entry<String, List<String>> entry : indexes.entrySet()) {
+            int length = prefixLength(entry.getValue(), andItems);
+            if (length > prefix) {
+                index = entry.getKey();
+                prefix = length;
+            }
+        }
+        List<String> prefixFields = null == index ? Lists.newArrayList() : indexes.get(index).subList(0, prefix);
+        boolean match = andItems.stream().anyMatch(q -> DBOperation.MATCH.equals(q.getOperation()));
+        IndexCoverage coverage;
+        if (prefix == 0 && !match) {
+            //and条件不能使用索引时,or条件都在索引首列上可以使用index merge
+            coverage = !orItems.isEmpty() && orItems.stream().allMatch(this::isLeading) ? IndexCoverage.PARTIAL : IndexCoverage.FULL_SCAN;
+        } else {
+            boolean covered = orItems.isEmpty() && andItems.stream().allMatch(q -> DBOperation.MATCH.equals(q.getOperation()) || prefixFields.contains(q.getField()));
+            if (covered && CollectionUtils.isNotEmpty(sorts)) {
+                List<String> indexFields = null == index ? Lists.newArrayList() : indexes.get(index);
+                covered = sorts.stream().allMatch(s -> null != s && indexFields.contains(s.getField()));
+            }
+            coverage = covered ? IndexCoverage.COVERED : IndexCoverage.PARTIAL;
+        }
+        return new IndexPlan(coverage, index, reorder(andQuery, prefixFields));
+    }
+
+    private int prefixLength(List<String> indexFields, List<DBQueryItem> andItems) {
+        int length = 0;
+        for (String field : indexFields) {
+            Set<DBOperation> operations = andItems.stream().filter(q -> field.equals(q.getField())).map(DBQueryItem::getOperation).collect(Collectors.toSet());
+            if (operations.stream().anyMatch(EQUALITY::contains)) {
+                length++;
+                continue;
+            }
+            if (operations.stream().anyMatch(RANGE::contains)) {
+                length++;
+            }
+            break;
+        }
+        return length;
+    }
+
+    private boolean isLeading(DBQueryItem queryItem) {
+        if (DBOperation.MATCH.equals(queryItem.getOperation())) {
+            return true;
+        }
+        if (!EQUALITY.contains(queryItem.getOperation()) && !RANGE.contains(queryItem.getOperation())) {
+            return false;
+        }
+        return indexes.values().stream().anyMatch(fields -> fields.get(0).equals(queryItem.getField()));
+    }
+
+    private List<DBQueryItem> reorder(List<DBQueryItem> andQuery, List<String> prefixFields) {
+        if (CollectionUtils.isEmpty(andQuery) || prefixFields.isEmpty()) {
+            return andQuery;
+        }
+        List<DBQueryItem> result = Lists.newArrayListWithCapacity(andQuery.size());
+        for (String field : prefixFields) {
+            andQuery.stream().filter(q -> null != q && field.equals(q.getField())).forEach(result::add);
+        }
+        andQuery.stream().filter(q -> null == q || !prefixFields.contains(q.getField())).forEach(result::add);
+        return result;
+    }
+
+    /**
+     * 有取值的条件(没有取值的条件不生成sql)
+     */
+    private static List<DBQueryItem> effective(List<DBQueryItem> queryItems) {
+        if (CollectionUtils.isEmpty(queryItems)) {
+            return Lists.newArrayList();
+        }
+        return queryItems.stream().filter(q -> null != q && null != q.getField() && CollectionUtils.isNotEmpty(q.getValues())).collect(Collectors.toList());
+    }
+}
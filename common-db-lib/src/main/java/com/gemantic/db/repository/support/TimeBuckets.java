@@ -0,0 +1,244 @@
+package com.gemantic.db.repository.support;
+
+import com.gemantic.db.constant.DBAggregateFunction;
+import com.gemantic.db.constant.DBTimeInterval;
+import com.gemantic.db.support.DBAggregateItem;
+import com.gemantic.db.support.DBHistogramBucket;
+import com.gemantic.db.util.DBUtil;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 时间分桶:数据库中按 floor((时间 + 该时间的时区偏移) / 间隔毫秒数) 即当地时间分组,MONTH先按天分组再在内存中按自然月合并(AVG按和与个数合并)。
+ * 时区有夏令时切换时按getOffsets分段,每段使用各自的偏移,桶边界始终是当地时间的整点/零点;
+ * 夏令时结束时重复的当地时间合并到同一个桶;build输出从起始桶到结束桶的连续桶,没有数据的桶行数为0,夏令时跳过的当地时间不输出桶
+ */
+public class TimeBuckets {
+
+    public static final int MAX_BUCKETS = 100000;
+
+    /**
+     * 时区偏移分段数上限
+     */
+    public static final int MAX_OFFSETS = 1000;
+
+    private final DBTimeInterval interval;
+
+    private final ZoneId zone;
+
+    private final long width;
+
+    private final List<DBAggregateItem> aggregates;
+
+    private final TreeMap<Long, Bucket> buckets = new TreeMap<>();
+
+    public TimeBuckets(DBTimeInterval interval, ZoneId zone, List<DBAggregateItem> aggregates) {
+        this.interval = interval;
+        this.zone = zone;
+        this.width = getWidth(interval);
+        this.aggregates = aggregates;
+    }
+
+    private static long getWidth(DBTimeInterval interval) {
+        switch (interval) {
+            case MINUTE:
+                return TimeUnit.MINUTES.toMillis(1);
+            case HOUR:
+                return TimeUnit.HOURS.toMillis(1);
+            default:
+                return TimeUnit.DAYS.toMillis(1);
+        }
+    }
+
+    /**
+     * 时区是否只有一个固定偏移,是时getOffsets不需要时间范围
+     */
+    public boolean isFixedOffset() {
+        return zone.getRules().isFixedOffset();
+    }
+
+    /**
+     * [startAt, endAt]内的时区偏移分段,key为该段的起始时间(第一段为Long.MIN_VALUE),value为数据库分组前加到时间上的偏移毫秒数,
+     * 时间小于下一段起始时间的行使用该段偏移
+     */
+    public NavigableMap<Long, Long> getOffsets(long startAt, long endAt) {
+        ZoneRules rules = zone.getRules();
+        NavigableMap<Long, Long> offsets = new TreeMap<>();
+        offsets.put(Long.MIN_VALUE, getOffsetMillis(rules.getOffset(Instant.ofEpochMilli(startAt))));
+        ZoneOffsetTransition transition = rules.nextTransition(Instant.ofEpochMilli(startAt));
+        while (null != transition && transition.getInstant().toEpochMilli() <= endAt) {
+            if (offsets.size() >= MAX_OFFSETS) {
+                throw new IllegalArgumentException("histogram zone offsets exceed " + MAX_OFFSETS);
+            }
+            offsets.put(transition.getInstant().toEpochMilli(), getOffsetMillis(transition.getOffsetAfter()));
+            transition = rules.nextTransition(transition.getInstant());
+        }
+        return offsets;
+    }
+
+    private static long getOffsetMillis(ZoneOffset offset) {
+        return TimeUnit.SECONDS.toMillis(offset.getTotalSeconds());
+    }
+
+    /**
+     * 数据库分组的间隔毫秒数,MONTH为一天
+     */
+    public long getWidth() {
+        return width;
+    }
+
+    /**
+     * 是否需要在内存中合并(MONTH),合并时AVG需要查询和与个数
+     */
+    public boolean isRollup() {
+        return DBTimeInterval.MONTH.equals(interval);
+    }
+
+    /**
+     * 加入数据库返回的一个分组,index为floor((时间 + 该时间的偏移) / width),values按aggregates顺序,
+     * 合并时AVG的values为和,avgCounts为个数(其他位置忽略),不合并时avgCounts为null
+     */
+    public void add(long index, long count, Object[] values, long[] avgCounts) {
+        Bucket bucket = buckets.computeIfAbsent(getKey(index), k -> new Bucket(aggregates.size()));
+        bucket.count += count;
+        for (int i = 0; i < aggregates.size(); i++) {
+            DBAggregateFunction function = getFunction(aggregates.get(i));
+            bucket.values[i] = merge(function, bucket.values[i], values[i]);
+            if (null != avgCounts) {
+                bucket.avgCounts[i] += avgCounts[i];
+            }
+        }
+    }
+
+    /**
+     * 输出连续桶,startAt/endAt为空时取有数据的第一个/最后一个桶
+     */
+    public List<DBHistogramBucket> build(Long startAt, Long endAt) {
+        List<DBHistogramBucket> result = Lists.newArrayList();
+        if (buckets.isEmpty() && (null == startAt || null == endAt)) {
+            return result;
+        }
+        long first = null != startAt ? getKeyAt(startAt) : buckets.firstKey();
+        long last = null != endAt ? getKeyAt(endAt) : buckets.lastKey();
+        if (last - first + 1 > MAX_BUCKETS) {
+            throw new IllegalArgumentException("histogram buckets " + (last - first + 1) + " exceed " + MAX_BUCKETS);
+        }
+        for (long key = first; key <= last; key++) {
+            Bucket bucket = buckets.get(key);
+            long bucketStartAt = getStartAt(key);
+            long bucketEndAt = getStartAt(key + 1);
+            if (null == bucket && bucketStartAt >= bucketEndAt) {
+                //夏令时跳过的当地时间
+                continue;
+            }
+            Map<String, Object> values = Maps.newLinkedHashMap();
+            for (int i = 0; i < aggregates.size(); i++) {
+                DBAggregateItem aggregateItem = aggregates.get(i);
+                DBAggregateFunction function = getFunction(aggregateItem);
+                Object value = null == bucket ? null : bucket.values[i];
+                if (null != bucket && isRollup() && DBAggregateFunction.AVG.equals(function)) {
+                    value = null == value || bucket.avgCounts[i] == 0L ? null : ((Number) value).doubleValue() / bucket.avgCounts[i];
+                }
+                if (null == value && (DBAggregateFunction.COUNT.equals(function) || DBAggregateFunction.COUNT_DISTINCT.equals(function))) {
+                    value = 0L;
+                }
+                values.put(DBUtil.getAggregateAlias(aggregateItem), value);
+            }
+            result.add(new DBHistogramBucket(bucketStartAt, bucketEndAt, null == bucket ? 0L : bucket.count, values));
+        }
+        return result;
+    }
+
+    private long getKey(long index) {
+        if (!isRollup()) {
+            return index;
+        }
+        return getMonthKey(YearMonth.from(LocalDate.ofEpochDay(index)));
+    }
+
+    private long getKeyAt(long time) {
+        if (!isRollup()) {
+            return Math.floorDiv(time + getOffsetMillis(zone.getRules().getOffset(Instant.ofEpochMilli(time))), width);
+        }
+        return getMonthKey(YearMonth.from(Instant.ofEpochMilli(time).atZone(zone)));
+    }
+
+    private static long getMonthKey(YearMonth month) {
+        return month.getYear() * 12L + month.getMonthValue() - 1;
+    }
+
+    private long getStartAt(long key) {
+        if (!isRollup()) {
+            long local = key * width;
+            LocalDateTime localStart = LocalDateTime.ofEpochSecond(Math.floorDiv(local, 1000L), (int) Math.floorMod(local, 1000L) * 1000000, ZoneOffset.UTC);
+            ZoneOffsetTransition transition = zone.getRules().getTransition(localStart);
+            if (null != transition && transition.isGap()) {
+                //夏令时跳过的当地时间从切换时刻开始
+                return transition.getInstant().toEpochMilli();
+            }
+            return localStart.atZone(zone).toInstant().toEpochMilli();
+        }
+        YearMonth month = YearMonth.of((int) Math.floorDiv(key, 12L), (int) Math.floorMod(key, 12L) + 1);
+        return month.atDay(1).atStartOfDay(zone).toInstant().toEpochMilli();
+    }
+
+    private static DBAggregateFunction getFunction(DBAggregateItem aggregateItem) {
+        return null == aggregateItem.getFunction() ? DBAggregateFunction.COUNT : aggregateItem.getFunction();
+    }
+
+    private static Object merge(DBAggregateFunction function, Object a, Object b) {
+        if (null == a) {
+            return b;
+        }
+        if (null == b) {
+            return a;
+        }
+        switch (function) {
+            case MIN:
+                return ((Comparable) a).compareTo(b) <= 0 ? a : b;
+            case MAX:
+                return ((Comparable) a).compareTo(b) >= 0 ? a : b;
+            default:
+                return add((Number) a, (Number) b);
+        }
+    }
+
+    private static Number add(Number a, Number b) {
+        if (a instanceof BigDecimal || b instanceof BigDecimal) {
+            return new BigDecimal(a.toString()).add(new BigDecimal(b.toString()));
+        }
+        if (a instanceof Double || a instanceof Float || b instanceof Double || b instanceof Float) {
+            return a.doubleValue() + b.doubleValue();
+        }
+        return a.longValue() + b.longValue();
+    }
+
+    private static class Bucket {
+
+        private long count;
+
+        private final Object[] values;
+
+        private final long[] avgCounts;
+
+        private Bucket(int size) {
+            this.values = new Object[size];
+            this.avgCounts = new long[size];
+        }
+    }
+}
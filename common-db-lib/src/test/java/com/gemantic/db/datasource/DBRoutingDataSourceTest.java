@@ -0,0 +1,121 @@
+package com.gemantic.db.datasource;
+
+import com.gemantic.db.repository.impl.BaseRepositoryImpl;
+import com.gemantic.db.support.DBQuery;
+import com.google.common.collect.Lists;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+/**
+ * 两个H2库分别作为主库和从库,表中写入不同的数据区分实际访问的库
+ */
+public class DBRoutingDataSourceTest {
+
+    private static JdbcDataSource primary;
+
+    private static JdbcDataSource replica;
+
+    private static EntityManagerFactory entityManagerFactory;
+
+    private static JpaTransactionManager transactionManager;
+
+    private static BaseRepositoryImpl<RoutingItem, Long> repository;
+
+    @BeforeClass
+    public static void setUp() {
+        primary = h2("routing_primary");
+        replica = h2("routing_replica");
+        DBRoutingDataSource routing = new DBRoutingDataSource(primary, Lists.newArrayList(replica));
+
+        LocalContainerEntityManagerFactoryBean factoryBean = new LocalContainerEntityManagerFactoryBean();
+        factoryBean.setDataSource(routing.toLazyProxy());
+        factoryBean.setPackagesToScan(RoutingItem.class.getPackage().getName());
+        factoryBean.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        Properties properties = new Properties();
+        properties.setProperty("hibernate.dialect", "org.hibernate.dialect.H2Dialect");
+        factoryBean.setJpaProperties(properties);
+        factoryBean.afterPropertiesSet();
+        entityManagerFactory = factoryBean.getObject();
+        transactionManager = new JpaTransactionManager(entityManagerFactory);
+
+        repository = new BaseRepositoryImpl<>(RoutingItem.class, SharedEntityManagerCreator.createSharedEntityManager(entityManagerFactory));
+        repository.getConfig().setReadFromReplica(Boolean.TRUE);
+    }
+
+    @AfterClass
+    public static void tearDown() throws Exception {
+        entityManagerFactory.close();
+        execute(primary, "DROP ALL OBJECTS");
+        execute(replica, "DROP ALL OBJECTS");
+    }
+
+    @Before
+    public void resetTables() throws Exception {
+        for (DataSource dataSource : Lists.newArrayList(primary, replica)) {
+            execute(dataSource, "DROP TABLE IF EXISTS routing_item");
+            execute(dataSource, "CREATE TABLE routing_item (id BIGINT AUTO_INCREMENT PRIMARY KEY, createAt BIGINT, updateAt BIGINT, name VARCHAR(64))");
+        }
+        execute(primary, "INSERT INTO routing_item (name) VALUES ('primary')");
+        execute(replica, "INSERT INTO routing_item (name) VALUES ('replica')");
+    }
+
+    @Test
+    public void readOnlyFindByQueryUsesReplica() {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setReadOnly(true);
+        List<String> names = template.execute(status -> findNames());
+        Assert.assertEquals(Lists.newArrayList("replica"), names);
+    }
+
+    @Test
+    public void readAfterWriteInReadWriteTransactionUsesPrimary() {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        List<String> names = template.execute(status -> {
+            RoutingItem item = new RoutingItem();
+            item.setName("written");
+            repository.save(item);
+            return findNames();
+        });
+        Assert.assertEquals(Lists.newArrayList("primary", "written"), names);
+    }
+
+    private static List<String> findNames() {
+        DBQuery<Long> query = new DBQuery<>();
+        query.setPage(false);
+        try {
+            return repository.findByQuery(query).getList().stream().map(RoutingItem::getName).sorted().collect(Collectors.toList());
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static JdbcDataSource h2(String name) {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + name + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        dataSource.setUser("sa");
+        return dataSource;
+    }
+
+    private static void execute(DataSource dataSource, String sql) throws Exception {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.gemantic.db.datasource;
+
+import com.gemantic.db.model.BaseModel;
+
+import javax.persistence.Entity;
+import javax.persistence.Table;
+
+@Entity
+@Table(name = "routing_item")
+public class RoutingItem extends BaseModel {
+
+    private String name;
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+}
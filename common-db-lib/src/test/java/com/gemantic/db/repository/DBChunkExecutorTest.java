@@ -0,0 +1,174 @@
+package com.gemantic.db.repository;
+
+import com.gemantic.db.constant.DBJobStatus;
+import com.gemantic.db.support.DBChunkProgress;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+/**
+ * 分批执行的进度统计与限速,仓库用内存中的编号集合代替
+ */
+public class DBChunkExecutorTest {
+
+    /**
+     * 内存仓库:findIds按升序取大于afterId的编号,deleteByIds删除仍存在的编号,updateByIds记录更新的编号
+     */
+    private static class MemoryRepository {
+
+        private final NavigableSet<Long> ids = new ConcurrentSkipListSet<>();
+
+        private final List<List<Long>> chunks = new CopyOnWriteArrayList<>();
+
+        private final List<Map<String, Object>> updates = new CopyOnWriteArrayList<>();
+
+        private volatile RuntimeException error;
+
+        MemoryRepository(long rows) {
+            LongStream.rangeClosed(1, rows).forEach(ids::add);
+        }
+
+        @SuppressWarnings("unchecked")
+        BaseRepository<Object, Long> proxy() {
+            return (BaseRepository<Object, Long>) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{BaseRepository.class}, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "findIds":
+                        if (null != error) {
+                            throw error;
+                        }
+                        NavigableSet<Long> tail = null == args[2] ? ids : ids.tailSet((Long) args[2], false);
+                        return tail.stream().limit((Integer) args[3]).collect(Collectors.toList());
+                    case "deleteByIds":
+                        List<Long> deleted = (List<Long>) args[2];
+                        chunks.add(deleted);
+                        return (int) deleted.stream().filter(ids::remove).count();
+                    case "updateByIds":
+                        List<Long> updated = (List<Long>) args[2];
+                        chunks.add(updated);
+                        updates.add((Map<String, Object>) args[3]);
+                        return updated.size();
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            });
+        }
+    }
+
+    @Test
+    public void deleteCountsChunksAndRows() {
+        MemoryRepository repository = new MemoryRepository(25);
+        DBChunkProgress progress = new DBChunkExecutor(repository.proxy(), 10, null, null).delete(null, null, false);
+        Assert.assertEquals(DBJobStatus.FINISHED, progress.getStatus());
+        Assert.assertEquals(Integer.valueOf(10), progress.getChunkSize());
+        Assert.assertEquals(Integer.valueOf(3), progress.getChunks());
+        Assert.assertEquals(Long.valueOf(25L), progress.getMatched());
+        Assert.assertEquals(Long.valueOf(25L), progress.getAffected());
+        Assert.assertEquals(25L, progress.getLastId());
+        Assert.assertNotNull(progress.getEndAt());
+        Assert.assertEquals(Lists.newArrayList(10, 10, 5), repository.chunks.stream().map(List::size).collect(Collectors.toList()));
+        Assert.assertTrue(repository.ids.isEmpty());
+        Assert.assertEquals(progress, DBChunkExecutor.getProgress(progress.getJobId()));
+    }
+
+    @Test
+    public void fullLastChunkEndsOnEmptyFetch() {
+        MemoryRepository repository = new MemoryRepository(20);
+        DBChunkProgress progress = new DBChunkExecutor(repository.proxy(), 10, null, null).delete(null, null, false);
+        Assert.assertEquals(DBJobStatus.FINISHED, progress.getStatus());
+        Assert.assertEquals(Integer.valueOf(2), progress.getChunks());
+        Assert.assertEquals(Long.valueOf(20L), progress.getMatched());
+    }
+
+    @Test
+    public void affectedOnlyCountsRowsStillMatching() {
+        MemoryRepository repository = new MemoryRepository(10);
+        BaseRepository<Object, Long> proxy = repository.proxy();
+        BaseRepository<Object, Long> racing = (BaseRepository<Object, Long>) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{BaseRepository.class}, (p, method, args) -> {
+            Object result = method.invoke(proxy, args);
+            if ("findIds".equals(method.getName())) {
+                //编号取出后、删除前被其他事务删除了偶数编号
+                repository.ids.removeIf(id -> id % 2 == 0);
+            }
+            return result;
+        });
+        DBChunkProgress progress = new DBChunkExecutor(racing, 4, null, null).delete(null, null, false);
+        Assert.assertEquals(DBJobStatus.FINISHED, progress.getStatus());
+        //第一批取出1-4只删除了1,3;第二批只剩5,7,9
+        Assert.assertEquals(Integer.valueOf(2), progress.getChunks());
+        Assert.assertEquals(Long.valueOf(7L), progress.getMatched());
+        Assert.assertEquals(Long.valueOf(5L), progress.getAffected());
+    }
+
+    @Test
+    public void updatePassesValuesToEachChunk() {
+        MemoryRepository repository = new MemoryRepository(7);
+        Map<String, Object> values = ImmutableMap.of("score", 1);
+        DBChunkProgress progress = new DBChunkExecutor(repository.proxy(), 3, null, null).update(null, null, values, false);
+        Assert.assertEquals("UPDATE", progress.getOperation());
+        Assert.assertEquals(Integer.valueOf(3), progress.getChunks());
+        Assert.assertEquals(Long.valueOf(7L), progress.getAffected());
+        Assert.assertEquals(Lists.newArrayList(values, values, values), repository.updates);
+        Assert.assertEquals(7, repository.ids.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void updateRejectsEmptyValues() {
+        new DBChunkExecutor(new MemoryRepository(1).proxy(), 10, null, null).update(null, null, ImmutableMap.of(), false);
+    }
+
+    @Test
+    public void failureIsRecordedInProgress() {
+        MemoryRepository repository = new MemoryRepository(5);
+        repository.error = new IllegalStateException("boom");
+        DBChunkProgress progress = new DBChunkExecutor(repository.proxy(), 10, null, null).delete(null, null, false);
+        Assert.assertEquals(DBJobStatus.FAILED, progress.getStatus());
+        Assert.assertEquals("boom", progress.getError());
+        Assert.assertEquals(Integer.valueOf(0), progress.getChunks());
+    }
+
+    @Test
+    public void asyncJobReportsProgressById() throws Exception {
+        MemoryRepository repository = new MemoryRepository(50);
+        DBChunkProgress started = new DBChunkExecutor(repository.proxy(), 10, null, null).delete(null, null, true);
+        Assert.assertEquals(DBJobStatus.RUNNING, started.getStatus());
+        DBChunkProgress progress = DBChunkExecutor.getProgress(started.getJobId());
+        for (int i = 0; i < 500 && DBJobStatus.RUNNING.equals(progress.getStatus()); i++) {
+            Thread.sleep(10L);
+            progress = DBChunkExecutor.getProgress(started.getJobId());
+        }
+        Assert.assertEquals(DBJobStatus.FINISHED, progress.getStatus());
+        Assert.assertEquals(Long.valueOf(50L), progress.getAffected());
+    }
+
+    @Test
+    public void throttleUsesSleepOrRowRate() {
+        Assert.assertEquals(0L, new DBChunkExecutor(null, 10, null, null).throttleMillis(1000L, 0L));
+        Assert.assertEquals(50L, new DBChunkExecutor(null, 10, 50L, null).throttleMillis(1000L, 0L));
+        //每秒100行,处理200行应耗时2秒,已用0.5秒时再休眠1.5秒
+        DBChunkExecutor limited = new DBChunkExecutor(null, 10, 50L, 100L);
+        Assert.assertEquals(1500L, limited.throttleMillis(200L, 500L));
+        //已经慢于限速时只保留批间休眠
+        Assert.assertEquals(50L, limited.throttleMillis(200L, 3000L));
+        Assert.assertEquals(0L, new DBChunkExecutor(null, 10, null, 100L).throttleMillis(200L, 3000L));
+    }
+
+    @Test
+    public void rowRateSlowsDownRun() {
+        MemoryRepository repository = new MemoryRepository(300);
+        long start = System.currentTimeMillis();
+        DBChunkProgress progress = new DBChunkExecutor(repository.proxy(), 100, null, 1000L).delete(null, null, false);
+        //三个满批之后各按速率补足,300行至少耗时约300毫秒
+        Assert.assertTrue(System.currentTimeMillis() - start >= 250L);
+        Assert.assertEquals(Long.valueOf(300L), progress.getAffected());
+    }
+}
@@ -0,0 +1,123 @@
+package com.gemantic.db.repository.impl;
+
+import com.gemantic.db.repository.support.InsertPlan;
+import com.google.common.collect.Lists;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * bulkInsert按批大小与参数上限切分,多行VALUES与jdbc batch两种写法
+ */
+public class BulkInsertTest {
+
+    private static final Pattern COLUMNS = Pattern.compile("\\(([^)]*)\\) values", Pattern.CASE_INSENSITIVE);
+
+    private static H2Database database;
+
+    private EntityManager em;
+
+    private BaseRepositoryImpl<BulkItem, Long> repository;
+
+    @BeforeClass
+    public static void setUp() {
+        database = new H2Database("bulk_insert_test");
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        database.close();
+    }
+
+    @Before
+    public void createRepository() throws Exception {
+        em = database.createEntityManager();
+        database.inTransaction(em, () -> em.createNativeQuery("TRUNCATE TABLE bulk_item").executeUpdate());
+        repository = new BaseRepositoryImpl<>(BulkItem.class, em);
+        database.reset();
+    }
+
+    @After
+    public void closeEntityManager() {
+        em.close();
+    }
+
+    private static List<BulkItem> items(int rows) {
+        List<BulkItem> items = Lists.newArrayListWithCapacity(rows);
+        for (int i = 0; i < rows; i++) {
+            items.add(new BulkItem("item-" + i, i));
+        }
+        return items;
+    }
+
+    private static int rowsOf(String sql, int columns) {
+        return (sql.length() - sql.replace("?", "").length()) / columns;
+    }
+
+    private static int columnsOf(String sql) {
+        Matcher matcher = COLUMNS.matcher(sql);
+        Assert.assertTrue(sql, matcher.find());
+        return matcher.group(1).split(",").length;
+    }
+
+    private long countRows() {
+        return ((Number) em.createNativeQuery("SELECT COUNT(*) FROM bulk_item").getSingleResult()).longValue();
+    }
+
+    @Test
+    public void multiRowChunksByBatchSize() throws Exception {
+        repository.getConfig().setBulkMultiRow(Boolean.TRUE);
+        repository.getConfig().setBulkBatchSize(10);
+        List<Integer> counts = database.inTransaction(em, () -> repository.bulkInsertCounts(items(25)));
+        Assert.assertEquals(Lists.newArrayList(10, 10, 5), counts);
+
+        //同样行数的批复用同一条语句,只有最后不足一批时重新预编译
+        List<String> statements = database.getStatements("INSERT");
+        Assert.assertEquals(2, statements.size());
+        int columns = columnsOf(statements.get(0));
+        Assert.assertEquals(10, rowsOf(statements.get(0), columns));
+        Assert.assertEquals(5, rowsOf(statements.get(1), columns));
+        Assert.assertTrue(database.getBatchSizes().isEmpty());
+        Assert.assertEquals(25L, countRows());
+    }
+
+    @Test
+    public void multiRowCapsRowsByParameterLimit() throws Exception {
+        repository.getConfig().setBulkMultiRow(Boolean.TRUE);
+        repository.getConfig().setBulkBatchSize(100000);
+        int rows = 20000;
+        List<Integer> counts = database.inTransaction(em, () -> repository.bulkInsertCounts(items(rows)));
+
+        List<String> statements = database.getStatements("INSERT");
+        int columns = columnsOf(statements.get(0));
+        int maxRows = InsertPlan.MAX_PARAMETERS / columns;
+        Assert.assertTrue(maxRows < rows);
+        Assert.assertEquals(Lists.newArrayList(maxRows, rows - maxRows), counts);
+        for (String sql : statements) {
+            Assert.assertTrue(rowsOf(sql, columns) * columns <= InsertPlan.MAX_PARAMETERS);
+        }
+        Assert.assertEquals((long) rows, countRows());
+    }
+
+    @Test
+    public void jdbcBatchWithoutMultiRow() throws Exception {
+        repository.getConfig().setBulkMultiRow(Boolean.FALSE);
+        repository.getConfig().setBulkBatchSize(10);
+        List<Integer> counts = database.inTransaction(em, () -> repository.bulkInsertCounts(items(25)));
+        Assert.assertEquals(Lists.newArrayList(10, 10, 5), counts);
+
+        List<String> statements = database.getStatements("INSERT");
+        Assert.assertEquals(1, statements.size());
+        Assert.assertEquals(1, rowsOf(statements.get(0), columnsOf(statements.get(0))));
+        Assert.assertEquals(Lists.newArrayList(10, 10, 5), database.getBatchSizes());
+        Assert.assertEquals(25L, countRows());
+    }
+}
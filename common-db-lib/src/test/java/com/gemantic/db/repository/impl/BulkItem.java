@@ -0,0 +1,39 @@
+package com.gemantic.db.repository.impl;
+
+import com.gemantic.db.model.BaseModel;
+
+import javax.persistence.Entity;
+import javax.persistence.Table;
+
+@Entity
+@Table(name = "bulk_item")
+public class BulkItem extends BaseModel {
+
+    private String name;
+
+    private Integer score;
+
+    public BulkItem() {
+    }
+
+    public BulkItem(String name, Integer score) {
+        this.name = name;
+        this.score = score;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public Integer getScore() {
+        return score;
+    }
+
+    public void setScore(Integer score) {
+        this.score = score;
+    }
+}
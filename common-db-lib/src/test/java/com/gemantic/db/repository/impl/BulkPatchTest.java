@@ -0,0 +1,135 @@
+package com.gemantic.db.repository.impl;
+
+import com.gemantic.db.support.DBPatch;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * bulkPatch按字段集合分组,每组一条UPDATE语句按批大小执行
+ */
+public class BulkPatchTest {
+
+    private static H2Database database;
+
+    private EntityManager em;
+
+    private BaseRepositoryImpl<BulkItem, Long> repository;
+
+    private List<Long> ids;
+
+    @BeforeClass
+    public static void setUp() {
+        database = new H2Database("bulk_patch_test");
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        database.close();
+    }
+
+    @Before
+    public void createRepository() throws Exception {
+        em = database.createEntityManager();
+        database.inTransaction(em, () -> em.createNativeQuery("TRUNCATE TABLE bulk_item").executeUpdate());
+        repository = new BaseRepositoryImpl<>(BulkItem.class, em);
+        List<BulkItem> items = Lists.newArrayList();
+        for (int i = 0; i < 6; i++) {
+            BulkItem item = new BulkItem("item-" + i, i);
+            item.setUpdateAt(0L);
+            items.add(item);
+        }
+        ids = Lists.newArrayList();
+        database.inTransaction(em, () -> repository.saveAll(items)).forEach(item -> ids.add(item.getId()));
+        database.reset();
+    }
+
+    @After
+    public void closeEntityManager() {
+        em.close();
+    }
+
+    private static DBPatch<Long> patch(Long id, Map<String, Object> fields) {
+        return new DBPatch<>(id, fields);
+    }
+
+    private BulkItem load(int index) {
+        return em.find(BulkItem.class, ids.get(index));
+    }
+
+    @Test
+    public void groupsPatchesByFieldSet() throws Exception {
+        long before = System.currentTimeMillis();
+        List<DBPatch<Long>> patches = Lists.newArrayList(
+                patch(ids.get(0), ImmutableMap.of("name", "a")),
+                patch(ids.get(1), ImmutableMap.of("score", 10)),
+                patch(ids.get(2), ImmutableMap.of("name", "c")),
+                patch(ids.get(3), ImmutableMap.of("score", 30, "name", "d")),
+                patch(ids.get(4), ImmutableMap.of("name", "e", "score", 40)),
+                //id字段不参与分组与更新
+                patch(ids.get(5), ImmutableMap.of("id", -1L, "name", "f")),
+                null,
+                patch(null, ImmutableMap.of("name", "x")),
+                patch(ids.get(0), ImmutableMap.of()));
+        int count = database.inTransaction(em, () -> repository.bulkPatch(patches));
+        Assert.assertEquals(6, count);
+
+        //按首次出现的顺序:name, score, name+score
+        List<String> statements = database.getStatements("UPDATE");
+        Assert.assertEquals(3, statements.size());
+        Assert.assertFalse(statements.get(0).contains("score"));
+        Assert.assertFalse(statements.get(1).contains("name"));
+        Assert.assertTrue(statements.get(2).contains("name") && statements.get(2).contains("score"));
+        for (String sql : statements) {
+            Assert.assertTrue(sql, sql.contains("updateAt=?"));
+        }
+        Assert.assertEquals(Lists.newArrayList(3, 1, 2), database.getBatchSizes());
+
+        Assert.assertEquals("a", load(0).getName());
+        Assert.assertEquals(Integer.valueOf(0), load(0).getScore());
+        Assert.assertEquals("item-1", load(1).getName());
+        Assert.assertEquals(Integer.valueOf(10), load(1).getScore());
+        Assert.assertEquals("d", load(3).getName());
+        Assert.assertEquals(Integer.valueOf(40), load(4).getScore());
+        Assert.assertEquals("f", load(5).getName());
+        for (int i = 0; i < ids.size(); i++) {
+            Assert.assertTrue(load(i).getUpdateAt() >= before);
+        }
+    }
+
+    @Test
+    public void splitsGroupByBatchSize() throws Exception {
+        repository.getConfig().setBulkBatchSize(2);
+        List<DBPatch<Long>> patches = Lists.newArrayList();
+        for (int i = 0; i < 5; i++) {
+            patches.add(patch(ids.get(i), ImmutableMap.of("score", 100 + i)));
+        }
+        int count = database.inTransaction(em, () -> repository.bulkPatch(patches));
+        Assert.assertEquals(5, count);
+        Assert.assertEquals(1, database.getStatements("UPDATE").size());
+        Assert.assertEquals(Lists.newArrayList(2, 2, 1), database.getBatchSizes());
+        Assert.assertEquals(Integer.valueOf(104), load(4).getScore());
+        Assert.assertEquals(Long.valueOf(0L), load(5).getUpdateAt());
+    }
+
+    @Test
+    public void keepsExplicitUpdateAt() throws Exception {
+        int count = database.inTransaction(em, () -> repository.bulkPatch(Lists.newArrayList(
+                patch(ids.get(0), ImmutableMap.of("name", "a", "updateAt", 42L)),
+                patch(ids.get(1), ImmutableMap.of("name", "b")))));
+        Assert.assertEquals(2, count);
+        //显式传入updateAt的补丁与只传name的补丁字段集合相同,在同一批中执行
+        Assert.assertEquals(1, database.getStatements("UPDATE").size());
+        Assert.assertEquals(Long.valueOf(42L), load(0).getUpdateAt());
+        Assert.assertTrue(load(1).getUpdateAt() > 42L);
+    }
+}
@@ -0,0 +1,140 @@
+package com.gemantic.db.repository.impl;
+
+import com.google.common.collect.Lists;
+import org.h2.jdbcx.JdbcDataSource;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+
+/**
+ * 测试用内存H2(MySQL模式),记录预编译的sql与每次executeBatch的语句条数
+ */
+public class H2Database implements AutoCloseable {
+
+    private final List<String> statements = Collections.synchronizedList(Lists.newArrayList());
+
+    private final List<Integer> batchSizes = Collections.synchronizedList(Lists.newArrayList());
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    public H2Database(String name) {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + name + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        dataSource.setUser("sa");
+
+        LocalContainerEntityManagerFactoryBean factoryBean = new LocalContainerEntityManagerFactoryBean();
+        factoryBean.setDataSource(new DelegatingDataSource(dataSource) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                return record(super.getConnection());
+            }
+        });
+        factoryBean.setPackagesToScan(BulkItem.class.getPackage().getName());
+        factoryBean.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        Properties properties = new Properties();
+        properties.setProperty("hibernate.hbm2ddl.auto", "create-drop");
+        properties.setProperty("hibernate.dialect", "org.hibernate.dialect.H2Dialect");
+        factoryBean.setJpaProperties(properties);
+        factoryBean.afterPropertiesSet();
+        entityManagerFactory = factoryBean.getObject();
+    }
+
+    public EntityManager createEntityManager() {
+        return entityManagerFactory.createEntityManager();
+    }
+
+    /**
+     * 在事务中执行,结束后清空一级缓存
+     */
+    public <R> R inTransaction(EntityManager em, Callable<R> work) throws Exception {
+        em.getTransaction().begin();
+        try {
+            R result = work.call();
+            em.getTransaction().commit();
+            return result;
+        } catch (Exception e) {
+            em.getTransaction().rollback();
+            throw e;
+        } finally {
+            em.clear();
+        }
+    }
+
+    /**
+     * 以prefix开头(忽略大小写)的预编译sql
+     */
+    public List<String> getStatements(String prefix) {
+        List<String> result = Lists.newArrayList();
+        synchronized (statements) {
+            for (String sql : statements) {
+                if (sql.regionMatches(true, 0, prefix, 0, prefix.length())) {
+                    result.add(sql);
+                }
+            }
+        }
+        return result;
+    }
+
+    public List<Integer> getBatchSizes() {
+        synchronized (batchSizes) {
+            return Lists.newArrayList(batchSizes);
+        }
+    }
+
+    public void reset() {
+        statements.clear();
+        batchSizes.clear();
+    }
+
+    private Connection record(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{Connection.class}, (proxy, method, args) -> {
+            Object result = invoke(connection, method, args);
+            if ("prepareStatement".equals(method.getName())) {
+                statements.add((String) args[0]);
+                return record((PreparedStatement) result);
+            }
+            return result;
+        });
+    }
+
+    private PreparedStatement record(PreparedStatement statement) {
+        int[] pending = new int[1];
+        return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{PreparedStatement.class}, (proxy, method, args) -> {
+            if ("addBatch".equals(method.getName())) {
+                pending[0]++;
+            } else if ("executeBatch".equals(method.getName())) {
+                batchSizes.add(pending[0]);
+                pending[0] = 0;
+            } else if ("clearBatch".equals(method.getName())) {
+                pending[0] = 0;
+            }
+            return invoke(statement, method, args);
+        });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    @Override
+    public void close() {
+        entityManagerFactory.close();
+    }
+}
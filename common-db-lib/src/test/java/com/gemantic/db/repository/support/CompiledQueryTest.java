@@ -0,0 +1,45 @@
+package com.gemantic.db.repository.support;
+
+import com.gemantic.db.constant.DBOperation;
+import com.gemantic.db.support.DBQueryItem;
+import com.google.common.collect.Lists;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+/**
+ * IN/NIN值个数分档
+ */
+public class CompiledQueryTest {
+
+    private static DBQueryItem item(DBOperation operation, int size) {
+        List<Object> values = LongStream.rangeClosed(1, size).boxed().collect(Collectors.toList());
+        return new DBQueryItem("id", operation, values);
+    }
+
+    @Test
+    public void singleValueInIsEqualityBucket() {
+        Assert.assertEquals(0, CompiledQuery.bucket(item(DBOperation.IN, 1)));
+        Assert.assertEquals(0, CompiledQuery.bucket(item(DBOperation.NIN, 1)));
+    }
+
+    @Test
+    public void inBucketsArePowersOfTwo() {
+        Assert.assertEquals(2, CompiledQuery.bucket(item(DBOperation.IN, 2)));
+        Assert.assertEquals(4, CompiledQuery.bucket(item(DBOperation.IN, 3)));
+        Assert.assertEquals(4, CompiledQuery.bucket(item(DBOperation.IN, 4)));
+        Assert.assertEquals(8, CompiledQuery.bucket(item(DBOperation.IN, 5)));
+        Assert.assertEquals(1024, CompiledQuery.bucket(item(DBOperation.NIN, 1000)));
+        Assert.assertEquals(1024, CompiledQuery.bucket(item(DBOperation.IN, 1024)));
+        Assert.assertEquals(2048, CompiledQuery.bucket(item(DBOperation.IN, 1025)));
+    }
+
+    @Test
+    public void otherOperationsUseBucketZero() {
+        Assert.assertEquals(0, CompiledQuery.bucket(item(DBOperation.EQ, 1)));
+        Assert.assertEquals(0, CompiledQuery.bucket(new DBQueryItem("name", DBOperation.LIKE, Lists.newArrayList("a", "b", "c"))));
+    }
+}
@@ -0,0 +1,78 @@
+package com.gemantic.db.repository.support;
+
+import com.gemantic.db.constant.DBOperation;
+import com.gemantic.db.support.DBQueryItem;
+import com.google.common.collect.Lists;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.data.domain.Sort;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 大IN条件拆分与合并排序
+ */
+public class LargeInSplitterTest {
+
+    @Test
+    public void partitionPadsLastChunkWithLastValue() {
+        List<List<Integer>> chunks = LargeInSplitter.partition(Lists.newArrayList(1, 2, 2, 3, 4, 5, 1), 2);
+        Assert.assertEquals(Lists.newArrayList(Lists.newArrayList(1, 2), Lists.newArrayList(3, 4), Lists.newArrayList(5, 5)), chunks);
+    }
+
+    @Test
+    public void partitionDoesNotPadSingleChunk() {
+        Assert.assertEquals(Collections.singletonList(Lists.newArrayList(1, 2)), LargeInSplitter.partition(Lists.newArrayList(1, 2, 1), 5));
+    }
+
+    @Test
+    public void splitReplacesOnlyInItem() {
+        DBQueryItem eq = new DBQueryItem("userId", DBOperation.EQ, Lists.newArrayList(1L));
+        DBQueryItem in = new DBQueryItem("id", DBOperation.IN, Lists.newArrayList(1L, 2L, 3L));
+        List<DBQueryItem> andQuery = Lists.newArrayList(eq, in);
+        Assert.assertEquals(1, LargeInSplitter.indexOf(andQuery, 2));
+        Assert.assertEquals(-1, LargeInSplitter.indexOf(andQuery, 3));
+        List<List<DBQueryItem>> chunks = LargeInSplitter.split(andQuery, 1, 2);
+        Assert.assertEquals(2, chunks.size());
+        Assert.assertSame(eq, chunks.get(1).get(0));
+        Assert.assertEquals(Lists.newArrayList(3L, 3L), chunks.get(1).get(1).getValues());
+    }
+
+    @Test
+    public void comparatorPutsNullFirstAscendingAndLastDescending() {
+        List<Map<String, Object>> rows = rows(3, null, 1);
+        rows.sort(LargeInSplitter.comparator(Sort.by(Sort.Direction.ASC, "v"), Map::get));
+        Assert.assertEquals(Lists.newArrayList(null, 1, 3), values(rows));
+        rows.sort(LargeInSplitter.comparator(Sort.by(Sort.Direction.DESC, "v"), Map::get));
+        Assert.assertEquals(Lists.newArrayList(3, 1, null), values(rows));
+    }
+
+    @Test
+    public void comparatorComparesStringsIgnoringCase() {
+        Comparator<Map<String, Object>> comparator = LargeInSplitter.comparator(Sort.by(Sort.Direction.ASC, "v"), Map::get);
+        List<Map<String, Object>> rows = rows("b", "C", "a");
+        rows.sort(comparator);
+        Assert.assertEquals(Lists.newArrayList("a", "b", "C"), values(rows));
+        Assert.assertEquals(0, comparator.compare(rows("A").get(0), rows("a").get(0)));
+    }
+
+    private static List<Map<String, Object>> rows(Object... values) {
+        List<Map<String, Object>> rows = Lists.newArrayList();
+        for (Object value : values) {
+            Map<String, Object> row = new HashMap<>();
+            row.put("v", value);
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    private static List<Object> values(List<Map<String, Object>> rows) {
+        List<Object> values = Lists.newArrayList();
+        rows.forEach(row -> values.add(row.get("v")));
+        return values;
+    }
+}
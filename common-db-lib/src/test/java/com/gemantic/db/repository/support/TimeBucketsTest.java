@@ -0,0 +1,127 @@
+package com.gemantic.db.repository.support;
+
+import com.gemantic.db.constant.DBAggregateFunction;
+import com.gemantic.db.constant.DBTimeInterval;
+import com.gemantic.db.support.DBAggregateItem;
+import com.gemantic.db.support.DBHistogramBucket;
+import com.google.common.collect.Lists;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 时间分桶的桶宽、连续桶、MONTH合并与夏令时分段
+ */
+public class TimeBucketsTest {
+
+    private static final ZoneId SHANGHAI = ZoneId.of("Asia/Shanghai");
+
+    private static final ZoneId NEW_YORK = ZoneId.of("America/New_York");
+
+    private static long at(LocalDateTime time, ZoneId zone) {
+        return time.atZone(zone).toInstant().toEpochMilli();
+    }
+
+    private static long dayIndex(LocalDate date) {
+        return date.toEpochDay();
+    }
+
+    @Test
+    public void widthFollowsInterval() {
+        List<DBAggregateItem> aggregates = Lists.newArrayList();
+        Assert.assertEquals(TimeUnit.MINUTES.toMillis(1), new TimeBuckets(DBTimeInterval.MINUTE, SHANGHAI, aggregates).getWidth());
+        Assert.assertEquals(TimeUnit.HOURS.toMillis(1), new TimeBuckets(DBTimeInterval.HOUR, SHANGHAI, aggregates).getWidth());
+        Assert.assertEquals(TimeUnit.DAYS.toMillis(1), new TimeBuckets(DBTimeInterval.DAY, SHANGHAI, aggregates).getWidth());
+        Assert.assertEquals(TimeUnit.DAYS.toMillis(1), new TimeBuckets(DBTimeInterval.MONTH, SHANGHAI, aggregates).getWidth());
+        Assert.assertTrue(new TimeBuckets(DBTimeInterval.MONTH, SHANGHAI, aggregates).isRollup());
+        Assert.assertFalse(new TimeBuckets(DBTimeInterval.DAY, SHANGHAI, aggregates).isRollup());
+    }
+
+    @Test
+    public void buildFillsEmptyBuckets() {
+        List<DBAggregateItem> aggregates = Lists.newArrayList(new DBAggregateItem(DBAggregateFunction.COUNT, null, null),
+                new DBAggregateItem(DBAggregateFunction.SUM, "score", null));
+        TimeBuckets buckets = new TimeBuckets(DBTimeInterval.DAY, SHANGHAI, aggregates);
+        LocalDate first = LocalDate.of(2026, 1, 1);
+        buckets.add(dayIndex(first), 2L, new Object[]{2L, 10L}, null);
+        buckets.add(dayIndex(first.plusDays(3)), 1L, new Object[]{1L, 5L}, null);
+        List<DBHistogramBucket> result = buckets.build(null, null);
+        Assert.assertEquals(4, result.size());
+        Assert.assertEquals(at(first.atStartOfDay(), SHANGHAI), result.get(0).getStartAt().longValue());
+        Assert.assertEquals(at(first.plusDays(1).atStartOfDay(), SHANGHAI), result.get(0).getEndAt().longValue());
+        Assert.assertEquals(10L, result.get(0).getAggregates().get("sum_score"));
+        Assert.assertEquals(0L, result.get(1).getCount());
+        Assert.assertEquals(0L, result.get(1).getAggregates().get("count"));
+        Assert.assertNull(result.get(1).getAggregates().get("sum_score"));
+        Assert.assertEquals(1L, result.get(3).getCount());
+    }
+
+    @Test
+    public void buildUsesRequestedRange() {
+        TimeBuckets buckets = new TimeBuckets(DBTimeInterval.HOUR, SHANGHAI, Lists.newArrayList());
+        long startAt = at(LocalDateTime.of(2026, 1, 1, 10, 30), SHANGHAI);
+        long endAt = at(LocalDateTime.of(2026, 1, 1, 13, 0), SHANGHAI);
+        List<DBHistogramBucket> result = buckets.build(startAt, endAt);
+        Assert.assertEquals(4, result.size());
+        Assert.assertEquals(at(LocalDateTime.of(2026, 1, 1, 10, 0), SHANGHAI), result.get(0).getStartAt().longValue());
+        Assert.assertTrue(buckets.build(null, null).isEmpty());
+    }
+
+    @Test
+    public void monthRollupMergesDays() {
+        List<DBAggregateItem> aggregates = Lists.newArrayList(new DBAggregateItem(DBAggregateFunction.SUM, "score", null),
+                new DBAggregateItem(DBAggregateFunction.AVG, "score", null), new DBAggregateItem(DBAggregateFunction.MAX, "score", null));
+        TimeBuckets buckets = new TimeBuckets(DBTimeInterval.MONTH, SHANGHAI, aggregates);
+        buckets.add(dayIndex(LocalDate.of(2026, 1, 5)), 2L, new Object[]{10L, 10L, 7}, new long[]{0L, 2L, 0L});
+        buckets.add(dayIndex(LocalDate.of(2026, 1, 31)), 3L, new Object[]{20L, 20L, 9}, new long[]{0L, 3L, 0L});
+        buckets.add(dayIndex(LocalDate.of(2026, 3, 1)), 1L, new Object[]{4L, 4L, 4}, new long[]{0L, 1L, 0L});
+        List<DBHistogramBucket> result = buckets.build(null, null);
+        Assert.assertEquals(3, result.size());
+        DBHistogramBucket january = result.get(0);
+        Assert.assertEquals(at(LocalDate.of(2026, 1, 1).atStartOfDay(), SHANGHAI), january.getStartAt().longValue());
+        Assert.assertEquals(at(LocalDate.of(2026, 2, 1).atStartOfDay(), SHANGHAI), january.getEndAt().longValue());
+        Assert.assertEquals(5L, january.getCount());
+        Assert.assertEquals(30L, january.getAggregates().get("sum_score"));
+        Assert.assertEquals(6.0D, (Double) january.getAggregates().get("avg_score"), 1e-9);
+        Assert.assertEquals(9, january.getAggregates().get("max_score"));
+        Assert.assertEquals(0L, result.get(1).getCount());
+        Assert.assertNull(result.get(1).getAggregates().get("avg_score"));
+    }
+
+    @Test
+    public void offsetsSplitAtDaylightSavingTransitions() {
+        TimeBuckets buckets = new TimeBuckets(DBTimeInterval.DAY, NEW_YORK, Lists.newArrayList());
+        Assert.assertFalse(buckets.isFixedOffset());
+        NavigableMap<Long, Long> offsets = buckets.getOffsets(at(LocalDateTime.of(2026, 1, 1, 0, 0), NEW_YORK), at(LocalDateTime.of(2026, 12, 31, 0, 0), NEW_YORK));
+        Assert.assertEquals(3, offsets.size());
+        Assert.assertEquals(-TimeUnit.HOURS.toMillis(5), offsets.firstEntry().getValue().longValue());
+        Assert.assertEquals(-TimeUnit.HOURS.toMillis(4), offsets.higherEntry(Long.MIN_VALUE).getValue().longValue());
+        Assert.assertEquals(-TimeUnit.HOURS.toMillis(5), offsets.lastEntry().getValue().longValue());
+        Assert.assertEquals(1, new TimeBuckets(DBTimeInterval.DAY, ZoneOffset.ofHours(8), Lists.newArrayList()).getOffsets(0L, Long.MAX_VALUE).size());
+    }
+
+    @Test
+    public void bucketsFollowLocalTimeAcrossDaylightSaving() {
+        TimeBuckets days = new TimeBuckets(DBTimeInterval.DAY, NEW_YORK, Lists.newArrayList());
+        List<DBHistogramBucket> result = days.build(at(LocalDateTime.of(2026, 3, 7, 12, 0), NEW_YORK), at(LocalDateTime.of(2026, 3, 9, 12, 0), NEW_YORK));
+        Assert.assertEquals(3, result.size());
+        Assert.assertEquals(TimeUnit.HOURS.toMillis(23), result.get(1).getEndAt() - result.get(1).getStartAt());
+        Assert.assertEquals(at(LocalDate.of(2026, 3, 9).atStartOfDay(), NEW_YORK), result.get(2).getStartAt().longValue());
+
+        TimeBuckets hours = new TimeBuckets(DBTimeInterval.HOUR, NEW_YORK, Lists.newArrayList());
+        result = hours.build(at(LocalDateTime.of(2026, 3, 8, 1, 0), NEW_YORK), at(LocalDateTime.of(2026, 3, 8, 3, 0), NEW_YORK));
+        Assert.assertEquals(2, result.size());
+        Assert.assertEquals(result.get(0).getEndAt(), result.get(1).getStartAt());
+
+        result = hours.build(at(LocalDateTime.of(2026, 11, 1, 0, 0), NEW_YORK), at(LocalDateTime.of(2026, 11, 1, 2, 0), NEW_YORK));
+        Assert.assertEquals(3, result.size());
+        Assert.assertEquals(TimeUnit.HOURS.toMillis(2), result.get(1).getEndAt() - result.get(1).getStartAt());
+    }
+}